@@ -19,16 +19,22 @@ def health():
     return jsonify({"status": "ok", "model_loaded": _model is not None})
 
 
+def _requested_texts(payload):
+    texts = payload.get("texts")
+    if isinstance(texts, list) and texts and all(isinstance(text, str) and text for text in texts):
+        return texts
+    query = payload.get("query")
+    return [query] if query else []
+
+
 @app.post("/infer")
 def infer():
     global _model
 
     payload = request.get_json(silent=True) or {}
-    query = payload.get("query")
-    texts = payload.get("texts")
-    text = query or (texts[0] if isinstance(texts, list) and texts else None)
+    texts = _requested_texts(payload)
 
-    if not text:
+    if not texts:
         return jsonify({"intent": "Unknown", "confidence": 0.0}), 400
 
     if _model is None and MODEL_PATH.exists():
@@ -37,13 +43,19 @@ def infer():
     if _model is None:
         return jsonify({"intent": "Unknown", "confidence": 0.0, "message": "Model not trained yet"}), 503
 
-    probabilities = _model.predict_proba([text])[0]
+    # One vectorized call scores the whole batch.
+    probabilities = _model.predict_proba(texts)
     labels = _model.classes_
-    best_index = int(probabilities.argmax())
+    best_indices = probabilities.argmax(axis=1)
+    predictions = [
+        {"label": str(labels[index]), "score": float(probabilities[row, index])}
+        for row, index in enumerate(best_indices)
+    ]
 
     return jsonify({
-        "intent": str(labels[best_index]),
-        "confidence": float(probabilities[best_index]),
+        "intent": predictions[0]["label"],
+        "confidence": predictions[0]["score"],
+        "predictions": predictions,
     })
 
 
@@ -30,35 +30,45 @@ def health():
     return jsonify({"status": "ok", "model_loaded": MODEL is not None, "error": MODEL_ERROR})
 
 
+def _requested_texts(payload):
+    texts = payload.get("texts")
+    if isinstance(texts, list) and texts and all(isinstance(text, str) and text for text in texts):
+        return texts
+    query = payload.get("query")
+    return [query] if query else []
+
+
 @app.post("/infer")
 def infer():
     payload = request.get_json(silent=True) or {}
-    query = payload.get("query")
-    texts = payload.get("texts")
-    text = query or (texts[0] if isinstance(texts, list) and texts else None)
+    texts = _requested_texts(payload)
 
-    if not text:
+    if not texts:
         return jsonify({"intent": "Unknown", "confidence": 0.0}), 400
 
     if MODEL is None:
         return jsonify({"intent": "Unknown", "confidence": 0.0, "error": MODEL_ERROR or "Model not available"}), 503
 
     try:
-        output = MODEL([text])
-        intent = "Unknown"
-        confidence = 0.0
-
-        if isinstance(output, list) and output:
-            first = output[0]
-            if isinstance(first, list) and first:
-                intent = str(first[0])
-            elif isinstance(first, str):
-                intent = first
-
-            if len(output) > 1 and isinstance(output[1], list) and output[1]:
-                confidence = float(output[1][0]) if output[1][0] is not None else 0.0
-
-        return jsonify({"intent": intent, "confidence": confidence})
+        output = MODEL(texts)
+        labels = output[0] if isinstance(output, list) and output and isinstance(output[0], list) else []
+        scores = output[1] if isinstance(output, list) and len(output) > 1 and isinstance(output[1], list) else []
+
+        predictions = []
+        for i in range(len(texts)):
+            label = labels[i] if i < len(labels) else "Unknown"
+            if isinstance(label, list):
+                label = label[0] if label else "Unknown"
+            score = scores[i] if i < len(scores) else 0.0
+            if isinstance(score, list):
+                score = max(score) if score else 0.0
+            predictions.append({"label": str(label), "score": float(score) if score is not None else 0.0})
+
+        return jsonify({
+            "intent": predictions[0]["label"],
+            "confidence": predictions[0]["score"],
+            "predictions": predictions,
+        })
     except Exception as ex:  # noqa: BLE001
         return jsonify({"intent": "Unknown", "confidence": 0.0, "error": str(ex)}), 500
 
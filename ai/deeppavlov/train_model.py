@@ -1,10 +1,11 @@
 import json
 from pathlib import Path
 
-from sklearn.feature_extraction.text import TfidfVectorizer
+import numpy as np
+from sklearn.feature_extraction.text import HashingVectorizer, TfidfVectorizer
 from sklearn.linear_model import LogisticRegression
 from sklearn.pipeline import Pipeline
-from sklearn.model_selection import train_test_split
+from sklearn.model_selection import StratifiedKFold, cross_val_predict, train_test_split
 from sklearn.metrics import classification_report
 import joblib
 
@@ -13,6 +14,14 @@ ROOT = Path(__file__).resolve().parent
 DATA_PATH = ROOT / "train_data.json"
 MODEL_DIR = ROOT / "models"
 MODEL_PATH = MODEL_DIR / "intent_model.joblib"
+LINEAR_MODEL_PATH = MODEL_DIR / "intent_linear.json"
+
+# Must match the feature extractor in the backend's HashedNgramIntentModel.
+LINEAR_MODEL_FORMAT = "hashed-ngram-logreg/1"
+HASH_FEATURES = 2 ** 14
+NGRAM_MAX = 2
+# Held-out precision the backend's confidence threshold for the in-process model is chosen for.
+TARGET_PRECISION = 0.9
 
 
 def load_data(path: Path):
@@ -27,6 +36,72 @@ def load_data(path: Path):
     return x, y
 
 
+def confidence_threshold(features, y):
+    """Lowest confidence at which cross-validated predictions are at least TARGET_PRECISION correct.
+
+    Softmax probabilities of this model on a small, many-class training set sit far below the cloud model's, so the
+    backend gates it on this threshold instead of the shared one. Returns 1.0 when no threshold reaches the target.
+    """
+    folds = min(5, min(np.unique(y, return_counts=True)[1]))
+    probabilities = cross_val_predict(
+        LogisticRegression(max_iter=2000),
+        features,
+        y,
+        cv=StratifiedKFold(n_splits=folds),
+        method="predict_proba",
+    )
+    classes = np.unique(y)
+    confidence = probabilities.max(axis=1)
+    correct = classes[probabilities.argmax(axis=1)] == np.asarray(y)
+    order = np.argsort(-confidence, kind="stable")
+    precision = np.cumsum(correct[order]) / np.arange(1, len(order) + 1)
+    reached = np.flatnonzero(precision >= TARGET_PRECISION)
+    return float(confidence[order][reached.max()]) if reached.size else 1.0
+
+
+def export_linear_model(x, y, path: Path):
+    """Trains the hashed n-gram model the backend runs in-process and writes its weights as JSON.
+
+    Only feature rows with a non-zero weight are written. The model's own predictions on the training examples are
+    included, next to their labels, so the backend can check that it reproduces them.
+    """
+    vectorizer = HashingVectorizer(
+        ngram_range=(1, NGRAM_MAX), n_features=HASH_FEATURES, alternate_sign=False, norm="l2"
+    )
+    features = vectorizer.transform(x)
+    classifier = LogisticRegression(max_iter=2000)
+    classifier.fit(features, y)
+
+    coefficients = classifier.coef_
+    rows = [
+        [int(feature)] + [float(weight) for weight in coefficients[:, feature]]
+        for feature in np.flatnonzero(np.any(coefficients != 0.0, axis=0))
+    ]
+    probabilities = classifier.predict_proba(features)
+    reference = [
+        {
+            "text": text,
+            "expected": expected,
+            "label": str(classifier.classes_[int(row.argmax())]),
+            "confidence": float(row.max()),
+        }
+        for text, expected, row in zip(x, y, probabilities)
+    ]
+    threshold = confidence_threshold(features, y)
+
+    path.write_text(json.dumps({
+        "format": LINEAR_MODEL_FORMAT,
+        "features": HASH_FEATURES,
+        "ngramMax": NGRAM_MAX,
+        "labels": [str(label) for label in classifier.classes_],
+        "intercepts": [float(value) for value in classifier.intercept_],
+        "weights": rows,
+        "confidenceThreshold": threshold,
+        "reference": reference,
+    }))
+    print(f"Saved in-process model to {path} ({len(rows)} weighted features, confidence threshold {threshold:.3f})")
+
+
 def main():
     x, y = load_data(DATA_PATH)
     class_count = len(set(y))
@@ -56,6 +131,8 @@ def main():
     joblib.dump(model, MODEL_PATH)
     print(f"Saved model to {MODEL_PATH}")
 
+    export_linear_model(x, y, LINEAR_MODEL_PATH)
+
 
 if __name__ == "__main__":
     main()
@@ -0,0 +1,118 @@
+package com.aegis.agent.benchmarks;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.AbstractClientHttpRequest;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * A {@link RestTemplate} whose requests never leave the process: request bodies are serialized and discarded, and
+ * each URL answers with a fixed JSON body, so the full client-side request and response handling is measured
+ * without network time. A latency can be added to stand in for a remote service, blocking the calling thread the
+ * way a real HTTP call would.
+ */
+final class CannedHttp {
+
+    private CannedHttp() {
+    }
+
+    static RestTemplate restTemplate(Map<String, byte[]> responsesByUrl) {
+        return restTemplate(responsesByUrl, Duration.ZERO);
+    }
+
+    static RestTemplate restTemplate(Map<String, byte[]> responsesByUrl, Duration latency) {
+        return new RestTemplate((uri, method) -> new CannedRequest(uri, method, responsesByUrl.get(uri.toString()), latency));
+    }
+
+    private static final class CannedRequest extends AbstractClientHttpRequest {
+
+        private final URI uri;
+        private final HttpMethod method;
+        private final byte[] response;
+        private final Duration latency;
+
+        CannedRequest(URI uri, HttpMethod method, byte[] response, Duration latency) {
+            this.uri = uri;
+            this.method = method;
+            this.response = response;
+            this.latency = latency;
+        }
+
+        @Override
+        public HttpMethod getMethod() {
+            return method;
+        }
+
+        @Override
+        public URI getURI() {
+            return uri;
+        }
+
+        @Override
+        protected OutputStream getBodyInternal(HttpHeaders headers) {
+            return OutputStream.nullOutputStream();
+        }
+
+        @Override
+        protected ClientHttpResponse executeInternal(HttpHeaders headers) throws IOException {
+            if (!latency.isZero()) {
+                try {
+                    Thread.sleep(latency.toMillis());
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Canned call interrupted");
+                }
+            }
+            return new CannedResponse(response);
+        }
+    }
+
+    private static final class CannedResponse implements ClientHttpResponse {
+
+        private final byte[] body;
+        private final HttpHeaders headers = new HttpHeaders();
+
+        CannedResponse(byte[] body) {
+            this.body = body;
+            headers.setContentType(MediaType.APPLICATION_JSON);
+            headers.setContentLength(body.length);
+        }
+
+        @Override
+        public HttpStatusCode getStatusCode() {
+            return HttpStatus.OK;
+        }
+
+        @Override
+        public String getStatusText() {
+            return "OK";
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return headers;
+        }
+
+        @Override
+        public InputStream getBody() {
+            return new ByteArrayInputStream(body);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
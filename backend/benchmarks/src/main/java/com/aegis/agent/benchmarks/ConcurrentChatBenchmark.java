@@ -0,0 +1,150 @@
+package com.aegis.agent.benchmarks;
+
+import com.aegis.agent.config.AegisProperties;
+import com.aegis.agent.service.CloudIntentProvider;
+import com.aegis.agent.service.DeepPavlovIntentProvider;
+import com.aegis.agent.service.IntentRoutingService;
+import com.aegis.agent.service.LocalIntentProvider;
+import com.aegis.agent.service.RuleBasedIntentService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.web.client.RestTemplate;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Load test for the request execution mode: {@code concurrency} chats arrive at once and each routes through both
+ * remote providers, which answer after {@code providerLatencyMs} via {@link CannedHttp}. {@code platform} serves the
+ * requests on 200 platform threads, Tomcat's default, with the default fan-out pool; {@code virtual} serves each
+ * request on its own virtual thread and enables {@code aegis.virtual-threads-enabled}, as
+ * {@code VIRTUAL_THREADS_ENABLED=true} does in the application. The score is the time until every chat has been
+ * answered; the {@code providerAnswers} and {@code ruleFallbacks} counters show how many chats still got a provider
+ * answer within the routing deadlines and fan-out queue rather than the rule-based fallback.
+ * {@code fanOutQueueCapacity} overrides {@code aegis.intent-fan-out-queue-capacity} to trade saturated answers for
+ * queueing time. {@code virtual} needs a Java 21 runtime and fails its setup on older ones.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ConcurrentChatBenchmark {
+
+    private static final String CLOUD_URL = "http://cloud.invalid/v1/chat/completions";
+    private static final String DEEPPAVLOV_URL = "http://deeppavlov.invalid/infer";
+    private static final int TOMCAT_MAX_THREADS = 200;
+
+    @Param({"platform", "virtual"})
+    String threads;
+
+    @Param({"200", "2000"})
+    int concurrency;
+
+    @Param({"50"})
+    long providerLatencyMs;
+
+    // 0 keeps the application default: both calls of every request Tomcat can run at once.
+    @Param({"0"})
+    int fanOutQueueCapacity;
+
+    private IntentRoutingService intentRoutingService;
+    private Executor requestExecutor;
+    private ExecutorService platformRequestPool;
+    private String query;
+
+    @Setup
+    public void setUp() {
+        boolean virtual = "virtual".equals(threads);
+        if (virtual && Runtime.version().feature() < 21) {
+            throw new IllegalStateException("Virtual threads need a Java 21 runtime");
+        }
+        AegisProperties properties = new AegisProperties();
+        properties.setVirtualThreadsEnabled(virtual);
+        properties.setIntentFanOutQueueCapacity(fanOutQueueCapacity);
+        properties.setCloudIntentEnabled(true);
+        properties.setCloudIntentUrl(CLOUD_URL);
+        properties.setCloudIntentApiKey("benchmark");
+        properties.setDeeppavlovEnabled(true);
+        properties.setDeeppavlovUrl(DEEPPAVLOV_URL);
+        // One text per request: the canned response carries a single prediction.
+        properties.setDeeppavlovBatchMaxSize(1);
+        RestTemplate restTemplate = CannedHttp.restTemplate(Map.of(
+                CLOUD_URL, Payloads.cloudCompletionResponse(),
+                DEEPPAVLOV_URL, Payloads.deepPavlovResponse(1)
+        ), Duration.ofMillis(providerLatencyMs));
+        ObjectMapper objectMapper = new ObjectMapper();
+        intentRoutingService = new IntentRoutingService(
+                new DeepPavlovIntentProvider(properties, restTemplate, objectMapper, new SimpleMeterRegistry()),
+                new LocalIntentProvider(properties, new DefaultResourceLoader(), new SimpleMeterRegistry()),
+                new CloudIntentProvider(properties, restTemplate, objectMapper, new SimpleMeterRegistry()),
+                new RuleBasedIntentService(),
+                properties
+        );
+        if (virtual) {
+            requestExecutor = new VirtualThreadTaskExecutor("chat-request-");
+        } else {
+            platformRequestPool = Executors.newFixedThreadPool(TOMCAT_MAX_THREADS);
+            requestExecutor = platformRequestPool;
+        }
+        query = Payloads.chatQuery(256);
+    }
+
+    @TearDown
+    public void tearDown() {
+        intentRoutingService.shutdown();
+        if (platformRequestPool != null) {
+            platformRequestPool.shutdownNow();
+        }
+    }
+
+    @Benchmark
+    public void concurrentChats(Answers answers) throws InterruptedException {
+        CountDownLatch answered = new CountDownLatch(concurrency);
+        AtomicInteger fallbacks = new AtomicInteger();
+        for (int i = 0; i < concurrency; i++) {
+            requestExecutor.execute(() -> {
+                try {
+                    // Also counts chats turned away by a full fan-out queue.
+                    if (intentRoutingService.classifyResolution(query).getSourceSummary().startsWith("rule-based fallback")) {
+                        fallbacks.incrementAndGet();
+                    }
+                } finally {
+                    answered.countDown();
+                }
+            });
+        }
+        answered.await();
+        answers.ruleFallbacks += fallbacks.get();
+        answers.providerAnswers += concurrency - fallbacks.get();
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Answers {
+        public long providerAnswers;
+        public long ruleFallbacks;
+    }
+}
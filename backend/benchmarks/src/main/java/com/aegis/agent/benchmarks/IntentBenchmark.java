@@ -0,0 +1,87 @@
+package com.aegis.agent.benchmarks;
+
+import com.aegis.agent.config.AegisProperties;
+import com.aegis.agent.domain.IntentResolution;
+import com.aegis.agent.domain.IntentResult;
+import com.aegis.agent.service.CloudIntentProvider;
+import com.aegis.agent.service.DeepPavlovIntentProvider;
+import com.aegis.agent.service.IntentRoutingService;
+import com.aegis.agent.service.LocalIntentProvider;
+import com.aegis.agent.service.RuleBasedIntentService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Intent classification on 1KB chat queries. {@code rules} routes with both remote providers disabled, so only
+ * the rule-based fallback runs; {@code providers} enables them against {@link CannedHttp}, which measures request
+ * building and response parsing without network time.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IntentBenchmark {
+
+    private static final String CLOUD_URL = "http://cloud.invalid/v1/chat/completions";
+    private static final String DEEPPAVLOV_URL = "http://deeppavlov.invalid/infer";
+
+    @Param({"rules", "providers"})
+    String routing;
+
+    private final RuleBasedIntentService ruleBasedIntentService = new RuleBasedIntentService();
+    private IntentRoutingService intentRoutingService;
+    private String query;
+
+    @Setup
+    public void setUp() {
+        AegisProperties properties = new AegisProperties();
+        if ("providers".equals(routing)) {
+            properties.setCloudIntentEnabled(true);
+            properties.setCloudIntentUrl(CLOUD_URL);
+            properties.setCloudIntentApiKey("benchmark");
+            properties.setDeeppavlovEnabled(true);
+            properties.setDeeppavlovUrl(DEEPPAVLOV_URL);
+        }
+        RestTemplate restTemplate = CannedHttp.restTemplate(Map.of(
+                CLOUD_URL, Payloads.cloudCompletionResponse(),
+                DEEPPAVLOV_URL, Payloads.deepPavlovResponse(1)
+        ));
+        ObjectMapper objectMapper = new ObjectMapper();
+        intentRoutingService = new IntentRoutingService(
+                new DeepPavlovIntentProvider(properties, restTemplate, objectMapper, new SimpleMeterRegistry()),
+                new LocalIntentProvider(properties, new DefaultResourceLoader(), new SimpleMeterRegistry()),
+                new CloudIntentProvider(properties, restTemplate, objectMapper, new SimpleMeterRegistry()),
+                ruleBasedIntentService,
+                properties
+        );
+        query = Payloads.chatQuery(1024);
+    }
+
+    @Benchmark
+    public IntentResult ruleBasedClassify() {
+        return ruleBasedIntentService.classify(query);
+    }
+
+    @Benchmark
+    public IntentResolution routingClassifyResolution() {
+        return intentRoutingService.classifyResolution(query);
+    }
+}
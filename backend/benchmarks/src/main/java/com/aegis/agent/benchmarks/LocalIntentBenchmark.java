@@ -0,0 +1,108 @@
+package com.aegis.agent.benchmarks;
+
+import com.aegis.agent.config.AegisProperties;
+import com.aegis.agent.domain.IntentResult;
+import com.aegis.agent.service.LocalIntentProvider;
+import com.aegis.agent.service.RuleBasedIntentService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.io.DefaultResourceLoader;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of the in-process intent model per query, next to the rule-based classifier as a baseline. The model has
+ * the exported dimensions (2^14 hashed features, 10 intents) with random weights on 400 features; scoring cost
+ * depends on those dimensions and the query length, not on the trained values.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LocalIntentBenchmark {
+
+    private static final int FEATURES = 1 << 14;
+    private static final int WEIGHTED_FEATURES = 400;
+    private static final List<String> LABELS = List.of(
+            "EnrollmentFailure", "GenerateOTP", "TokenSyncError", "ConfigIssue", "ServerUnreachable",
+            "PushApprovalTimeout", "PasskeyRegistrationFailure", "BiometricLockout", "TimeDriftFailure",
+            "DeviceBindingFailure"
+    );
+
+    @Param({"64", "1024"})
+    int queryChars;
+
+    private final RuleBasedIntentService ruleBasedIntentService = new RuleBasedIntentService();
+    private LocalIntentProvider localIntentProvider;
+    private Path modelFile;
+    private String query;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        modelFile = Files.createTempFile("intent-linear", ".json");
+        new ObjectMapper().writeValue(modelFile.toFile(), syntheticModel(new Random(17)));
+        AegisProperties properties = new AegisProperties();
+        properties.setLocalIntentModel(modelFile.toUri().toString());
+        localIntentProvider = new LocalIntentProvider(properties, new DefaultResourceLoader(), new SimpleMeterRegistry());
+        query = Payloads.chatQuery(queryChars);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(modelFile);
+    }
+
+    @Benchmark
+    public IntentResult localClassify() {
+        return localIntentProvider.classify(query);
+    }
+
+    @Benchmark
+    public IntentResult ruleBasedClassify() {
+        return ruleBasedIntentService.classify(query);
+    }
+
+    private static Map<String, Object> syntheticModel(Random random) {
+        List<double[]> weights = new ArrayList<>(WEIGHTED_FEATURES);
+        for (int i = 0; i < WEIGHTED_FEATURES; i++) {
+            double[] row = new double[LABELS.size() + 1];
+            row[0] = random.nextInt(FEATURES);
+            for (int k = 1; k < row.length; k++) {
+                row[k] = random.nextGaussian();
+            }
+            weights.add(row);
+        }
+        double[] intercepts = new double[LABELS.size()];
+        Map<String, Object> model = new LinkedHashMap<>();
+        model.put("format", "hashed-ngram-logreg/1");
+        model.put("features", FEATURES);
+        model.put("ngramMax", 2);
+        model.put("labels", LABELS);
+        model.put("intercepts", intercepts);
+        model.put("weights", weights);
+        return model;
+    }
+}
@@ -0,0 +1,67 @@
+package com.aegis.agent.benchmarks;
+
+import com.aegis.agent.config.AegisProperties;
+import com.aegis.agent.domain.AnalysisResult;
+import com.aegis.agent.service.LogAnalysisService;
+import com.aegis.agent.service.LogSignatureCatalog;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.io.DefaultResourceLoader;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link LogAnalysisService} over 1MB and 20MB uploads. {@code bytes} takes the in-memory path, which goes
+ * parallel above the default threshold; {@code stream} is the chunked sequential path used for smaller uploads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx1g")
+public class LogAnalysisBenchmark {
+
+    @Param({"1048576", "20971520"})
+    int logBytes;
+
+    private LogAnalysisService service;
+    private byte[] log;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        AegisProperties properties = new AegisProperties();
+        LogSignatureCatalog catalog = new LogSignatureCatalog(properties, new DefaultResourceLoader(), new SimpleMeterRegistry());
+        service = new LogAnalysisService(catalog, properties);
+        log = Payloads.log(logBytes);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        service.shutdown();
+    }
+
+    @Benchmark
+    public AnalysisResult bytes() throws IOException {
+        return service.analyze(log);
+    }
+
+    @Benchmark
+    public AnalysisResult stream() throws IOException {
+        return service.analyze(new ByteArrayInputStream(log));
+    }
+}
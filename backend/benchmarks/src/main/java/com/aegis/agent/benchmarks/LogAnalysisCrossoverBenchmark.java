@@ -0,0 +1,78 @@
+package com.aegis.agent.benchmarks;
+
+import com.aegis.agent.config.AegisProperties;
+import com.aegis.agent.domain.AnalysisResult;
+import com.aegis.agent.service.LogAnalysisService;
+import com.aegis.agent.service.LogSignatureCatalog;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.io.DefaultResourceLoader;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sequential against fork-join analysis of the same in-memory log per size and pool width, to place
+ * {@code LOG_ANALYSIS_PARALLEL_THRESHOLD_BYTES}: the threshold belongs at the smallest size where {@code parallel}
+ * beats {@code sequential} for the parallelism used in production. Only meaningful on a host with at least as many
+ * cores as the largest {@code parallelism} value.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx1g")
+public class LogAnalysisCrossoverBenchmark {
+
+    @Param({"262144", "1048576", "2097152", "4194304", "8388608", "16777216", "33554432"})
+    int logBytes;
+
+    @Param({"2", "4"})
+    int parallelism;
+
+    private LogAnalysisService sequential;
+    private LogAnalysisService parallel;
+    private byte[] log;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        LogSignatureCatalog catalog = new LogSignatureCatalog(new AegisProperties(), new DefaultResourceLoader(), new SimpleMeterRegistry());
+        AegisProperties sequentialProperties = new AegisProperties();
+        sequentialProperties.setLogAnalysisParallelThresholdBytes(0);
+        AegisProperties parallelProperties = new AegisProperties();
+        parallelProperties.setLogAnalysisParallelThresholdBytes(1);
+        parallelProperties.setLogAnalysisParallelism(parallelism);
+        sequential = new LogAnalysisService(catalog, sequentialProperties);
+        parallel = new LogAnalysisService(catalog, parallelProperties);
+        log = Payloads.log(logBytes);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        sequential.shutdown();
+        parallel.shutdown();
+    }
+
+    @Benchmark
+    public AnalysisResult sequential() throws IOException {
+        return sequential.analyze(log);
+    }
+
+    @Benchmark
+    public AnalysisResult parallel() throws IOException {
+        return parallel.analyze(log);
+    }
+}
@@ -0,0 +1,88 @@
+package com.aegis.agent.benchmarks;
+
+import com.aegis.agent.domain.IntentResult;
+import com.aegis.agent.service.CloudCompletionReader;
+import com.aegis.agent.service.DeepPavlovResponseReader;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Intent provider response parsing: the streaming readers against the previous approach of binding the whole body
+ * to a {@code Map} and, for the cloud answer, running {@code readTree} on the message content. DeepPavlov is
+ * measured for a single text and for a full batch of 16 predictions.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResponseParsingBenchmark {
+
+    @Param({"1", "16"})
+    int deepPavlovTexts;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final CloudCompletionReader cloudReader = new CloudCompletionReader(objectMapper);
+    private final DeepPavlovResponseReader deepPavlovReader = new DeepPavlovResponseReader(objectMapper);
+    private byte[] cloudResponse;
+    private byte[] deepPavlovResponse;
+
+    @Setup
+    public void setUp() {
+        cloudResponse = Payloads.cloudCompletionResponse();
+        deepPavlovResponse = Payloads.deepPavlovResponse(deepPavlovTexts);
+    }
+
+    @Benchmark
+    public CloudCompletionReader.Completion cloudStreaming() throws IOException {
+        return cloudReader.read(new ByteArrayInputStream(cloudResponse));
+    }
+
+    @Benchmark
+    public IntentResult cloudMapThenTree() throws IOException {
+        Map<?, ?> response = objectMapper.readValue(new ByteArrayInputStream(cloudResponse), Map.class);
+        List<?> choices = (List<?>) response.get("choices");
+        Map<?, ?> message = (Map<?, ?>) ((Map<?, ?>) choices.get(0)).get("message");
+        JsonNode node = objectMapper.readTree((String) message.get("content"));
+        return new IntentResult(node.path("intent").asText("Unknown"), node.path("confidence").asDouble(0.0));
+    }
+
+    @Benchmark
+    public List<IntentResult> deepPavlovStreaming() throws IOException {
+        return deepPavlovReader.read(new ByteArrayInputStream(deepPavlovResponse), deepPavlovTexts);
+    }
+
+    @Benchmark
+    public List<IntentResult> deepPavlovMap() throws IOException {
+        Map<?, ?> response = objectMapper.readValue(new ByteArrayInputStream(deepPavlovResponse), Map.class);
+        if (deepPavlovTexts == 1) {
+            return List.of(new IntentResult((String) response.get("intent"), ((Number) response.get("confidence")).doubleValue()));
+        }
+        List<?> predictions = (List<?>) response.get("predictions");
+        List<IntentResult> results = new ArrayList<>(predictions.size());
+        for (Object prediction : predictions) {
+            Map<?, ?> map = (Map<?, ?>) prediction;
+            results.add(new IntentResult((String) map.get("label"), ((Number) map.get("score")).doubleValue()));
+        }
+        return results;
+    }
+}
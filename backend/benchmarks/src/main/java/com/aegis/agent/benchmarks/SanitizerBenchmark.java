@@ -0,0 +1,84 @@
+package com.aegis.agent.benchmarks;
+
+import com.aegis.agent.config.AegisProperties;
+import com.aegis.agent.service.SensitiveDataSanitizer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link SensitiveDataSanitizer} on a clean 1KB chat query and on PII-heavy text, alone and inside the event
+ * payload shape that is sanitized before indexing, plus user-id pseudonymization over a rotating set of ids.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SanitizerBenchmark {
+
+    @Param({"chat-1k", "pii-1k", "pii-16k"})
+    String payload;
+
+    private SensitiveDataSanitizer sanitizer;
+    private String text;
+    private Map<String, Object> event;
+    private final String[] userIds = new String[1024];
+    private int nextUser;
+
+    @Setup
+    public void setUp() {
+        AegisProperties properties = new AegisProperties();
+        properties.setPseudonymSecret("benchmark-secret");
+        sanitizer = new SensitiveDataSanitizer(properties, new SimpleMeterRegistry());
+        text = switch (payload) {
+            case "chat-1k" -> Payloads.chatQuery(1024);
+            case "pii-1k" -> Payloads.piiHeavy(1024);
+            case "pii-16k" -> Payloads.piiHeavy(16 * 1024);
+            default -> throw new IllegalArgumentException("Unknown payload " + payload);
+        };
+        event = Map.of(
+                "query", text,
+                "platform", "Android",
+                "deviceMetadata", Map.of("model", "Pixel 7", "osVersion", "14", "note", text),
+                "matchedSignals", List.of("Error503", text)
+        );
+        for (int i = 0; i < userIds.length; i++) {
+            userIds[i] = "User" + i + "@example.com";
+        }
+    }
+
+    @Benchmark
+    public String sanitize() {
+        return sanitizer.sanitize(text);
+    }
+
+    @Benchmark
+    public Map<String, Object> sanitizeMap() {
+        return sanitizer.sanitizeMap(event);
+    }
+
+    @Benchmark
+    public Map<String, Object> sanitizeEvent() {
+        return sanitizer.sanitizeEvent("CHAT_GUIDED", event);
+    }
+
+    @Benchmark
+    public String pseudonymize() {
+        return sanitizer.pseudonymize(userIds[nextUser++ & (userIds.length - 1)]);
+    }
+}
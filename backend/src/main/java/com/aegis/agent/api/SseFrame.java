@@ -0,0 +1,27 @@
+package com.aegis.agent.api;
+
+import java.nio.charset.StandardCharsets;
+import java.util.regex.Pattern;
+
+/**
+ * Encodes one server-sent event. Every line of the payload gets its own {@code data:} field, so a payload that spans
+ * lines, such as JSON from a mapper configured to indent its output, is reassembled by the client instead of ending
+ * the event early.
+ */
+final class SseFrame {
+
+    private static final Pattern LINE_BREAK = Pattern.compile("\r\n|\r|\n");
+
+    private SseFrame() {
+    }
+
+    static byte[] encode(String event, String data) {
+        StringBuilder frame = new StringBuilder(data.length() + event.length() + 16);
+        frame.append("event: ").append(event).append('\n');
+        for (String line : LINE_BREAK.split(data, -1)) {
+            frame.append("data: ").append(line).append('\n');
+        }
+        frame.append('\n');
+        return frame.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
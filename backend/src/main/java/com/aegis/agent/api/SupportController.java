@@ -2,32 +2,42 @@ package com.aegis.agent.api;
 
 import com.aegis.agent.api.dto.ChatRequest;
 import com.aegis.agent.api.dto.ChatResponse;
+import com.aegis.agent.api.dto.ClassifyBatchItem;
+import com.aegis.agent.api.dto.ClassifyBatchRequest;
 import com.aegis.agent.api.dto.LogAnalysisResponse;
 import com.aegis.agent.api.dto.IncidentTimelineResponse;
 import com.aegis.agent.api.dto.JiraValidationResponse;
 import com.aegis.agent.api.dto.ComponentStatusResponse;
-import com.aegis.agent.api.dto.ComponentStatusItem;
 import com.aegis.agent.config.AegisProperties;
 import com.aegis.agent.domain.AnalysisResult;
 import com.aegis.agent.domain.IntentResolution;
 import com.aegis.agent.domain.IntentResult;
 import com.aegis.agent.integration.JiraClient;
 import com.aegis.agent.integration.OpenSearchClient;
+import com.aegis.agent.service.ComponentStatusRefresher;
 import com.aegis.agent.service.EscalationService;
-import com.aegis.agent.service.DeepPavlovIntentProvider;
 import com.aegis.agent.service.IntentService;
 import com.aegis.agent.service.LogAnalysisService;
 import com.aegis.agent.service.PlaybookService;
-import com.aegis.agent.service.SensitiveDataSanitizer;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.validation.Valid;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
-import org.springframework.core.env.Environment;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.io.IOException;
-import java.net.InetSocketAddress;
-import java.net.Socket;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.HashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
@@ -39,8 +49,9 @@ import java.util.regex.Pattern;
 @RequestMapping("/api")
 public class SupportController {
 
+    private static final Logger log = LoggerFactory.getLogger(SupportController.class);
     private static final Pattern LETTER_PATTERN = Pattern.compile("[A-Za-z]");
-    private static final long COMPONENT_STATUS_CACHE_MS = 15_000L;
+    private static final int CHARS_PER_TOKEN = 4;
 
     private final IntentService intentService;
     private final LogAnalysisService logAnalysisService;
@@ -49,13 +60,8 @@ public class SupportController {
     private final AegisProperties properties;
     private final OpenSearchClient openSearchClient;
     private final JiraClient jiraClient;
-    private final DeepPavlovIntentProvider deepPavlovIntentProvider;
-    private final Environment environment;
-    private final SensitiveDataSanitizer sanitizer;
-
-    private final Object componentStatusLock = new Object();
-    private volatile long componentStatusCachedAt;
-    private volatile ComponentStatusResponse componentStatusCachedValue;
+    private final ComponentStatusRefresher componentStatusRefresher;
+    private final ObjectMapper objectMapper;
 
     public SupportController(
             IntentService intentService,
@@ -65,9 +71,8 @@ public class SupportController {
             AegisProperties properties,
             OpenSearchClient openSearchClient,
             JiraClient jiraClient,
-            DeepPavlovIntentProvider deepPavlovIntentProvider,
-            Environment environment,
-            SensitiveDataSanitizer sanitizer
+            ComponentStatusRefresher componentStatusRefresher,
+            ObjectMapper objectMapper
     ) {
         this.intentService = intentService;
         this.logAnalysisService = logAnalysisService;
@@ -76,48 +81,122 @@ public class SupportController {
         this.properties = properties;
         this.openSearchClient = openSearchClient;
         this.jiraClient = jiraClient;
-        this.deepPavlovIntentProvider = deepPavlovIntentProvider;
-        this.environment = environment;
-        this.sanitizer = sanitizer;
+        this.componentStatusRefresher = componentStatusRefresher;
+        this.objectMapper = objectMapper;
     }
 
     @PostMapping("/chat")
     public ChatResponse chat(@Valid @RequestBody ChatRequest request) {
+        String correlationId = assignCorrelationId(request);
+
+        if (isLowInformationQuery(request.getQuery())) {
+            return needMoreInfo(request);
+        }
+
+        IntentResolution resolution = intentService.classifyResolution(buildInferenceInput(request), request.isRetryAttempt());
+        ChatResponse response = diagnosis(correlationId, resolution, request.isRetryAttempt(), "GUIDED");
+        indexChatEvent("CHAT_GUIDED", request, resolution.getPrimaryIntent(), null, null);
+        return response;
+    }
+
+    /**
+     * Server-sent events variant of {@code /api/chat}. A {@code diagnosis} event with status {@code PRELIMINARY} is
+     * sent for each interim classification, starting with the rule-based one, and the stream ends with a
+     * {@code final} event carrying the same response {@code /api/chat} would return. Telemetry is written once, for
+     * the final response. The 200 is committed with the first event, so a later failure ends the stream with an
+     * {@code error} event whose status is {@code ERROR} instead of a {@code final} one.
+     */
+    @PostMapping(value = "/chat/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<StreamingResponseBody> chatStream(@Valid @RequestBody ChatRequest request) {
+        String correlationId = assignCorrelationId(request);
+        StreamingResponseBody body = output -> {
+            try {
+                if (isLowInformationQuery(request.getQuery())) {
+                    writeChatEvent(output, "final", needMoreInfo(request));
+                    return;
+                }
+                IntentResolution resolution = intentService.classifyResolution(
+                        buildInferenceInput(request),
+                        request.isRetryAttempt(),
+                        interim -> writeChatEvent(output, "diagnosis",
+                                diagnosis(correlationId, interim, request.isRetryAttempt(), "PRELIMINARY"))
+                );
+                ChatResponse response = diagnosis(correlationId, resolution, request.isRetryAttempt(), "GUIDED");
+                indexChatEvent("CHAT_GUIDED", request, resolution.getPrimaryIntent(), null, null);
+                writeChatEvent(output, "final", response);
+            } catch (UncheckedIOException ex) {
+                throw ex.getCause();
+            } catch (RuntimeException ex) {
+                log.warn("Chat stream {} failed: {}", correlationId, ex.getMessage());
+                try {
+                    writeChatEvent(output, "error", streamFailure(correlationId));
+                } catch (UncheckedIOException writeFailure) {
+                    throw writeFailure.getCause();
+                }
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.TEXT_EVENT_STREAM)
+                .cacheControl(CacheControl.noCache())
+                .body(body);
+    }
+
+    private String assignCorrelationId(ChatRequest request) {
         String correlationId = request.getCorrelationId() == null || request.getCorrelationId().isBlank()
                 ? UUID.randomUUID().toString()
                 : request.getCorrelationId();
         request.setCorrelationId(correlationId);
+        return correlationId;
+    }
 
+    private ChatResponse needMoreInfo(ChatRequest request) {
         ChatResponse response = new ChatResponse();
-        response.setCorrelationId(correlationId);
+        response.setCorrelationId(request.getCorrelationId());
+        response.setIntent("Unknown");
+        response.setConfidence(0.0);
+        response.setStatus("NEED_MORE_INFO");
+        response.setMessage("Please describe the problem with at least one symptom (for example: OTP invalid, push timeout, passkey failure). ");
+        response.setActions(List.of(
+                "Include app name and platform (Android/iOS/Desktop)",
+                "Mention exact error text if visible",
+                "Share when the issue started"
+        ));
+        indexChatEvent("CHAT_NEED_MORE_INFO", request, new IntentResult("Unknown", 0.0), null, null);
+        return response;
+    }
 
-        if (isLowInformationQuery(request.getQuery())) {
-            response.setIntent("Unknown");
-            response.setConfidence(0.0);
-            response.setStatus("NEED_MORE_INFO");
-            response.setMessage("Please describe the problem with at least one symptom (for example: OTP invalid, push timeout, passkey failure). ");
-            response.setActions(List.of(
-                    "Include app name and platform (Android/iOS/Desktop)",
-                    "Mention exact error text if visible",
-                    "Share when the issue started"
-            ));
-            indexChatEvent("CHAT_NEED_MORE_INFO", request, new IntentResult("Unknown", 0.0), null, null);
-            return response;
-        }
+    private ChatResponse streamFailure(String correlationId) {
+        ChatResponse response = new ChatResponse();
+        response.setCorrelationId(correlationId);
+        response.setIntent("Unknown");
+        response.setConfidence(0.0);
+        response.setStatus("ERROR");
+        response.setMessage("Diagnosis could not be completed. Please send the request again.");
+        response.setActions(List.of());
+        return response;
+    }
 
-        IntentResolution resolution = intentService.classifyResolution(buildInferenceInput(request), request.isRetryAttempt());
+    private ChatResponse diagnosis(String correlationId, IntentResolution resolution, boolean retryAttempt, String status) {
         IntentResult intent = resolution.getPrimaryIntent();
-
+        ChatResponse response = new ChatResponse();
+        response.setCorrelationId(correlationId);
         response.setIntent(intent.intent());
         response.setConfidence(intent.confidence());
-
-        response.setStatus("GUIDED");
-        response.setMessage(buildDiagnosisMessage(resolution, request.isRetryAttempt()));
+        response.setStatus(status);
+        response.setMessage(buildDiagnosisMessage(resolution, retryAttempt));
         response.setActions(refinedActions(resolution));
-        indexChatEvent("CHAT_GUIDED", request, intent, null, null);
         return response;
     }
 
+    private void writeChatEvent(OutputStream output, String event, ChatResponse response) {
+        try {
+            output.write(SseFrame.encode(event, objectMapper.writeValueAsString(response)));
+            output.flush();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
     private String buildDiagnosisMessage(IntentResolution resolution, boolean retryAttempt) {
         String primary = resolution.getPrimaryIntent().intent();
         String source = resolution.getSourceSummary();
@@ -133,7 +212,8 @@ public class SupportController {
                     : "Primary diagnosis from local fallback: probable issue is " + primary + ".";
         }
         if (resolution.hasSecondaryIntent()) {
-            return base + " DeepPavlov cross-check also suggests " + resolution.getSecondaryIntent().intent() + ".";
+            String crossCheck = source != null && source.toLowerCase().contains("local model") ? "Local model" : "DeepPavlov";
+            return base + " " + crossCheck + " cross-check also suggests " + resolution.getSecondaryIntent().intent() + ".";
         }
         return base + " Source: " + resolution.getSourceSummary() + ".";
     }
@@ -146,27 +226,49 @@ public class SupportController {
         return merged.stream().limit(5).toList();
     }
 
+    /**
+     * Retry attempts add the previous diagnosis, attempted actions and attempt number to the query. The result is
+     * kept within {@code aegis.cloud-intent-max-input-tokens} (about four characters per token): the query keeps
+     * priority, later context is cut first, and the attempt number line is always kept.
+     */
     private String buildInferenceInput(ChatRequest request) {
         if (!request.isRetryAttempt()) {
             return request.getQuery();
         }
 
-        StringBuilder builder = new StringBuilder(request.getQuery() == null ? "" : request.getQuery());
+        int maxTokens = properties.getCloudIntentMaxInputTokens();
+        String attemptLine = request.getAttemptCount() != null && request.getAttemptCount() > 0
+                ? "\nRetry attempt number: " + request.getAttemptCount()
+                : "";
+        int budget = maxTokens > 0 ? Math.max(0, maxTokens * CHARS_PER_TOKEN - attemptLine.length()) : Integer.MAX_VALUE;
+
+        StringBuilder builder = new StringBuilder();
+        appendWithinBudget(builder, request.getQuery() == null ? "" : request.getQuery(), budget);
         if (request.getPreviousDiagnosis() != null && !request.getPreviousDiagnosis().isBlank()) {
-            builder.append("\n\nPrevious diagnosis:\n").append(request.getPreviousDiagnosis());
+            appendWithinBudget(builder, "\n\nPrevious diagnosis:\n" + request.getPreviousDiagnosis(), budget);
         }
         if (request.getAttemptedActions() != null && !request.getAttemptedActions().isEmpty()) {
-            builder.append("\n\nAttempted actions:\n");
+            appendWithinBudget(builder, "\n\nAttempted actions:\n", budget);
             for (String action : request.getAttemptedActions()) {
-                builder.append("- ").append(action).append("\n");
+                appendWithinBudget(builder, "- " + action + "\n", budget);
             }
         }
-        if (request.getAttemptCount() != null && request.getAttemptCount() > 0) {
-            builder.append("\nRetry attempt number: ").append(request.getAttemptCount());
-        }
+        builder.append(attemptLine);
         return builder.toString();
     }
 
+    private static void appendWithinBudget(StringBuilder builder, String text, int budget) {
+        int room = budget - builder.length();
+        if (room > 0) {
+            int end = Math.min(text.length(), room);
+            // Never keep half a surrogate pair: a lone high surrogate cannot be encoded as UTF-8.
+            if (end < text.length() && Character.isHighSurrogate(text.charAt(end - 1))) {
+                end--;
+            }
+            builder.append(text, 0, end);
+        }
+    }
+
     private boolean isLowInformationQuery(String query) {
         if (query == null) {
             return true;
@@ -175,13 +277,51 @@ public class SupportController {
         return trimmed.length() < 3 || !LETTER_PATTERN.matcher(trimmed).find();
     }
 
+    /**
+     * Re-scores historical queries without writing chat telemetry. Results are streamed as one JSON object per line
+     * in completion order, each carrying the index of its query and the routing source summary.
+     */
+    @PostMapping(value = "/classify/batch", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> classifyBatch(@Valid @RequestBody ClassifyBatchRequest request) {
+        List<String> queries = request.getQueries();
+        if (queries.size() > properties.getIntentBatchMaxQueries()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "At most " + properties.getIntentBatchMaxQueries() + " queries per batch");
+        }
+        StreamingResponseBody body = output -> {
+            try {
+                intentService.classifyBatch(queries, (resolution, index) -> writeBatchItem(output, index, resolution));
+            } catch (UncheckedIOException ex) {
+                throw ex.getCause();
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+    }
+
+    private void writeBatchItem(OutputStream output, int index, IntentResolution resolution) {
+        ClassifyBatchItem item = new ClassifyBatchItem();
+        item.setIndex(index);
+        item.setIntent(resolution.getPrimaryIntent().intent());
+        item.setConfidence(resolution.getPrimaryIntent().confidence());
+        if (resolution.hasSecondaryIntent()) {
+            item.setSecondaryIntent(resolution.getSecondaryIntent().intent());
+        }
+        item.setSource(resolution.getSourceSummary());
+        try {
+            output.write(objectMapper.writeValueAsBytes(item));
+            output.write('\n');
+            output.flush();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
     @PostMapping(value = "/analyze-logs", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
     public LogAnalysisResponse analyzeLogs(
             @RequestPart("logFile") MultipartFile logFile,
             @RequestPart(value = "correlationId", required = false) String correlationId
     ) throws IOException {
-        String rawLog = new String(logFile.getBytes());
-        AnalysisResult result = logAnalysisService.analyze(rawLog);
+        AnalysisResult result = analyzeUpload(logFile);
 
         LogAnalysisResponse response = new LogAnalysisResponse();
         response.setRootCause(result.rootCause());
@@ -189,6 +329,8 @@ public class SupportController {
         response.setSeverity(result.severity());
         response.setConfidence(result.confidence());
         response.setMatchedSignals(result.matchedSignals());
+        response.setIntent(result.intent());
+        response.setSignalOccurrences(result.signalOccurrences());
         response.setCorrelationId(correlationId == null || correlationId.isBlank() ? UUID.randomUUID().toString() : correlationId);
         Map<String, Object> event = new HashMap<>();
         event.put("correlationId", response.getCorrelationId());
@@ -197,10 +339,27 @@ public class SupportController {
         event.put("severity", response.getSeverity());
         event.put("confidence", response.getConfidence());
         event.put("matchedSignals", response.getMatchedSignals());
+        event.put("intent", response.getIntent());
         openSearchClient.indexEvent("LOG_ANALYSIS", event);
         return response;
     }
 
+    private AnalysisResult analyzeUpload(MultipartFile logFile) throws IOException {
+        if (!logAnalysisService.isParallelCandidate(logFile.getSize())) {
+            try (InputStream rawLog = logFile.getInputStream()) {
+                return logAnalysisService.analyze(rawLog);
+            }
+        }
+        // Large uploads are moved to a file so the analyzer can scan line-aligned segments in parallel.
+        Path spooled = Files.createTempFile("aegis-log-", ".log");
+        try {
+            logFile.transferTo(spooled);
+            return logAnalysisService.analyze(spooled);
+        } finally {
+            Files.deleteIfExists(spooled);
+        }
+    }
+
     @PostMapping(value = "/escalate", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
     public ChatResponse escalate(
             @RequestPart("request") @Valid ChatRequest request,
@@ -212,8 +371,9 @@ public class SupportController {
         request.setCorrelationId(correlationId);
 
         byte[] logBytes = logFile == null ? null : logFile.getBytes();
-        String rawLog = logFile == null ? request.getQuery() : new String(logBytes);
-        AnalysisResult analysis = logAnalysisService.analyze(rawLog);
+        AnalysisResult analysis = logBytes == null
+                ? logAnalysisService.analyze(request.getQuery())
+                : logAnalysisService.analyze(logBytes);
 
         String ticket;
         try {
@@ -314,67 +474,7 @@ public class SupportController {
 
     @GetMapping("/status/components")
     public ComponentStatusResponse componentStatus() {
-        long now = System.currentTimeMillis();
-        ComponentStatusResponse cached = componentStatusCachedValue;
-        if (cached != null && now - componentStatusCachedAt < COMPONENT_STATUS_CACHE_MS) {
-            return cached;
-        }
-
-        synchronized (componentStatusLock) {
-            long current = System.currentTimeMillis();
-            if (componentStatusCachedValue != null && current - componentStatusCachedAt < COMPONENT_STATUS_CACHE_MS) {
-                return componentStatusCachedValue;
-            }
-            ComponentStatusResponse rebuilt = buildComponentStatus();
-            componentStatusCachedValue = rebuilt;
-            componentStatusCachedAt = current;
-            return rebuilt;
-        }
-    }
-
-    private ComponentStatusResponse buildComponentStatus() {
-        Map<String, ComponentStatusItem> components = new HashMap<>();
-        components.put("backend", new ComponentStatusItem("UP", "http://localhost:8080/actuator/health", "Core API"));
-        components.put("deeppavlov", new ComponentStatusItem(
-                deepPavlovIntentProvider.isHealthy() ? "UP" : "DOWN",
-                properties.getDeeppavlovUrl(),
-                "Intent inference"
-        ));
-        components.put("opensearch", new ComponentStatusItem(
-                openSearchClient.isHealthy() ? "UP" : "DOWN",
-                properties.getOpenSearchUrl(),
-                "Log indexing and replay"
-        ));
-        components.put("jira", new ComponentStatusItem(
-                jiraClient.isHealthy() ? "UP" : "DOWN",
-                properties.getJiraBaseUrl(),
-                "Ticket escalation"
-        ));
-
-        String smtpHost = environment.getProperty("spring.mail.host", "");
-        int smtpPort = Integer.parseInt(environment.getProperty("spring.mail.port", "587"));
-        boolean smtpUp = isSmtpReachable(smtpHost, smtpPort);
-        components.put("email", new ComponentStatusItem(
-                smtpUp ? "UP" : "DOWN",
-                smtpHost.isBlank() ? null : "smtp://" + smtpHost + ":" + smtpPort,
-                "Escalation email"
-        ));
-
-        ComponentStatusResponse response = new ComponentStatusResponse();
-        response.setComponents(components);
-        return response;
-    }
-
-    private boolean isSmtpReachable(String host, int port) {
-        if (host == null || host.isBlank()) {
-            return false;
-        }
-        try (Socket socket = new Socket()) {
-            socket.connect(new InetSocketAddress(host, port), 1500);
-            return true;
-        } catch (IOException ex) {
-            return false;
-        }
+        return componentStatusRefresher.snapshot();
     }
 
     private void indexChatEvent(String eventType, ChatRequest request, IntentResult intent, AnalysisResult analysis, String ticket) {
@@ -384,14 +484,15 @@ public class SupportController {
         event.put("intent", intent.intent());
         event.put("confidence", intent.confidence());
         event.put("ticketId", ticket);
-        event.put("userRef", sanitizer.pseudonymize(request.getUserId()));
-        event.put("authProtocol", sanitizer.sanitize(request.getAuthProtocol()));
-        event.put("challengeId", sanitizer.sanitize(request.getChallengeId()));
-        event.put("priority", sanitizer.sanitize(request.getPriority()));
+        // Raw values: OpenSearchClient applies the CHAT field policies (pseudonymized userRef, hashed challengeId, redacted free text).
+        event.put("userRef", request.getUserId());
+        event.put("authProtocol", request.getAuthProtocol());
+        event.put("challengeId", request.getChallengeId());
+        event.put("priority", request.getPriority());
         event.put("attemptCount", request.getAttemptCount());
         if (analysis != null) {
-            event.put("rootCause", sanitizer.sanitize(analysis.rootCause()));
-            event.put("fixAction", sanitizer.sanitize(analysis.fixAction()));
+            event.put("rootCause", analysis.rootCause());
+            event.put("fixAction", analysis.fixAction());
         }
         openSearchClient.indexEvent(eventType, event);
     }
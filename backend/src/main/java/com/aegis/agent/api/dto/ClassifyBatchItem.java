@@ -0,0 +1,50 @@
+package com.aegis.agent.api.dto;
+
+public class ClassifyBatchItem {
+
+    private int index;
+    private String intent;
+    private double confidence;
+    private String secondaryIntent;
+    private String source;
+
+    public int getIndex() {
+        return index;
+    }
+
+    public void setIndex(int index) {
+        this.index = index;
+    }
+
+    public String getIntent() {
+        return intent;
+    }
+
+    public void setIntent(String intent) {
+        this.intent = intent;
+    }
+
+    public double getConfidence() {
+        return confidence;
+    }
+
+    public void setConfidence(double confidence) {
+        this.confidence = confidence;
+    }
+
+    public String getSecondaryIntent() {
+        return secondaryIntent;
+    }
+
+    public void setSecondaryIntent(String secondaryIntent) {
+        this.secondaryIntent = secondaryIntent;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    public void setSource(String source) {
+        this.source = source;
+    }
+}
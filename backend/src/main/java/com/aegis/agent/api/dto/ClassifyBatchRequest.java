@@ -0,0 +1,19 @@
+package com.aegis.agent.api.dto;
+
+import jakarta.validation.constraints.NotEmpty;
+
+import java.util.List;
+
+public class ClassifyBatchRequest {
+
+    @NotEmpty
+    private List<String> queries;
+
+    public List<String> getQueries() {
+        return queries;
+    }
+
+    public void setQueries(List<String> queries) {
+        this.queries = queries;
+    }
+}
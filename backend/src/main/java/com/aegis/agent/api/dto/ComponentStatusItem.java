@@ -2,40 +2,35 @@ package com.aegis.agent.api.dto;
 
 public class ComponentStatusItem {
 
-    private String status;
-    private String url;
-    private String detail;
+    private final String status;
+    private final String url;
+    private final String detail;
+    private final String circuit;
 
-    public ComponentStatusItem() {
+    public ComponentStatusItem(String status, String url, String detail) {
+        this(status, url, detail, null);
     }
 
-    public ComponentStatusItem(String status, String url, String detail) {
+    public ComponentStatusItem(String status, String url, String detail, String circuit) {
         this.status = status;
         this.url = url;
         this.detail = detail;
+        this.circuit = circuit;
     }
 
     public String getStatus() {
         return status;
     }
 
-    public void setStatus(String status) {
-        this.status = status;
-    }
-
     public String getUrl() {
         return url;
     }
 
-    public void setUrl(String url) {
-        this.url = url;
-    }
-
     public String getDetail() {
         return detail;
     }
 
-    public void setDetail(String detail) {
-        this.detail = detail;
+    public String getCircuit() {
+        return circuit;
     }
 }
@@ -4,13 +4,13 @@ import java.util.Map;
 
 public class ComponentStatusResponse {
 
-    private Map<String, ComponentStatusItem> components;
+    private final Map<String, ComponentStatusItem> components;
 
-    public Map<String, ComponentStatusItem> getComponents() {
-        return components;
+    public ComponentStatusResponse(Map<String, ComponentStatusItem> components) {
+        this.components = Map.copyOf(components);
     }
 
-    public void setComponents(Map<String, ComponentStatusItem> components) {
-        this.components = components;
+    public Map<String, ComponentStatusItem> getComponents() {
+        return components;
     }
 }
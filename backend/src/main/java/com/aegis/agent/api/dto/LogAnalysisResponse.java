@@ -1,5 +1,7 @@
 package com.aegis.agent.api.dto;
 
+import com.aegis.agent.domain.SignalOccurrence;
+
 import java.util.List;
 
 public class LogAnalysisResponse {
@@ -9,6 +11,8 @@ public class LogAnalysisResponse {
     private String severity;
     private double confidence;
     private List<String> matchedSignals;
+    private String intent;
+    private List<SignalOccurrence> signalOccurrences;
     private String correlationId;
 
     public String getRootCause() {
@@ -51,6 +55,22 @@ public class LogAnalysisResponse {
         this.matchedSignals = matchedSignals;
     }
 
+    public String getIntent() {
+        return intent;
+    }
+
+    public void setIntent(String intent) {
+        this.intent = intent;
+    }
+
+    public List<SignalOccurrence> getSignalOccurrences() {
+        return signalOccurrences;
+    }
+
+    public void setSignalOccurrences(List<SignalOccurrence> signalOccurrences) {
+        this.signalOccurrences = signalOccurrences;
+    }
+
     public String getCorrelationId() {
         return correlationId;
     }
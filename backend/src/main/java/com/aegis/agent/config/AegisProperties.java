@@ -44,6 +44,71 @@ public class AegisProperties {
     private boolean jiraValidationOnStartup;
     private boolean failOnJiraValidation;
 
+    private String logSignatureCatalog = "classpath:log-signatures.json";
+    private long logSignatureReloadIntervalMs = 10_000L;
+    private long logAnalysisParallelThresholdBytes = 4L * 1024 * 1024;
+    private int logAnalysisParallelism;
+
+    private String pseudonymSecret;
+    private int pseudonymCacheSize = 10_000;
+
+    private int openSearchQueueCapacity = 10_000;
+    private int openSearchBulkMaxActions = 500;
+    private long openSearchBulkLingerMs = 1_000L;
+    private String openSearchQueueOverflow = "drop-oldest";
+    private long openSearchQueueBlockTimeoutMs = 100L;
+
+    private String openSearchSpoolDirectory;
+    private int openSearchSpoolSegmentBytes = 16 * 1024 * 1024;
+    private int openSearchSpoolMaxSegments = 16;
+    private long openSearchSpoolReplayIntervalMs = 5_000L;
+
+    private long intentDeadlineMs = 3_000L;
+    private int intentFanOutThreads;
+    private int intentFanOutQueueCapacity;
+    private int servletMaxThreads = 200;
+    private int servletMaxConnections = 8_192;
+
+    private int intentCacheSize = 1_000;
+    private long intentCacheTtlMs = 300_000L;
+
+    private int intentBreakerFailureThreshold = 5;
+    private long intentBreakerOpenMs = 30_000;
+    private long intentTimeoutMinMs = 500;
+    private long intentTimeoutMaxMs = 8_000;
+
+    private long httpConnectTimeoutMs = 3_000;
+    private long httpPoolAcquireTimeoutMs = 2_000;
+    private long httpKeepAliveSeconds;
+    private int openSearchMaxConnections = 8;
+    private long openSearchReadTimeoutMs = 10_000;
+    private boolean openSearchHttp2;
+    private int jiraMaxConnections = 4;
+    private long jiraReadTimeoutMs = 30_000;
+    private boolean jiraHttp2;
+    private int deeppavlovMaxConnections = 32;
+    private long deeppavlovReadTimeoutMs = 8_000;
+    private boolean deeppavlovHttp2;
+    private int cloudIntentMaxConnections = 32;
+    private long cloudIntentReadTimeoutMs = 8_000;
+    private boolean cloudIntentHttp2 = true;
+
+    private int deeppavlovBatchMaxSize = 16;
+    private long deeppavlovBatchLingerMs = 5;
+
+    private String localIntentModel;
+    private double localIntentConfidenceThreshold;
+
+    private int intentBatchMaxQueries = 1000;
+    private int intentBatchParallelism = 8;
+
+    private int cloudIntentMaxInputTokens = 1000;
+
+    private boolean virtualThreadsEnabled;
+
+    private long componentStatusRefreshMs = 15_000L;
+    private long componentProbeTimeoutMs = 2_000L;
+
     public double getConfidenceThreshold() {
         return confidenceThreshold;
     }
@@ -283,4 +348,412 @@ public class AegisProperties {
     public void setFailOnJiraValidation(boolean failOnJiraValidation) {
         this.failOnJiraValidation = failOnJiraValidation;
     }
+
+    public String getLogSignatureCatalog() {
+        return logSignatureCatalog;
+    }
+
+    public void setLogSignatureCatalog(String logSignatureCatalog) {
+        this.logSignatureCatalog = logSignatureCatalog;
+    }
+
+    public long getLogSignatureReloadIntervalMs() {
+        return logSignatureReloadIntervalMs;
+    }
+
+    public void setLogSignatureReloadIntervalMs(long logSignatureReloadIntervalMs) {
+        this.logSignatureReloadIntervalMs = logSignatureReloadIntervalMs;
+    }
+
+    public long getLogAnalysisParallelThresholdBytes() {
+        return logAnalysisParallelThresholdBytes;
+    }
+
+    public void setLogAnalysisParallelThresholdBytes(long logAnalysisParallelThresholdBytes) {
+        this.logAnalysisParallelThresholdBytes = logAnalysisParallelThresholdBytes;
+    }
+
+    public int getLogAnalysisParallelism() {
+        return logAnalysisParallelism;
+    }
+
+    public void setLogAnalysisParallelism(int logAnalysisParallelism) {
+        this.logAnalysisParallelism = logAnalysisParallelism;
+    }
+
+    public String getPseudonymSecret() {
+        return pseudonymSecret;
+    }
+
+    public void setPseudonymSecret(String pseudonymSecret) {
+        this.pseudonymSecret = pseudonymSecret;
+    }
+
+    public int getPseudonymCacheSize() {
+        return pseudonymCacheSize;
+    }
+
+    public void setPseudonymCacheSize(int pseudonymCacheSize) {
+        this.pseudonymCacheSize = pseudonymCacheSize;
+    }
+
+    public int getOpenSearchQueueCapacity() {
+        return openSearchQueueCapacity;
+    }
+
+    public void setOpenSearchQueueCapacity(int openSearchQueueCapacity) {
+        this.openSearchQueueCapacity = openSearchQueueCapacity;
+    }
+
+    public int getOpenSearchBulkMaxActions() {
+        return openSearchBulkMaxActions;
+    }
+
+    public void setOpenSearchBulkMaxActions(int openSearchBulkMaxActions) {
+        this.openSearchBulkMaxActions = openSearchBulkMaxActions;
+    }
+
+    public long getOpenSearchBulkLingerMs() {
+        return openSearchBulkLingerMs;
+    }
+
+    public void setOpenSearchBulkLingerMs(long openSearchBulkLingerMs) {
+        this.openSearchBulkLingerMs = openSearchBulkLingerMs;
+    }
+
+    public String getOpenSearchQueueOverflow() {
+        return openSearchQueueOverflow;
+    }
+
+    public void setOpenSearchQueueOverflow(String openSearchQueueOverflow) {
+        this.openSearchQueueOverflow = openSearchQueueOverflow;
+    }
+
+    public long getOpenSearchQueueBlockTimeoutMs() {
+        return openSearchQueueBlockTimeoutMs;
+    }
+
+    public void setOpenSearchQueueBlockTimeoutMs(long openSearchQueueBlockTimeoutMs) {
+        this.openSearchQueueBlockTimeoutMs = openSearchQueueBlockTimeoutMs;
+    }
+
+    public String getOpenSearchSpoolDirectory() {
+        return openSearchSpoolDirectory;
+    }
+
+    public void setOpenSearchSpoolDirectory(String openSearchSpoolDirectory) {
+        this.openSearchSpoolDirectory = openSearchSpoolDirectory;
+    }
+
+    public int getOpenSearchSpoolSegmentBytes() {
+        return openSearchSpoolSegmentBytes;
+    }
+
+    public void setOpenSearchSpoolSegmentBytes(int openSearchSpoolSegmentBytes) {
+        this.openSearchSpoolSegmentBytes = openSearchSpoolSegmentBytes;
+    }
+
+    public int getOpenSearchSpoolMaxSegments() {
+        return openSearchSpoolMaxSegments;
+    }
+
+    public void setOpenSearchSpoolMaxSegments(int openSearchSpoolMaxSegments) {
+        this.openSearchSpoolMaxSegments = openSearchSpoolMaxSegments;
+    }
+
+    public long getOpenSearchSpoolReplayIntervalMs() {
+        return openSearchSpoolReplayIntervalMs;
+    }
+
+    public void setOpenSearchSpoolReplayIntervalMs(long openSearchSpoolReplayIntervalMs) {
+        this.openSearchSpoolReplayIntervalMs = openSearchSpoolReplayIntervalMs;
+    }
+
+    public long getIntentDeadlineMs() {
+        return intentDeadlineMs;
+    }
+
+    public void setIntentDeadlineMs(long intentDeadlineMs) {
+        this.intentDeadlineMs = intentDeadlineMs;
+    }
+
+    public int getIntentFanOutThreads() {
+        return intentFanOutThreads;
+    }
+
+    public void setIntentFanOutThreads(int intentFanOutThreads) {
+        this.intentFanOutThreads = intentFanOutThreads;
+    }
+
+    public int getIntentFanOutQueueCapacity() {
+        return intentFanOutQueueCapacity;
+    }
+
+    public void setIntentFanOutQueueCapacity(int intentFanOutQueueCapacity) {
+        this.intentFanOutQueueCapacity = intentFanOutQueueCapacity;
+    }
+
+    public int getServletMaxThreads() {
+        return servletMaxThreads;
+    }
+
+    public void setServletMaxThreads(int servletMaxThreads) {
+        this.servletMaxThreads = servletMaxThreads;
+    }
+
+    public int getServletMaxConnections() {
+        return servletMaxConnections;
+    }
+
+    public void setServletMaxConnections(int servletMaxConnections) {
+        this.servletMaxConnections = servletMaxConnections;
+    }
+
+    public int getIntentCacheSize() {
+        return intentCacheSize;
+    }
+
+    public void setIntentCacheSize(int intentCacheSize) {
+        this.intentCacheSize = intentCacheSize;
+    }
+
+    public long getIntentCacheTtlMs() {
+        return intentCacheTtlMs;
+    }
+
+    public void setIntentCacheTtlMs(long intentCacheTtlMs) {
+        this.intentCacheTtlMs = intentCacheTtlMs;
+    }
+
+    public int getIntentBreakerFailureThreshold() {
+        return intentBreakerFailureThreshold;
+    }
+
+    public void setIntentBreakerFailureThreshold(int intentBreakerFailureThreshold) {
+        this.intentBreakerFailureThreshold = intentBreakerFailureThreshold;
+    }
+
+    public long getIntentBreakerOpenMs() {
+        return intentBreakerOpenMs;
+    }
+
+    public void setIntentBreakerOpenMs(long intentBreakerOpenMs) {
+        this.intentBreakerOpenMs = intentBreakerOpenMs;
+    }
+
+    public long getIntentTimeoutMinMs() {
+        return intentTimeoutMinMs;
+    }
+
+    public void setIntentTimeoutMinMs(long intentTimeoutMinMs) {
+        this.intentTimeoutMinMs = intentTimeoutMinMs;
+    }
+
+    public long getIntentTimeoutMaxMs() {
+        return intentTimeoutMaxMs;
+    }
+
+    public void setIntentTimeoutMaxMs(long intentTimeoutMaxMs) {
+        this.intentTimeoutMaxMs = intentTimeoutMaxMs;
+    }
+
+    public long getHttpConnectTimeoutMs() {
+        return httpConnectTimeoutMs;
+    }
+
+    public void setHttpConnectTimeoutMs(long httpConnectTimeoutMs) {
+        this.httpConnectTimeoutMs = httpConnectTimeoutMs;
+    }
+
+    public long getHttpPoolAcquireTimeoutMs() {
+        return httpPoolAcquireTimeoutMs;
+    }
+
+    public void setHttpPoolAcquireTimeoutMs(long httpPoolAcquireTimeoutMs) {
+        this.httpPoolAcquireTimeoutMs = httpPoolAcquireTimeoutMs;
+    }
+
+    public long getHttpKeepAliveSeconds() {
+        return httpKeepAliveSeconds;
+    }
+
+    public void setHttpKeepAliveSeconds(long httpKeepAliveSeconds) {
+        this.httpKeepAliveSeconds = httpKeepAliveSeconds;
+    }
+
+    public int getOpenSearchMaxConnections() {
+        return openSearchMaxConnections;
+    }
+
+    public void setOpenSearchMaxConnections(int openSearchMaxConnections) {
+        this.openSearchMaxConnections = openSearchMaxConnections;
+    }
+
+    public long getOpenSearchReadTimeoutMs() {
+        return openSearchReadTimeoutMs;
+    }
+
+    public void setOpenSearchReadTimeoutMs(long openSearchReadTimeoutMs) {
+        this.openSearchReadTimeoutMs = openSearchReadTimeoutMs;
+    }
+
+    public boolean isOpenSearchHttp2() {
+        return openSearchHttp2;
+    }
+
+    public void setOpenSearchHttp2(boolean openSearchHttp2) {
+        this.openSearchHttp2 = openSearchHttp2;
+    }
+
+    public int getJiraMaxConnections() {
+        return jiraMaxConnections;
+    }
+
+    public void setJiraMaxConnections(int jiraMaxConnections) {
+        this.jiraMaxConnections = jiraMaxConnections;
+    }
+
+    public long getJiraReadTimeoutMs() {
+        return jiraReadTimeoutMs;
+    }
+
+    public void setJiraReadTimeoutMs(long jiraReadTimeoutMs) {
+        this.jiraReadTimeoutMs = jiraReadTimeoutMs;
+    }
+
+    public boolean isJiraHttp2() {
+        return jiraHttp2;
+    }
+
+    public void setJiraHttp2(boolean jiraHttp2) {
+        this.jiraHttp2 = jiraHttp2;
+    }
+
+    public int getDeeppavlovMaxConnections() {
+        return deeppavlovMaxConnections;
+    }
+
+    public void setDeeppavlovMaxConnections(int deeppavlovMaxConnections) {
+        this.deeppavlovMaxConnections = deeppavlovMaxConnections;
+    }
+
+    public long getDeeppavlovReadTimeoutMs() {
+        return deeppavlovReadTimeoutMs;
+    }
+
+    public void setDeeppavlovReadTimeoutMs(long deeppavlovReadTimeoutMs) {
+        this.deeppavlovReadTimeoutMs = deeppavlovReadTimeoutMs;
+    }
+
+    public boolean isDeeppavlovHttp2() {
+        return deeppavlovHttp2;
+    }
+
+    public void setDeeppavlovHttp2(boolean deeppavlovHttp2) {
+        this.deeppavlovHttp2 = deeppavlovHttp2;
+    }
+
+    public int getCloudIntentMaxConnections() {
+        return cloudIntentMaxConnections;
+    }
+
+    public void setCloudIntentMaxConnections(int cloudIntentMaxConnections) {
+        this.cloudIntentMaxConnections = cloudIntentMaxConnections;
+    }
+
+    public long getCloudIntentReadTimeoutMs() {
+        return cloudIntentReadTimeoutMs;
+    }
+
+    public void setCloudIntentReadTimeoutMs(long cloudIntentReadTimeoutMs) {
+        this.cloudIntentReadTimeoutMs = cloudIntentReadTimeoutMs;
+    }
+
+    public boolean isCloudIntentHttp2() {
+        return cloudIntentHttp2;
+    }
+
+    public void setCloudIntentHttp2(boolean cloudIntentHttp2) {
+        this.cloudIntentHttp2 = cloudIntentHttp2;
+    }
+
+    public int getDeeppavlovBatchMaxSize() {
+        return deeppavlovBatchMaxSize;
+    }
+
+    public void setDeeppavlovBatchMaxSize(int deeppavlovBatchMaxSize) {
+        this.deeppavlovBatchMaxSize = deeppavlovBatchMaxSize;
+    }
+
+    public long getDeeppavlovBatchLingerMs() {
+        return deeppavlovBatchLingerMs;
+    }
+
+    public void setDeeppavlovBatchLingerMs(long deeppavlovBatchLingerMs) {
+        this.deeppavlovBatchLingerMs = deeppavlovBatchLingerMs;
+    }
+
+    public String getLocalIntentModel() {
+        return localIntentModel;
+    }
+
+    public void setLocalIntentModel(String localIntentModel) {
+        this.localIntentModel = localIntentModel;
+    }
+
+    public double getLocalIntentConfidenceThreshold() {
+        return localIntentConfidenceThreshold;
+    }
+
+    public void setLocalIntentConfidenceThreshold(double localIntentConfidenceThreshold) {
+        this.localIntentConfidenceThreshold = localIntentConfidenceThreshold;
+    }
+
+    public int getIntentBatchMaxQueries() {
+        return intentBatchMaxQueries;
+    }
+
+    public void setIntentBatchMaxQueries(int intentBatchMaxQueries) {
+        this.intentBatchMaxQueries = intentBatchMaxQueries;
+    }
+
+    public int getIntentBatchParallelism() {
+        return intentBatchParallelism;
+    }
+
+    public void setIntentBatchParallelism(int intentBatchParallelism) {
+        this.intentBatchParallelism = intentBatchParallelism;
+    }
+
+    public int getCloudIntentMaxInputTokens() {
+        return cloudIntentMaxInputTokens;
+    }
+
+    public void setCloudIntentMaxInputTokens(int cloudIntentMaxInputTokens) {
+        this.cloudIntentMaxInputTokens = cloudIntentMaxInputTokens;
+    }
+
+    public boolean isVirtualThreadsEnabled() {
+        return virtualThreadsEnabled;
+    }
+
+    public void setVirtualThreadsEnabled(boolean virtualThreadsEnabled) {
+        this.virtualThreadsEnabled = virtualThreadsEnabled;
+    }
+
+    public long getComponentStatusRefreshMs() {
+        return componentStatusRefreshMs;
+    }
+
+    public void setComponentStatusRefreshMs(long componentStatusRefreshMs) {
+        this.componentStatusRefreshMs = componentStatusRefreshMs;
+    }
+
+    public long getComponentProbeTimeoutMs() {
+        return componentProbeTimeoutMs;
+    }
+
+    public void setComponentProbeTimeoutMs(long componentProbeTimeoutMs) {
+        this.componentProbeTimeoutMs = componentProbeTimeoutMs;
+    }
 }
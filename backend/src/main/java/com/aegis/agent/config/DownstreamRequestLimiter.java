@@ -0,0 +1,147 @@
+package com.aegis.agent.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Caps the requests one downstream client has in flight, and so the connections it holds open, at
+ * {@code maxConnections}. A permit is taken before the request is sent and returned when the response is closed,
+ * which {@code RestTemplate} does once the body has been read. Callers that cannot get a permit within
+ * {@code acquireTimeoutMs} fail with {@link ResourceAccessException}, like any other I/O failure.
+ * <p>
+ * Publishes {@code aegis.http.client.pool.*} metrics tagged with the client name.
+ */
+final class DownstreamRequestLimiter implements ClientHttpRequestInterceptor {
+
+    private final String client;
+    private final int maxConnections;
+    private final long acquireTimeoutMs;
+    private final Semaphore permits;
+    private final Timer waitTimer;
+    private final Counter rejected;
+
+    DownstreamRequestLimiter(String client, int maxConnections, long acquireTimeoutMs, MeterRegistry meterRegistry) {
+        this.client = client;
+        this.maxConnections = Math.max(1, maxConnections);
+        this.acquireTimeoutMs = Math.max(0, acquireTimeoutMs);
+        this.permits = new Semaphore(this.maxConnections, true);
+
+        Gauge.builder("aegis.http.client.pool.active", this, DownstreamRequestLimiter::active)
+                .description("Requests in flight to the downstream")
+                .tag("client", client)
+                .register(meterRegistry);
+        Gauge.builder("aegis.http.client.pool.max", this, limiter -> limiter.maxConnections)
+                .description("Maximum concurrent requests to the downstream")
+                .tag("client", client)
+                .register(meterRegistry);
+        Gauge.builder("aegis.http.client.pool.pending", permits, Semaphore::getQueueLength)
+                .description("Requests waiting for a free connection")
+                .tag("client", client)
+                .register(meterRegistry);
+        Gauge.builder("aegis.http.client.pool.utilization", this, limiter -> (double) limiter.active() / limiter.maxConnections)
+                .description("Share of the downstream's connection limit in use")
+                .tag("client", client)
+                .register(meterRegistry);
+        this.waitTimer = Timer.builder("aegis.http.client.pool.wait")
+                .description("Time spent waiting for a free connection")
+                .tag("client", client)
+                .register(meterRegistry);
+        this.rejected = Counter.builder("aegis.http.client.pool.rejected")
+                .description("Requests that gave up waiting for a free connection")
+                .tag("client", client)
+                .register(meterRegistry);
+    }
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution) throws IOException {
+        acquire();
+        try {
+            return new PermitReleasingResponse(execution.execute(request, body), permits);
+        } catch (IOException | RuntimeException ex) {
+            permits.release();
+            throw ex;
+        }
+    }
+
+    int active() {
+        return maxConnections - permits.availablePermits();
+    }
+
+    private void acquire() {
+        long started = System.nanoTime();
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(acquireTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new ResourceAccessException("Interrupted waiting for a " + client + " connection");
+        } finally {
+            waitTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        }
+        if (!acquired) {
+            rejected.increment();
+            throw new ResourceAccessException("No " + client + " connection available within " + acquireTimeoutMs + "ms");
+        }
+    }
+
+    /**
+     * Returns the permit exactly once when the response is closed.
+     */
+    private static final class PermitReleasingResponse implements ClientHttpResponse {
+
+        private final ClientHttpResponse delegate;
+        private final Semaphore permits;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        PermitReleasingResponse(ClientHttpResponse delegate, Semaphore permits) {
+            this.delegate = delegate;
+            this.permits = permits;
+        }
+
+        @Override
+        public HttpStatusCode getStatusCode() throws IOException {
+            return delegate.getStatusCode();
+        }
+
+        @Override
+        public String getStatusText() throws IOException {
+            return delegate.getStatusText();
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return delegate.getHeaders();
+        }
+
+        @Override
+        public InputStream getBody() throws IOException {
+            return delegate.getBody();
+        }
+
+        @Override
+        public void close() {
+            try {
+                delegate.close();
+            } finally {
+                if (released.compareAndSet(false, true)) {
+                    permits.release();
+                }
+            }
+        }
+    }
+}
@@ -1,20 +1,74 @@
 package com.aegis.agent.config;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.http.client.ClientHttpRequestFactoryBuilder;
 import org.springframework.boot.web.client.RestTemplateBuilder;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.client.RestTemplate;
 
+import java.net.http.HttpClient;
 import java.time.Duration;
 
+/**
+ * One {@link RestTemplate} per downstream, each on its own JDK {@link HttpClient} and therefore its own connection
+ * pool, with its own connection limit, read timeout and HTTP version. A slow or busy downstream (Jira attachment
+ * uploads, OpenSearch bulk requests) can only tie up its own connections.
+ * <p>
+ * With HTTP/2 enabled the client negotiates it via ALPN over TLS and falls back to HTTP/1.1 when the server does
+ * not support it. On plain {@code http://} URLs it would attempt an h2c upgrade instead, which is why it is off by
+ * default for the internal downstreams.
+ */
 @Configuration
 public class HttpClientConfig {
 
+    private static final String KEEP_ALIVE_PROPERTY = "jdk.httpclient.keepalive.timeout";
+
+    private final AegisProperties properties;
+    private final MeterRegistry meterRegistry;
+
+    public HttpClientConfig(AegisProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+        // The JDK client only reads its idle keep-alive from a system property, once, for all clients.
+        if (properties.getHttpKeepAliveSeconds() > 0 && System.getProperty(KEEP_ALIVE_PROPERTY) == null) {
+            System.setProperty(KEEP_ALIVE_PROPERTY, Long.toString(properties.getHttpKeepAliveSeconds()));
+        }
+    }
+
     @Bean
-    public RestTemplate externalRestTemplate(RestTemplateBuilder builder) {
+    public RestTemplate openSearchRestTemplate(RestTemplateBuilder builder) {
+        return downstream(builder, "opensearch", properties.getOpenSearchMaxConnections(),
+                properties.getOpenSearchReadTimeoutMs(), properties.isOpenSearchHttp2());
+    }
+
+    @Bean
+    public RestTemplate jiraRestTemplate(RestTemplateBuilder builder) {
+        return downstream(builder, "jira", properties.getJiraMaxConnections(),
+                properties.getJiraReadTimeoutMs(), properties.isJiraHttp2());
+    }
+
+    @Bean
+    public RestTemplate deepPavlovRestTemplate(RestTemplateBuilder builder) {
+        return downstream(builder, "deeppavlov", properties.getDeeppavlovMaxConnections(),
+                properties.getDeeppavlovReadTimeoutMs(), properties.isDeeppavlovHttp2());
+    }
+
+    @Bean
+    public RestTemplate cloudIntentRestTemplate(RestTemplateBuilder builder) {
+        return downstream(builder, "cloud-intent", properties.getCloudIntentMaxConnections(),
+                properties.getCloudIntentReadTimeoutMs(), properties.isCloudIntentHttp2());
+    }
+
+    private RestTemplate downstream(RestTemplateBuilder builder, String client, int maxConnections, long readTimeoutMs, boolean http2) {
+        HttpClient.Version version = http2 ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1;
         return builder
-                .connectTimeout(Duration.ofSeconds(3))
-                .readTimeout(Duration.ofSeconds(8))
+                .requestFactoryBuilder(ClientHttpRequestFactoryBuilder.jdk()
+                        .withHttpClientCustomizer(httpClient -> httpClient.version(version)))
+                .connectTimeout(Duration.ofMillis(properties.getHttpConnectTimeoutMs()))
+                .readTimeout(Duration.ofMillis(readTimeoutMs))
+                .additionalInterceptors(new DownstreamRequestLimiter(
+                        client, maxConnections, properties.getHttpPoolAcquireTimeoutMs(), meterRegistry))
                 .build();
     }
 }
@@ -0,0 +1,37 @@
+package com.aegis.agent.config;
+
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Thread factories for executors whose tasks block on downstream calls. With {@code aegis.virtual-threads-enabled}
+ * (bound to {@code spring.threads.virtual.enabled}) on a Java 21+ runtime they create virtual threads, so a task
+ * waiting on DeepPavlov or the cloud endpoint does not hold a platform thread; otherwise named daemon platform
+ * threads, and the setting is ignored on older runtimes just as Spring Boot ignores its own.
+ */
+public final class WorkerThreads {
+
+    private WorkerThreads() {
+    }
+
+    public static boolean isVirtual(AegisProperties properties) {
+        return properties.isVirtualThreadsEnabled() && Runtime.version().feature() >= 21;
+    }
+
+    /**
+     * Threads named {@code namePrefix} followed by a sequence number.
+     */
+    public static ThreadFactory factory(AegisProperties properties, String namePrefix) {
+        if (isVirtual(properties)) {
+            return new VirtualThreadTaskExecutor(namePrefix).getVirtualThreadFactory();
+        }
+        AtomicInteger threadCount = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, namePrefix + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -7,6 +7,12 @@ public record AnalysisResult(
         String fixAction,
         String severity,
         double confidence,
-        List<String> matchedSignals
+        List<String> matchedSignals,
+        String intent,
+        List<SignalOccurrence> signalOccurrences
 ) {
+
+    public AnalysisResult(String rootCause, String fixAction, String severity, double confidence, List<String> matchedSignals) {
+        this(rootCause, fixAction, severity, confidence, matchedSignals, "Unknown", List.of());
+    }
 }
@@ -5,11 +5,17 @@ public class IntentResolution {
     private final IntentResult primaryIntent;
     private final IntentResult secondaryIntent;
     private final String sourceSummary;
+    private final boolean partial;
 
     public IntentResolution(IntentResult primaryIntent, IntentResult secondaryIntent, String sourceSummary) {
+        this(primaryIntent, secondaryIntent, sourceSummary, false);
+    }
+
+    private IntentResolution(IntentResult primaryIntent, IntentResult secondaryIntent, String sourceSummary, boolean partial) {
         this.primaryIntent = primaryIntent;
         this.secondaryIntent = secondaryIntent;
         this.sourceSummary = sourceSummary;
+        this.partial = partial;
     }
 
     public static IntentResolution single(IntentResult intent, String sourceSummary) {
@@ -28,6 +34,18 @@ public class IntentResolution {
         return sourceSummary;
     }
 
+    /**
+     * Copy marked as combined without every provider's answer: at least one configured provider missed its deadline,
+     * failed or had an open circuit.
+     */
+    public IntentResolution asPartial() {
+        return new IntentResolution(primaryIntent, secondaryIntent, sourceSummary, true);
+    }
+
+    public boolean isPartial() {
+        return partial;
+    }
+
     public boolean hasSecondaryIntent() {
         return secondaryIntent != null
                 && secondaryIntent.intent() != null
@@ -0,0 +1,21 @@
+package com.aegis.agent.domain;
+
+/**
+ * Where a matched signal shows up in an analyzed log. {@code count} is the number of lines that match the whole
+ * signature on their own; a signal whose keywords only come together across several lines is matched without an
+ * occurrence. Line numbers are 1-based, the offset is the character position of the first match on the first
+ * such line, and timestamp, level and component are taken from the lines as written (null when a line has no
+ * recognizable value).
+ */
+public record SignalOccurrence(
+        String signal,
+        long count,
+        long firstLine,
+        long lastLine,
+        long firstOffset,
+        String firstTimestamp,
+        String lastTimestamp,
+        String firstLevel,
+        String firstComponent
+) {
+}
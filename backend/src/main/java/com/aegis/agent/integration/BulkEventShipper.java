@@ -0,0 +1,243 @@
+package com.aegis.agent.integration;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.ToIntFunction;
+
+/**
+ * Bounded queue of event documents drained by one background thread into bulk requests. A batch is sent when it
+ * reaches {@code maxActions} documents or {@code linger} after its first document arrived, whichever comes first.
+ * When the queue is full the overflow policy either drops the oldest queued document, drops the new one, or blocks
+ * the caller for at most {@code blockTimeoutMs} before dropping it. Failed batches are counted and dropped; this is
+ * telemetry, so nothing is retried.
+ */
+final class BulkEventShipper {
+
+    private static final Logger log = LoggerFactory.getLogger(BulkEventShipper.class);
+    private static final long IDLE_POLL_MS = 200;
+
+    enum Overflow {
+        DROP_OLDEST, DROP_NEWEST, BLOCK;
+
+        static Overflow parse(String value) {
+            if (value == null || value.isBlank()) {
+                return DROP_OLDEST;
+            }
+            try {
+                return valueOf(value.trim().replace('-', '_').toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException ex) {
+                throw new IllegalArgumentException("Unknown OpenSearch queue overflow policy: " + value, ex);
+            }
+        }
+    }
+
+    private final BlockingQueue<Map<String, Object>> queue;
+    private final int maxActions;
+    private final long lingerNanos;
+    private final Overflow overflow;
+    private final long blockTimeoutMs;
+    private final ToIntFunction<List<Map<String, Object>>> sender;
+
+    private final DistributionSummary batchSize;
+    private final Timer flushTimer;
+    private final Counter droppedOverflow;
+    private final Counter droppedFailed;
+    private final Counter droppedRejected;
+    private final Counter droppedShutdown;
+
+    private final ReentrantLock lifecycle = new ReentrantLock();
+    private volatile boolean running;
+    private boolean lastFlushFailed;
+    private Thread worker;
+
+    /**
+     * @param sender sends one batch and returns how many documents the cluster rejected; throws when the whole
+     *               request failed
+     */
+    BulkEventShipper(
+            int capacity,
+            int maxActions,
+            long lingerMs,
+            Overflow overflow,
+            long blockTimeoutMs,
+            ToIntFunction<List<Map<String, Object>>> sender,
+            MeterRegistry meterRegistry
+    ) {
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, capacity));
+        this.maxActions = Math.max(1, maxActions);
+        this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, lingerMs));
+        this.overflow = overflow;
+        this.blockTimeoutMs = Math.max(0, blockTimeoutMs);
+        this.sender = sender;
+
+        Gauge.builder("aegis.opensearch.queue.depth", queue, BlockingQueue::size)
+                .description("Events waiting to be shipped to OpenSearch")
+                .register(meterRegistry);
+        this.batchSize = DistributionSummary.builder("aegis.opensearch.bulk.batch.size")
+                .description("Documents per OpenSearch bulk request")
+                .register(meterRegistry);
+        this.flushTimer = Timer.builder("aegis.opensearch.bulk.flush")
+                .description("Time to send one bulk request to OpenSearch")
+                .register(meterRegistry);
+        this.droppedOverflow = dropped(meterRegistry, "overflow");
+        this.droppedFailed = dropped(meterRegistry, "flush-failed");
+        this.droppedRejected = dropped(meterRegistry, "rejected");
+        this.droppedShutdown = dropped(meterRegistry, "shutdown");
+    }
+
+    /**
+     * Queues a document for shipping. Returns false when the document itself was dropped.
+     */
+    boolean offer(Map<String, Object> document) {
+        switch (overflow) {
+            case DROP_NEWEST -> {
+                if (!queue.offer(document)) {
+                    droppedOverflow.increment();
+                    return false;
+                }
+            }
+            case DROP_OLDEST -> {
+                while (!queue.offer(document)) {
+                    if (queue.poll() != null) {
+                        droppedOverflow.increment();
+                    }
+                }
+            }
+            case BLOCK -> {
+                try {
+                    if (!queue.offer(document, blockTimeoutMs, TimeUnit.MILLISECONDS)) {
+                        droppedOverflow.increment();
+                        return false;
+                    }
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    droppedOverflow.increment();
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    int queued() {
+        return queue.size();
+    }
+
+    void start() {
+        lifecycle.lock();
+        try {
+            if (worker != null) {
+                return;
+            }
+            running = true;
+            worker = new Thread(this::drain, "opensearch-bulk-shipper");
+            worker.setDaemon(true);
+            worker.start();
+        } finally {
+            lifecycle.unlock();
+        }
+    }
+
+    /**
+     * Ships what is already queued without waiting out the linger time, giving the worker up to {@code timeoutMs}.
+     * Documents still queued after that are counted as dropped.
+     */
+    void stop(long timeoutMs) {
+        lifecycle.lock();
+        try {
+            if (worker == null) {
+                return;
+            }
+            running = false;
+            try {
+                worker.join(timeoutMs);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            if (worker.isAlive()) {
+                worker.interrupt();
+            }
+            worker = null;
+            int abandoned = queue.size();
+            queue.clear();
+            droppedShutdown.increment(abandoned);
+        } finally {
+            lifecycle.unlock();
+        }
+    }
+
+    private void drain() {
+        List<Map<String, Object>> batch = new ArrayList<>(maxActions);
+        try {
+            while (running || !queue.isEmpty()) {
+                Map<String, Object> first = queue.poll(IDLE_POLL_MS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + lingerNanos;
+                while (batch.size() < maxActions) {
+                    if (queue.drainTo(batch, maxActions - batch.size()) > 0) {
+                        continue;
+                    }
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0 || !running) {
+                        break;
+                    }
+                    Map<String, Object> next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                flush(batch);
+                batch.clear();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            droppedShutdown.increment(batch.size());
+        }
+    }
+
+    private void flush(List<Map<String, Object>> batch) {
+        batchSize.record(batch.size());
+        long started = System.nanoTime();
+        try {
+            int rejected = sender.applyAsInt(batch);
+            droppedRejected.increment(rejected);
+            if (lastFlushFailed) {
+                log.info("OpenSearch bulk shipping recovered");
+                lastFlushFailed = false;
+            }
+        } catch (RuntimeException ex) {
+            droppedFailed.increment(batch.size());
+            if (!lastFlushFailed) {
+                log.warn("OpenSearch bulk request failed, dropping events until it recovers: {}", ex.getMessage());
+                lastFlushFailed = true;
+            }
+        } finally {
+            flushTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private static Counter dropped(MeterRegistry meterRegistry, String reason) {
+        return Counter.builder("aegis.opensearch.events.dropped")
+                .description("Events dropped before reaching OpenSearch")
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,413 @@
+package com.aegis.agent.integration;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * Append-only spool of serialized events, kept in fixed-size memory-mapped segment files while OpenSearch is
+ * unreachable. A record is a 4-byte length followed by the UTF-8 document; the length is written after the bytes
+ * so a torn append is never read back, and it is negated once the record has been replayed. Segments are opened
+ * again on startup, so events spooled before a restart are replayed too, including segments written with a
+ * different segment size.
+ * <p>
+ * Disk use is capped at {@code maxSegments * segmentBytes}: when a new segment would exceed it, the oldest one is
+ * deleted together with its pending events; events of a batch that is being replayed at that moment are counted
+ * when the batch is settled instead. Only one thread is expected to replay at a time.
+ */
+final class EventSpool {
+
+    private static final Logger log = LoggerFactory.getLogger(EventSpool.class);
+    private static final String PREFIX = "events-";
+    private static final String SUFFIX = ".spool";
+    private static final int LENGTH_BYTES = Integer.BYTES;
+
+    record Batch(Segment segment, List<String> documents, int[] positions, int endPosition) {
+    }
+
+    private final Path directory;
+    private final int segmentBytes;
+    private final int maxSegments;
+    private final Deque<Segment> segments = new ArrayDeque<>();
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final Counter spooled;
+    private final Counter replayed;
+    private final Counter evicted;
+    private final Counter oversized;
+    private final Counter rejected;
+
+    private long pending;
+    private long nextSequence;
+
+    EventSpool(Path directory, int segmentBytes, int maxSegments, MeterRegistry meterRegistry) throws IOException {
+        if (segmentBytes <= LENGTH_BYTES) {
+            throw new IllegalArgumentException("Spool segment size too small: " + segmentBytes);
+        }
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.maxSegments = Math.max(1, maxSegments);
+        Files.createDirectories(directory);
+
+        Gauge.builder("aegis.opensearch.spool.events", this, EventSpool::pendingEvents)
+                .description("Spooled events waiting to be replayed into OpenSearch")
+                .register(meterRegistry);
+        Gauge.builder("aegis.opensearch.spool.size", this, EventSpool::diskBytes)
+                .description("Disk space held by spool segments")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        this.spooled = Counter.builder("aegis.opensearch.events.spooled")
+                .description("Events written to the spool while OpenSearch was unavailable")
+                .register(meterRegistry);
+        this.replayed = Counter.builder("aegis.opensearch.events.replayed")
+                .description("Spooled events delivered to OpenSearch")
+                .register(meterRegistry);
+        this.evicted = dropped(meterRegistry, "spool-evicted");
+        this.oversized = dropped(meterRegistry, "spool-oversized");
+        this.rejected = dropped(meterRegistry, "spool-rejected");
+        recover();
+    }
+
+    /**
+     * Appends documents in order, rotating to a new segment when the current one is full.
+     */
+    void append(List<String> documents) {
+        lock.lock();
+        try {
+            for (String document : documents) {
+                byte[] bytes = document.getBytes(StandardCharsets.UTF_8);
+                if (bytes.length + 2 * LENGTH_BYTES > segmentBytes) {
+                    oversized.increment();
+                    continue;
+                }
+                Segment active = segments.peekLast();
+                if (active == null || !active.fits(bytes.length)) {
+                    active = rotate();
+                }
+                active.append(bytes);
+                pending++;
+            }
+            spooled.increment(documents.size());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Reads up to {@code max} pending documents from the oldest segment without consuming them; returns null when
+     * nothing is pending. Pass the batch to {@link #commit} once OpenSearch answered, or to {@link #release} if it
+     * could not be delivered.
+     */
+    Batch peek(int max) {
+        lock.lock();
+        try {
+            while (!segments.isEmpty()) {
+                Segment oldest = segments.peekFirst();
+                Batch batch = oldest.read(max);
+                if (!batch.documents().isEmpty()) {
+                    oldest.inFlight = batch.positions().length;
+                    return batch;
+                }
+                if (oldest == segments.peekLast()) {
+                    return null;
+                }
+                delete(segments.pollFirst());
+            }
+            return null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void commit(Batch batch) {
+        commit(batch, new BitSet(), new BitSet());
+    }
+
+    /**
+     * Keeps every document of an undelivered batch pending.
+     */
+    void release(Batch batch) {
+        BitSet all = new BitSet();
+        all.set(0, batch.positions().length);
+        commit(batch, new BitSet(), all);
+    }
+
+    /**
+     * Settles a delivered batch item by item, indexed like {@link Batch#documents()}: {@code rejected} documents
+     * were refused for good and are dropped, {@code retained} ones stay pending and are read again by the next
+     * {@link #peek}, the rest count as replayed. If the segment was evicted while the batch was out, retained
+     * documents are counted as evicted.
+     */
+    void commit(Batch batch, BitSet rejected, BitSet retained) {
+        lock.lock();
+        try {
+            Segment segment = batch.segment();
+            int settled = batch.positions().length - retained.cardinality();
+            int refused = rejected.cardinality();
+            segment.inFlight = 0;
+            replayed.increment(settled - refused);
+            this.rejected.increment(refused);
+            if (!segment.open) {
+                evicted.increment(retained.cardinality());
+                return;
+            }
+            segment.consume(batch.positions(), retained, batch.endPosition());
+            pending -= settled;
+            if (segment != segments.peekLast() && segment.exhausted()) {
+                segments.remove(segment);
+                delete(segment);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    boolean hasBacklog() {
+        lock.lock();
+        try {
+            return pending > 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    long pendingEvents() {
+        lock.lock();
+        try {
+            return pending;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    long diskBytes() {
+        lock.lock();
+        try {
+            long bytes = 0;
+            for (Segment segment : segments) {
+                bytes += segment.buffer.capacity();
+            }
+            return bytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Flushes mapped pages to disk and closes the segment files; the spool cannot be used afterwards.
+     */
+    void close() {
+        lock.lock();
+        try {
+            for (Segment segment : segments) {
+                segment.close(true);
+            }
+            segments.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Segment rotate() {
+        Segment full = segments.peekLast();
+        if (full != null) {
+            full.buffer.force();
+        }
+        while (segments.size() >= maxSegments) {
+            Segment oldest = segments.pollFirst();
+            pending -= oldest.pending;
+            evicted.increment(oldest.pending - oldest.inFlight);
+            log.warn("OpenSearch spool is full, discarding {} events from {}", oldest.pending, oldest.path.getFileName());
+            delete(oldest);
+        }
+        try {
+            Segment segment = Segment.open(directory.resolve(String.format("%s%020d%s", PREFIX, nextSequence++, SUFFIX)), segmentBytes);
+            segments.addLast(segment);
+            return segment;
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Cannot create spool segment in " + directory, ex);
+        }
+    }
+
+    private void recover() throws IOException {
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(directory)) {
+            files = listing.filter(path -> {
+                String name = path.getFileName().toString();
+                return name.startsWith(PREFIX) && name.endsWith(SUFFIX);
+            }).sorted().toList();
+        }
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            long sequence = Long.parseLong(name, PREFIX.length(), name.length() - SUFFIX.length(), 10);
+            nextSequence = Math.max(nextSequence, sequence + 1);
+            long size = Files.size(file);
+            if (size <= 2L * LENGTH_BYTES || size > Integer.MAX_VALUE) {
+                // Too small to hold a record, or too large to map: nothing in it can be replayed.
+                log.warn("Deleting spool segment {} of unusable size {}", file.getFileName(), size);
+                Files.deleteIfExists(file);
+                continue;
+            }
+            if (size != segmentBytes) {
+                log.info("Recovering spool segment {} written with segment size {}", file.getFileName(), size);
+            }
+            Segment segment = Segment.open(file, (int) size);
+            segment.scan();
+            if (segment.pending == 0) {
+                delete(segment);
+                continue;
+            }
+            segments.addLast(segment);
+            pending += segment.pending;
+        }
+        if (pending > 0) {
+            log.info("Recovered {} spooled OpenSearch events from {}", pending, directory);
+        }
+    }
+
+    private static void delete(Segment segment) {
+        segment.close(false);
+        try {
+            Files.deleteIfExists(segment.path);
+        } catch (IOException ex) {
+            log.warn("Cannot delete spool segment {}: {}", segment.path, ex.getMessage());
+        }
+    }
+
+    private static Counter dropped(MeterRegistry meterRegistry, String reason) {
+        return Counter.builder("aegis.opensearch.events.dropped")
+                .description("Events dropped before reaching OpenSearch")
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
+
+    static final class Segment {
+
+        private final Path path;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+        private int writePosition;
+        private int readPosition;
+        private long pending;
+        private int inFlight;
+        private boolean open = true;
+
+        private Segment(Path path, FileChannel channel, MappedByteBuffer buffer) {
+            this.path = path;
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+
+        static Segment open(Path path, int size) throws IOException {
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            try {
+                return new Segment(path, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+            } catch (IOException ex) {
+                channel.close();
+                throw ex;
+            }
+        }
+
+        boolean fits(int length) {
+            // Keeps room for the zero length that terminates the segment.
+            return writePosition + 2 * LENGTH_BYTES + length <= buffer.capacity();
+        }
+
+        void append(byte[] bytes) {
+            buffer.put(writePosition + LENGTH_BYTES, bytes);
+            buffer.putInt(writePosition, bytes.length);
+            writePosition += LENGTH_BYTES + bytes.length;
+            pending++;
+        }
+
+        Batch read(int max) {
+            List<String> documents = new ArrayList<>(Math.min(max, 64));
+            int[] positions = new int[max];
+            int position = readPosition;
+            while (documents.size() < max && position < writePosition) {
+                int length = buffer.getInt(position);
+                if (length > 0) {
+                    byte[] bytes = new byte[length];
+                    buffer.get(position + LENGTH_BYTES, bytes);
+                    positions[documents.size()] = position;
+                    documents.add(new String(bytes, StandardCharsets.UTF_8));
+                }
+                position += LENGTH_BYTES + Math.abs(length);
+            }
+            return new Batch(this, documents, Arrays.copyOf(positions, documents.size()), position);
+        }
+
+        void consume(int[] positions, BitSet retained, int endPosition) {
+            int next = endPosition;
+            for (int i = 0; i < positions.length; i++) {
+                if (retained.get(i)) {
+                    next = Math.min(next, positions[i]);
+                } else {
+                    buffer.putInt(positions[i], -buffer.getInt(positions[i]));
+                }
+            }
+            readPosition = Math.max(readPosition, next);
+            pending -= positions.length - retained.cardinality();
+        }
+
+        boolean exhausted() {
+            return pending == 0;
+        }
+
+        /**
+         * Rebuilds positions and the pending count from the records on disk.
+         */
+        void scan() {
+            int position = 0;
+            boolean seenPending = false;
+            while (position + LENGTH_BYTES <= buffer.capacity()) {
+                int length = buffer.getInt(position);
+                if (length == 0 || Math.abs(length) > buffer.capacity() - position - LENGTH_BYTES) {
+                    break;
+                }
+                if (length > 0) {
+                    pending++;
+                    seenPending = true;
+                } else if (!seenPending) {
+                    readPosition = position + LENGTH_BYTES - length;
+                }
+                position += LENGTH_BYTES + Math.abs(length);
+            }
+            writePosition = position;
+        }
+
+        void close(boolean flush) {
+            if (!open) {
+                return;
+            }
+            open = false;
+            if (flush) {
+                buffer.force();
+            }
+            try {
+                channel.close();
+            } catch (IOException ex) {
+                log.debug("Cannot close spool segment {}: {}", path, ex.getMessage());
+            }
+        }
+    }
+}
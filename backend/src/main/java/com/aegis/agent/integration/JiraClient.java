@@ -6,6 +6,7 @@ import com.aegis.agent.config.AegisProperties;
 import com.aegis.agent.domain.AnalysisResult;
 import com.aegis.agent.service.SensitiveDataSanitizer;
 import org.springframework.http.*;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Component;
 import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.util.MultiValueMap;
@@ -29,11 +30,11 @@ public class JiraClient {
 
     public JiraClient(
             AegisProperties properties,
-            RestTemplate externalRestTemplate,
+            @Qualifier("jiraRestTemplate") RestTemplate jiraRestTemplate,
             SensitiveDataSanitizer sanitizer
     ) {
         this.properties = properties;
-        this.restTemplate = externalRestTemplate;
+        this.restTemplate = jiraRestTemplate;
         this.sanitizer = sanitizer;
     }
 
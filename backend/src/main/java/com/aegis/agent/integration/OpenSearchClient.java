@@ -2,58 +2,277 @@ package com.aegis.agent.integration;
 
 import com.aegis.agent.config.AegisProperties;
 import com.aegis.agent.service.SensitiveDataSanitizer;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.RestClientException;
 import org.springframework.web.client.RestTemplate;
 
+import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Base64;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 @Component
 public class OpenSearchClient {
 
+    private static final Logger log = LoggerFactory.getLogger(OpenSearchClient.class);
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+    private static final String INDEX_ACTION = "{\"index\":{}}\n";
+    private static final long SHUTDOWN_FLUSH_TIMEOUT_MS = 5_000;
+
+    /**
+     * Per-item outcome of a {@code _bulk} request, indexed like the documents sent: {@code rejected} items were
+     * refused for good (mapping errors and the like), {@code retryable} ones were turned away with 429 because the
+     * cluster was overloaded.
+     */
+    record BulkResult(BitSet rejected, BitSet retryable) {
+
+        int failed() {
+            return rejected.cardinality() + retryable.cardinality();
+        }
+    }
+
     private final AegisProperties properties;
     private final RestTemplate restTemplate;
     private final SensitiveDataSanitizer sanitizer;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final BulkEventShipper shipper;
+    private final EventSpool spool;
+    private ScheduledExecutorService replayer;
 
     public OpenSearchClient(
             AegisProperties properties,
-            RestTemplate externalRestTemplate,
-            SensitiveDataSanitizer sanitizer
+            @Qualifier("openSearchRestTemplate") RestTemplate openSearchRestTemplate,
+            SensitiveDataSanitizer sanitizer,
+            MeterRegistry meterRegistry
     ) {
         this.properties = properties;
-        this.restTemplate = externalRestTemplate;
+        this.restTemplate = openSearchRestTemplate;
         this.sanitizer = sanitizer;
+        this.shipper = new BulkEventShipper(
+                properties.getOpenSearchQueueCapacity(),
+                properties.getOpenSearchBulkMaxActions(),
+                properties.getOpenSearchBulkLingerMs(),
+                BulkEventShipper.Overflow.parse(properties.getOpenSearchQueueOverflow()),
+                properties.getOpenSearchQueueBlockTimeoutMs(),
+                this::sendBulk,
+                meterRegistry
+        );
+        this.spool = isConfigured() ? openSpool(properties, meterRegistry) : null;
     }
 
-    public void indexEvent(String eventType, Map<String, Object> payload) {
-        if (!properties.isOpenSearchEnabled() || properties.getOpenSearchUrl() == null || properties.getOpenSearchUrl().isBlank()) {
+    @PostConstruct
+    public void startShipping() {
+        if (!isConfigured()) {
             return;
         }
+        shipper.start();
+        if (spool != null) {
+            long interval = Math.max(100, properties.getOpenSearchSpoolReplayIntervalMs());
+            replayer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "opensearch-spool-replayer");
+                thread.setDaemon(true);
+                return thread;
+            });
+            replayer.scheduleWithFixedDelay(this::replaySpool, interval, interval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void stopShipping() {
+        if (replayer != null) {
+            replayer.shutdownNow();
+        }
+        shipper.stop(SHUTDOWN_FLUSH_TIMEOUT_MS);
+        if (spool != null) {
+            spool.close();
+        }
+    }
 
-        String url = properties.getOpenSearchUrl() + "/" + properties.getOpenSearchIndex() + "/_doc";
+    private static EventSpool openSpool(AegisProperties properties, MeterRegistry meterRegistry) {
+        String directory = properties.getOpenSearchSpoolDirectory();
+        if (directory == null || directory.isBlank()) {
+            return null;
+        }
+        try {
+            return new EventSpool(
+                    Path.of(directory),
+                    properties.getOpenSearchSpoolSegmentBytes(),
+                    properties.getOpenSearchSpoolMaxSegments(),
+                    meterRegistry
+            );
+        } catch (IOException ex) {
+            throw new IllegalStateException("OpenSearch spool could not be opened in " + directory, ex);
+        }
+    }
 
-        Map<String, Object> document = new HashMap<>(sanitizer.sanitizeMap(payload));
+    /**
+     * Sanitizes the event and queues it for the next bulk request; the caller never waits on OpenSearch.
+     */
+    public void indexEvent(String eventType, Map<String, Object> payload) {
+        if (!isConfigured()) {
+            return;
+        }
+
+        Map<String, Object> document = sanitizer.sanitizeEvent(eventType, payload);
         document.put("eventType", eventType);
         document.put("timestamp", Instant.now().toString());
+        shipper.offer(document);
+    }
 
+    /**
+     * Sends one {@code _bulk} request and returns the number of documents OpenSearch rejected. With a spool
+     * configured, batches go to disk instead while OpenSearch is unreachable or older spooled events are still
+     * waiting, so a long outage costs one failed request rather than one per batch. Items the cluster turns away
+     * with 429 are spooled as well.
+     */
+    int sendBulk(List<Map<String, Object>> documents) {
+        List<String> sources = new ArrayList<>(documents.size());
+        int unserializable = 0;
+        for (Map<String, Object> document : documents) {
+            try {
+                sources.add(objectMapper.writeValueAsString(document));
+            } catch (JsonProcessingException ex) {
+                unserializable++;
+                log.debug("Skipping event that cannot be serialized: {}", ex.getMessage());
+            }
+        }
+        if (sources.isEmpty()) {
+            return unserializable;
+        }
+        if (spool == null) {
+            return unserializable + postBulk(sources).failed();
+        }
+        if (spool.hasBacklog()) {
+            spool.append(sources);
+            return unserializable;
+        }
         try {
-            restTemplate.postForObject(url, new HttpEntity<>(document, headers()), Map.class);
-        } catch (RestClientException ignored) {
-            // Non-blocking telemetry path.
+            BulkResult result = postBulk(sources);
+            if (!result.retryable().isEmpty()) {
+                spool.append(result.retryable().stream().mapToObj(sources::get).toList());
+            }
+            return unserializable + result.rejected().cardinality();
+        } catch (RestClientException ex) {
+            if (!isSpoolable(ex)) {
+                throw ex;
+            }
+            log.warn("OpenSearch unavailable, spooling events to {} until it recovers: {}",
+                    properties.getOpenSearchSpoolDirectory(), ex.getMessage());
+            spool.append(sources);
+            return unserializable;
         }
     }
 
+    /**
+     * Replays spooled events oldest first until the spool is empty or OpenSearch fails again. Items OpenSearch
+     * rejects for good are dropped; items it turns away with 429 stay spooled and replay pauses until the next run.
+     */
+    void replaySpool() {
+        EventSpool.Batch batch;
+        try {
+            while ((batch = spool.peek(properties.getOpenSearchBulkMaxActions())) != null) {
+                BulkResult result;
+                try {
+                    result = postBulk(batch.documents());
+                } catch (RestClientException ex) {
+                    if (isSpoolable(ex)) {
+                        spool.release(batch);
+                        return;
+                    }
+                    log.warn("OpenSearch refused {} spooled events, discarding them: {}", batch.documents().size(), ex.getMessage());
+                    BitSet all = new BitSet();
+                    all.set(0, batch.documents().size());
+                    result = new BulkResult(all, new BitSet());
+                }
+                spool.commit(batch, result.rejected(), result.retryable());
+                if (!result.rejected().isEmpty()) {
+                    log.warn("OpenSearch rejected {} spooled events, discarding them", result.rejected().cardinality());
+                }
+                if (!result.retryable().isEmpty()) {
+                    return;
+                }
+                if (!spool.hasBacklog()) {
+                    log.info("OpenSearch spool drained");
+                }
+            }
+        } catch (RuntimeException ex) {
+            log.warn("OpenSearch spool replay failed: {}", ex.getMessage());
+        }
+    }
+
+    private BulkResult postBulk(List<String> sources) {
+        int size = 0;
+        for (String source : sources) {
+            size += INDEX_ACTION.length() + source.length() + 1;
+        }
+        StringBuilder body = new StringBuilder(size);
+        for (String source : sources) {
+            body.append(INDEX_ACTION).append(source).append('\n');
+        }
+
+        String url = properties.getOpenSearchUrl() + "/" + properties.getOpenSearchIndex() + "/_bulk";
+        HttpHeaders headers = headers();
+        headers.setContentType(NDJSON);
+        Map<?, ?> response = restTemplate.postForObject(url, new HttpEntity<>(body.toString(), headers), Map.class);
+        return bulkResult(response);
+    }
+
+    /**
+     * Connection failures, 5xx and 429 are worth retrying later; other 4xx responses would fail again on replay.
+     */
+    private static boolean isSpoolable(RestClientException ex) {
+        return !(ex instanceof HttpClientErrorException clientError)
+                || clientError.getStatusCode() == HttpStatus.TOO_MANY_REQUESTS;
+    }
+
+    private static BulkResult bulkResult(Map<?, ?> response) {
+        BitSet rejected = new BitSet();
+        BitSet retryable = new BitSet();
+        if (response == null || !Boolean.TRUE.equals(response.get("errors")) || !(response.get("items") instanceof List<?> items)) {
+            return new BulkResult(rejected, retryable);
+        }
+        for (int i = 0; i < items.size(); i++) {
+            if (items.get(i) instanceof Map<?, ?> itemMap
+                    && itemMap.get("index") instanceof Map<?, ?> result
+                    && result.get("error") != null) {
+                if (result.get("status") instanceof Number status && status.intValue() == HttpStatus.TOO_MANY_REQUESTS.value()) {
+                    retryable.set(i);
+                } else {
+                    rejected.set(i);
+                }
+            }
+        }
+        return new BulkResult(rejected, retryable);
+    }
+
+    private boolean isConfigured() {
+        return properties.isOpenSearchEnabled() && properties.getOpenSearchUrl() != null && !properties.getOpenSearchUrl().isBlank();
+    }
+
     public boolean isHealthy() {
         if (!properties.isOpenSearchEnabled() || properties.getOpenSearchUrl() == null || properties.getOpenSearchUrl().isBlank()) {
             return false;
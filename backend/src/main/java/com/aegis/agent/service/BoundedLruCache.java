@@ -0,0 +1,122 @@
+package com.aegis.agent.service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * Fixed-capacity map that evicts the least recently used entry and, optionally, entries older than a time to live.
+ * A single lock guards the access-ordered map; entries are small and lookups short, so contention stays low at
+ * request rates this service sees. Hit and miss counts are kept outside the lock for metrics; an expired entry
+ * counts as a miss.
+ */
+final class BoundedLruCache<K, V> {
+
+    private record Entry<V>(V value, long writtenAt) {
+    }
+
+    private final int capacity;
+    private final long ttlNanos;
+    private final LongSupplier nanoClock;
+    private final LinkedHashMap<K, Entry<V>> entries;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    BoundedLruCache(int capacity) {
+        this(capacity, 0, System::nanoTime);
+    }
+
+    /**
+     * @param ttlNanos how long an entry stays valid after it was written; zero or less keeps entries until evicted
+     */
+    BoundedLruCache(int capacity, long ttlNanos, LongSupplier nanoClock) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Cache capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        this.ttlNanos = ttlNanos;
+        this.nanoClock = nanoClock;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                return size() > BoundedLruCache.this.capacity;
+            }
+        };
+    }
+
+    /**
+     * Returns the cached value or computes, caches and returns it. The value is computed outside the lock, so two
+     * threads missing on the same key may both compute it; the loader must be side-effect free.
+     */
+    V computeIfAbsent(K key, Function<? super K, ? extends V> loader) {
+        V value = get(key);
+        if (value != null) {
+            return value;
+        }
+        value = loader.apply(key);
+        if (value != null) {
+            put(key, value);
+        }
+        return value;
+    }
+
+    V get(K key) {
+        V value = null;
+        lock.lock();
+        try {
+            Entry<V> entry = entries.get(key);
+            if (entry != null) {
+                if (ttlNanos > 0 && nanoClock.getAsLong() - entry.writtenAt() >= ttlNanos) {
+                    entries.remove(key);
+                } else {
+                    value = entry.value();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        (value == null ? misses : hits).increment();
+        return value;
+    }
+
+    void put(K key, V value) {
+        Entry<V> entry = new Entry<>(value, ttlNanos > 0 ? nanoClock.getAsLong() : 0);
+        lock.lock();
+        try {
+            entries.put(key, entry);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int size() {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int capacity() {
+        return capacity;
+    }
+
+    long hits() {
+        return hits.sum();
+    }
+
+    long misses() {
+        return misses.sum();
+    }
+
+    double hitRatio() {
+        long hitCount = hits.sum();
+        long total = hitCount + misses.sum();
+        return total == 0 ? 0.0 : (double) hitCount / total;
+    }
+}
@@ -0,0 +1,153 @@
+package com.aegis.agent.service;
+
+import com.aegis.agent.config.AegisProperties;
+import com.aegis.agent.domain.IntentResolution;
+import com.aegis.agent.domain.IntentResult;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Serves first-pass classifications from a bounded, time-limited cache keyed on the {@link QueryFingerprint} of the
+ * query, so a burst of near-identical questions during an outage costs one round of provider calls. Retry attempts
+ * always go to the providers. Rule-based fallback answers are not cached because they only appear when the
+ * providers were unavailable or saturated, and neither is any answer that a configured provider gave no part in.
+ * Batches bypass the cache in both directions: a re-scoring run after a model update must reach the providers, and
+ * thousands of one-off historical queries would only evict the interactive working set.
+ */
+@Service
+@Primary
+public class CachingIntentService implements IntentService {
+
+    private final IntentRoutingService delegate;
+    private final LocalIntentProvider localIntentProvider;
+    private final AegisProperties properties;
+    private final BoundedLruCache<String, IntentResolution> cache;
+    private final Counter savedProviderCalls;
+    private final Timer hitTimer;
+    private final Timer missTimer;
+
+    public CachingIntentService(
+            IntentRoutingService delegate,
+            LocalIntentProvider localIntentProvider,
+            AegisProperties properties,
+            MeterRegistry meterRegistry
+    ) {
+        this.delegate = delegate;
+        this.localIntentProvider = localIntentProvider;
+        this.properties = properties;
+        this.cache = properties.getIntentCacheSize() > 0
+                ? new BoundedLruCache<>(properties.getIntentCacheSize(), TimeUnit.MILLISECONDS.toNanos(properties.getIntentCacheTtlMs()), System::nanoTime)
+                : null;
+
+        this.savedProviderCalls = Counter.builder("aegis.intent.cache.saved.calls")
+                .description("Remote intent provider calls avoided by cache hits")
+                .register(meterRegistry);
+        this.hitTimer = Timer.builder("aegis.intent.classify")
+                .description("First-pass intent classification latency")
+                .tag("cache", "hit")
+                .register(meterRegistry);
+        this.missTimer = Timer.builder("aegis.intent.classify")
+                .description("First-pass intent classification latency")
+                .tag("cache", "miss")
+                .register(meterRegistry);
+        if (cache != null) {
+            Gauge.builder("aegis.intent.cache.size", cache, BoundedLruCache::size)
+                    .description("Classifications held in the intent cache")
+                    .register(meterRegistry);
+            Gauge.builder("aegis.intent.cache.hit.ratio", cache, BoundedLruCache::hitRatio)
+                    .description("Share of first-pass classifications served from the cache")
+                    .register(meterRegistry);
+            FunctionCounter.builder("aegis.intent.cache.requests", cache, BoundedLruCache::hits)
+                    .tag("result", "hit")
+                    .register(meterRegistry);
+            FunctionCounter.builder("aegis.intent.cache.requests", cache, BoundedLruCache::misses)
+                    .tag("result", "miss")
+                    .register(meterRegistry);
+        }
+    }
+
+    @Override
+    public IntentResult classify(String query) {
+        return classifyResolution(query).getPrimaryIntent();
+    }
+
+    @Override
+    public IntentResolution classifyResolution(String query, boolean cloudOnly) {
+        return resolve(query, cloudOnly, null);
+    }
+
+    /**
+     * A cache hit is final straight away, so no interim resolutions are reported for it.
+     */
+    @Override
+    public IntentResolution classifyResolution(String query, boolean cloudOnly, Consumer<IntentResolution> interim) {
+        return resolve(query, cloudOnly, interim);
+    }
+
+    private IntentResolution resolve(String query, boolean cloudOnly, Consumer<IntentResolution> interim) {
+        if (cloudOnly || cache == null) {
+            return classifyUncached(query, cloudOnly, interim);
+        }
+        String key = QueryFingerprint.of(query);
+        if (key.isEmpty()) {
+            return classifyUncached(query, false, interim);
+        }
+
+        long started = System.nanoTime();
+        IntentResolution cached = cache.get(key);
+        if (cached != null) {
+            savedProviderCalls.increment(enabledProviders());
+            hitTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+            return cached;
+        }
+
+        IntentResolution resolution = classifyUncached(query, false, interim);
+        if (isCacheable(resolution)) {
+            cache.put(key, resolution);
+        }
+        missTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        return resolution;
+    }
+
+    private static boolean isCacheable(IntentResolution resolution) {
+        String source = resolution.getSourceSummary();
+        return !resolution.isPartial()
+                && !IntentRoutingService.RULE_FALLBACK_SOURCE.equals(source)
+                && !IntentRoutingService.SATURATED_SOURCE.equals(source);
+    }
+
+    private IntentResolution classifyUncached(String query, boolean cloudOnly, Consumer<IntentResolution> interim) {
+        return interim == null
+                ? delegate.classifyResolution(query, cloudOnly)
+                : delegate.classifyResolution(query, cloudOnly, interim);
+    }
+
+    @Override
+    public void classifyBatch(List<String> queries, ObjIntConsumer<IntentResolution> sink) {
+        delegate.classifyBatch(queries, sink);
+    }
+
+    /**
+     * Remote calls a cache hit saves; DeepPavlov is not called while the local model stands in for it.
+     */
+    private int enabledProviders() {
+        int providers = 0;
+        if (properties.isCloudIntentEnabled()) {
+            providers++;
+        }
+        if (properties.isDeeppavlovEnabled() && !localIntentProvider.isAvailable()) {
+            providers++;
+        }
+        return providers;
+    }
+}
@@ -0,0 +1,155 @@
+package com.aegis.agent.service;
+
+import com.aegis.agent.config.AegisProperties;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Consecutive-failure circuit breaker for one remote provider, plus a call timeout derived from its recent latency.
+ * <p>
+ * {@code failureThreshold} failures in a row open the circuit; while open, {@link #tryAcquire()} refuses calls so
+ * callers move on to the next tier immediately. After {@code openNanos} one trial call is let through (half-open):
+ * success closes the circuit, failure opens it again. A call that completes but takes longer than the current
+ * timeout counts as a failure.
+ * <p>
+ * The timeout is twice the p99 of the last {@value #WINDOW} call latencies, clamped to {@code [minTimeout,
+ * maxTimeout]}; until {@value #MIN_SAMPLES} calls have been seen it is {@code maxTimeout}.
+ */
+final class CircuitBreaker {
+
+    enum State { CLOSED, OPEN, HALF_OPEN }
+
+    static final int WINDOW = 256;
+    static final int MIN_SAMPLES = 20;
+    private static final int RECOMPUTE_EVERY = 16;
+
+    private final int failureThreshold;
+    private final long openNanos;
+    private final long minTimeoutNanos;
+    private final long maxTimeoutNanos;
+    private final LongSupplier nanoClock;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final long[] latencies = new long[WINDOW];
+    private int samples;
+    private int nextSample;
+    private volatile long timeoutNanos;
+
+    private volatile State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAt;
+    private boolean trialInFlight;
+
+    CircuitBreaker(int failureThreshold, long openMs, long minTimeoutMs, long maxTimeoutMs, LongSupplier nanoClock) {
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.openNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, openMs));
+        this.minTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, minTimeoutMs));
+        this.maxTimeoutNanos = Math.max(minTimeoutNanos, TimeUnit.MILLISECONDS.toNanos(maxTimeoutMs));
+        this.nanoClock = nanoClock;
+        this.timeoutNanos = maxTimeoutNanos;
+    }
+
+    static CircuitBreaker forIntentProvider(AegisProperties properties) {
+        return new CircuitBreaker(
+                properties.getIntentBreakerFailureThreshold(),
+                properties.getIntentBreakerOpenMs(),
+                properties.getIntentTimeoutMinMs(),
+                properties.getIntentTimeoutMaxMs(),
+                System::nanoTime
+        );
+    }
+
+    /**
+     * Returns true when a call may proceed. Every permitted call must be followed by {@link #onSuccess} or
+     * {@link #onFailure}.
+     */
+    boolean tryAcquire() {
+        if (state == State.CLOSED) {
+            return true;
+        }
+        lock.lock();
+        try {
+            return switch (state) {
+                case CLOSED -> true;
+                case OPEN -> {
+                    if (nanoClock.getAsLong() - openedAt < openNanos) {
+                        yield false;
+                    }
+                    state = State.HALF_OPEN;
+                    trialInFlight = true;
+                    yield true;
+                }
+                case HALF_OPEN -> {
+                    if (trialInFlight) {
+                        yield false;
+                    }
+                    trialInFlight = true;
+                    yield true;
+                }
+            };
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Records a completed call; one slower than the current timeout is treated as a failure.
+     */
+    void onSuccess(long latencyNanos) {
+        lock.lock();
+        try {
+            boolean slow = latencyNanos > timeoutNanos;
+            recordLatency(latencyNanos);
+            if (slow) {
+                fail();
+                return;
+            }
+            consecutiveFailures = 0;
+            trialInFlight = false;
+            state = State.CLOSED;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void onFailure() {
+        lock.lock();
+        try {
+            fail();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    State state() {
+        return state;
+    }
+
+    long timeoutMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(timeoutNanos);
+    }
+
+    private void fail() {
+        consecutiveFailures++;
+        trialInFlight = false;
+        if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+            state = State.OPEN;
+            openedAt = nanoClock.getAsLong();
+        }
+    }
+
+    private void recordLatency(long latencyNanos) {
+        latencies[nextSample] = latencyNanos;
+        nextSample = (nextSample + 1) % WINDOW;
+        samples = Math.min(samples + 1, WINDOW);
+        if (samples >= MIN_SAMPLES && (samples < WINDOW || nextSample % RECOMPUTE_EVERY == 0)) {
+            long[] window = Arrays.copyOf(latencies, samples);
+            Arrays.sort(window);
+            long p99 = window[Math.min(samples - 1, (int) Math.ceil(samples * 0.99) - 1)];
+            timeoutNanos = Math.max(minTimeoutNanos, Math.min(maxTimeoutNanos, 2 * p99));
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package com.aegis.agent.service;
+
+import com.aegis.agent.domain.IntentResult;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads the classification out of a chat-completions response with a streaming parser. Only
+ * {@code choices[0].message.content} and {@code usage.total_tokens} are extracted, everything else is skipped
+ * token by token, and reading stops as soon as both have been seen. The content is the model's JSON answer and is
+ * parsed the same way, stopping once {@code intent} and {@code confidence} are known.
+ */
+public final class CloudCompletionReader {
+
+    /**
+     * The model's answer as written, or null when there was none or it was not a JSON object; {@code totalTokens}
+     * is -1 when the endpoint did not report usage.
+     */
+    public record Completion(IntentResult intent, long totalTokens) {
+    }
+
+    private final JsonFactory jsonFactory;
+
+    public CloudCompletionReader(ObjectMapper objectMapper) {
+        this.jsonFactory = objectMapper.getFactory();
+    }
+
+    /**
+     * @throws IOException when the response itself is not well-formed JSON
+     */
+    public Completion read(InputStream body) throws IOException {
+        String content = null;
+        long totalTokens = -1;
+        try (JsonParser parser = jsonFactory.createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return new Completion(null, -1);
+            }
+            boolean choicesRead = false;
+            boolean usageRead = false;
+            while (!(choicesRead && usageRead) && parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if ("choices".equals(field) && value == JsonToken.START_ARRAY) {
+                    content = readFirstChoiceContent(parser);
+                    choicesRead = true;
+                } else if ("usage".equals(field) && value == JsonToken.START_OBJECT) {
+                    totalTokens = readTotalTokens(parser);
+                    usageRead = true;
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+        return new Completion(readAnswer(content), totalTokens);
+    }
+
+    /**
+     * Parses the model's {@code {"intent": ..., "confidence": ...}} answer; a missing intent reads as
+     * {@code Unknown} and a missing confidence as 0.
+     */
+    IntentResult readAnswer(String content) {
+        if (content == null || content.isBlank()) {
+            return null;
+        }
+        try (JsonParser parser = jsonFactory.createParser(content)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return null;
+            }
+            String intent = null;
+            double confidence = 0.0;
+            boolean confidenceRead = false;
+            while (!(intent != null && confidenceRead) && parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if ("intent".equals(field) && value.isScalarValue() && value != JsonToken.VALUE_NULL) {
+                    intent = parser.getText();
+                } else if ("confidence".equals(field) && (value.isNumeric() || value == JsonToken.VALUE_STRING)) {
+                    confidence = value.isNumeric() ? parser.getDoubleValue() : parseDouble(parser.getText());
+                    confidenceRead = true;
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            return new IntentResult(intent == null ? "Unknown" : intent, confidence);
+        } catch (IOException ex) {
+            return null;
+        }
+    }
+
+    private static String readFirstChoiceContent(JsonParser parser) throws IOException {
+        JsonToken token = parser.nextToken();
+        if (token == JsonToken.END_ARRAY) {
+            return null;
+        }
+        String content = token == JsonToken.START_OBJECT ? readChoice(parser) : null;
+        parser.skipChildren();
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            parser.skipChildren();
+        }
+        return content;
+    }
+
+    private static String readChoice(JsonParser parser) throws IOException {
+        String content = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if ("message".equals(field) && value == JsonToken.START_OBJECT) {
+                content = readMessageContent(parser);
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return content;
+    }
+
+    /**
+     * Message content is either a string or a list of parts whose {@code text} fields are concatenated.
+     */
+    private static String readMessageContent(JsonParser parser) throws IOException {
+        String content = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if ("content".equals(field) && value == JsonToken.VALUE_STRING) {
+                content = parser.getText();
+            } else if ("content".equals(field) && value == JsonToken.START_ARRAY) {
+                StringBuilder merged = new StringBuilder();
+                while (parser.nextToken() != JsonToken.END_ARRAY) {
+                    if (parser.currentToken() == JsonToken.START_OBJECT) {
+                        appendPartText(parser, merged);
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+                content = merged.toString().isBlank() ? null : merged.toString();
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return content;
+    }
+
+    private static void appendPartText(JsonParser parser, StringBuilder merged) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if ("text".equals(field) && value == JsonToken.VALUE_STRING) {
+                merged.append(parser.getText());
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    private static long readTotalTokens(JsonParser parser) throws IOException {
+        long totalTokens = -1;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if ("total_tokens".equals(field) && value.isNumeric()) {
+                totalTokens = parser.getLongValue();
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return totalTokens;
+    }
+
+    private static double parseDouble(String text) {
+        try {
+            return Double.parseDouble(text.trim());
+        } catch (NumberFormatException ex) {
+            return 0.0;
+        }
+    }
+}
@@ -2,21 +2,36 @@ package com.aegis.agent.service;
 
 import com.aegis.agent.config.AegisProperties;
 import com.aegis.agent.domain.IntentResult;
-import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import org.springframework.http.HttpEntity;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Component;
 import org.springframework.web.client.RestClientException;
 import org.springframework.web.client.RestTemplate;
 
 import java.util.List;
-import java.util.Map;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.regex.Pattern;
 
+/**
+ * Classifies with a chat-completions model. Concurrent calls for the same model and query text, compared ignoring
+ * case and runs of whitespace, share one completion: during an outage many users send the same words at once, and
+ * each duplicate would otherwise be a separate paid request. The request body is serialized once per model by
+ * {@link CloudRequestTemplate}, so only the query is encoded per call.
+ */
 @Component
 public class CloudIntentProvider {
 
+    private static final Logger log = LoggerFactory.getLogger(CloudIntentProvider.class);
+
     private static final List<String> ALLOWED_INTENTS = List.of(
             "EnrollmentFailure",
             "GenerateOTP",
@@ -31,108 +46,162 @@ public class CloudIntentProvider {
             "Unknown"
     );
 
+    private static final String SYSTEM_PROMPT = "Classify the user query into exactly one IAM support intent. "
+            + "Allowed intents: " + String.join(", ", ALLOWED_INTENTS)
+            + ". Return strict JSON only in this format: "
+            + "{\"intent\":\"<intent>\",\"confidence\":<0_to_1>,\"reason\":\"<short>\"}.";
+
+    private static final List<MediaType> ACCEPT_JSON = List.of(MediaType.APPLICATION_JSON);
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    /**
+     * A completion's classification and the tokens it was billed for.
+     */
+    private record CloudAnswer(IntentResult intent, long totalTokens) {
+    }
+
     private final AegisProperties properties;
     private final RestTemplate restTemplate;
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final CircuitBreaker circuitBreaker;
+    private final ObjectMapper objectMapper;
+    private final CloudCompletionReader completionReader;
+    private volatile CloudRequestTemplate requestTemplate;
+    private final SingleFlight<String, CloudAnswer> singleFlight;
 
-    public CloudIntentProvider(AegisProperties properties, RestTemplate externalRestTemplate) {
+    public CloudIntentProvider(
+            AegisProperties properties,
+            @Qualifier("cloudIntentRestTemplate") RestTemplate cloudIntentRestTemplate,
+            ObjectMapper objectMapper,
+            MeterRegistry meterRegistry
+    ) {
         this.properties = properties;
-        this.restTemplate = externalRestTemplate;
+        this.restTemplate = cloudIntentRestTemplate;
+        this.objectMapper = objectMapper;
+        this.completionReader = new CloudCompletionReader(objectMapper);
+        this.circuitBreaker = CircuitBreaker.forIntentProvider(properties);
+
+        Counter coalescedCalls = Counter.builder("aegis.intent.cloud.coalesced.calls")
+                .description("Cloud classifications served by an identical completion already in flight")
+                .register(meterRegistry);
+        Counter savedTokens = Counter.builder("aegis.intent.cloud.coalesced.tokens")
+                .description("Completion tokens not spent thanks to coalesced cloud classifications")
+                .baseUnit("tokens")
+                .register(meterRegistry);
+        this.singleFlight = new SingleFlight<>(answer -> {
+            coalescedCalls.increment();
+            if (answer != null) {
+                savedTokens.increment(answer.totalTokens());
+            }
+        });
+        Gauge.builder("aegis.intent.cloud.inflight", singleFlight, SingleFlight::inFlight)
+                .description("Distinct cloud classifications currently in flight")
+                .register(meterRegistry);
     }
 
     public IntentResult classify(String query) {
-        if (!properties.isCloudIntentEnabled()) {
+        if (!isConfigured()) {
+            return null;
+        }
+        CloudAnswer answer = singleFlight.execute(singleFlightKey(query), () -> complete(query));
+        return answer == null ? null : answer.intent();
+    }
+
+    private CloudAnswer complete(String query) {
+        byte[] encodedQuery;
+        try {
+            encodedQuery = CloudRequestTemplate.encodeQuery(query);
+        } catch (IllegalArgumentException ex) {
+            // Unencodable input, e.g. a lone surrogate, says nothing about the endpoint, so it stays out of the breaker.
+            log.warn("Cloud intent query could not be encoded as UTF-8: {}", ex.getMessage());
             return null;
         }
-        if (properties.getCloudIntentApiKey() == null || properties.getCloudIntentApiKey().isBlank()) {
+        if (!circuitBreaker.tryAcquire()) {
             return null;
         }
 
+        long started = System.nanoTime();
         try {
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            headers.setBearerAuth(properties.getCloudIntentApiKey());
-
-            String prompt = "Classify the user query into exactly one IAM support intent. "
-                    + "Allowed intents: " + String.join(", ", ALLOWED_INTENTS)
-                    + ". Return strict JSON only in this format: "
-                    + "{\"intent\":\"<intent>\",\"confidence\":<0_to_1>,\"reason\":\"<short>\"}.";
-
-            Map<String, Object> body = Map.of(
-                    "model", properties.getCloudIntentModel(),
-                    "messages", List.of(
-                            Map.of("role", "system", "content", prompt),
-                            Map.of("role", "user", "content", query)
-                    ),
-                    "temperature", 0.0,
-                    "response_format", Map.of("type", "json_object")
-            );
-
-            Map response = restTemplate.postForObject(
+            CloudRequestTemplate template = requestTemplate();
+            CloudCompletionReader.Completion completion = restTemplate.execute(
                     properties.getCloudIntentUrl(),
-                    new HttpEntity<>(body, headers),
-                    Map.class
+                    HttpMethod.POST,
+                    request -> {
+                        HttpHeaders headers = request.getHeaders();
+                        headers.setContentType(MediaType.APPLICATION_JSON);
+                        headers.setAccept(ACCEPT_JSON);
+                        headers.setBearerAuth(properties.getCloudIntentApiKey());
+                        headers.setContentLength(template.contentLength(encodedQuery));
+                        template.writeTo(request.getBody(), encodedQuery);
+                    },
+                    response -> completionReader.read(response.getBody())
             );
+            circuitBreaker.onSuccess(System.nanoTime() - started);
 
-            return parseResponse(response);
+            return new CloudAnswer(toAllowedIntent(completion.intent()), billedTokens(completion, query));
         } catch (RestClientException ex) {
+            circuitBreaker.onFailure();
             return null;
+        } catch (RuntimeException ex) {
+            circuitBreaker.onFailure();
+            throw ex;
         }
     }
 
-    private IntentResult parseResponse(Map response) {
-        if (response == null) {
-            return null;
-        }
-        Object choicesObj = response.get("choices");
-        if (!(choicesObj instanceof List<?> choices) || choices.isEmpty()) {
-            return null;
-        }
-        Object first = choices.get(0);
-        if (!(first instanceof Map<?, ?> choice)) {
-            return null;
-        }
-        Object messageObj = choice.get("message");
-        if (!(messageObj instanceof Map<?, ?> message)) {
-            return null;
-        }
-        String content = extractMessageContent(message.get("content"));
-        if (content == null || content.isBlank()) {
-            return null;
-        }
+    public boolean isConfigured() {
+        return properties.isCloudIntentEnabled()
+                && properties.getCloudIntentApiKey() != null
+                && !properties.getCloudIntentApiKey().isBlank();
+    }
 
-        try {
-            JsonNode node = objectMapper.readTree(content);
-            String intent = node.path("intent").asText("Unknown");
-            double confidence = node.path("confidence").asDouble(0.0);
-            if (!ALLOWED_INTENTS.contains(intent)) {
-                intent = "Unknown";
-            }
-            confidence = Math.max(0.0, Math.min(confidence, 1.0));
-            return new IntentResult(intent, confidence);
-        } catch (Exception ex) {
-            return null;
+    /**
+     * State of the circuit around the cloud endpoint: {@code closed}, {@code open} or {@code half_open}.
+     */
+    public String circuitState() {
+        return circuitBreaker.state().name().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Longest the routing layer waits for a cloud answer, derived from recent call latency.
+     */
+    public long callTimeoutMillis() {
+        return circuitBreaker.timeoutMillis();
+    }
+
+    /**
+     * The serialized request for the configured model, rebuilt only if the model setting changes.
+     */
+    private CloudRequestTemplate requestTemplate() {
+        String model = properties.getCloudIntentModel();
+        CloudRequestTemplate template = requestTemplate;
+        if (template == null || !Objects.equals(template.model(), model)) {
+            template = CloudRequestTemplate.of(objectMapper, model, SYSTEM_PROMPT);
+            requestTemplate = template;
         }
+        return template;
+    }
+
+    private String singleFlightKey(String query) {
+        String text = query == null ? "" : WHITESPACE.matcher(query.strip()).replaceAll(" ").toLowerCase(Locale.ROOT);
+        return properties.getCloudIntentModel() + '\n' + text;
     }
 
-    @SuppressWarnings("unchecked")
-    private String extractMessageContent(Object contentObj) {
-        if (contentObj instanceof String content) {
-            return content;
+    /**
+     * The {@code usage.total_tokens} the endpoint reported, or roughly four characters per token of the prompt when
+     * it reported none.
+     */
+    private long billedTokens(CloudCompletionReader.Completion completion, String query) {
+        if (completion.totalTokens() >= 0) {
+            return completion.totalTokens();
         }
-        if (contentObj instanceof List<?> parts) {
-            StringBuilder builder = new StringBuilder();
-            for (Object part : parts) {
-                if (part instanceof Map<?, ?> mapPart) {
-                    Object text = mapPart.get("text");
-                    if (text instanceof String textValue) {
-                        builder.append(textValue);
-                    }
-                }
-            }
-            String merged = builder.toString();
-            return merged.isBlank() ? null : merged;
+        return (SYSTEM_PROMPT.length() + (query == null ? 0 : query.length())) / 4;
+    }
+
+    private IntentResult toAllowedIntent(IntentResult answer) {
+        if (answer == null) {
+            return null;
         }
-        return null;
+        String intent = ALLOWED_INTENTS.contains(answer.intent()) ? answer.intent() : "Unknown";
+        return new IntentResult(intent, Math.max(0.0, Math.min(answer.confidence(), 1.0)));
     }
 }
@@ -0,0 +1,76 @@
+package com.aegis.agent.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The chat-completions request body serialized once per model, split around the user message content. A request
+ * is the prefix, the query's JSON-escaped UTF-8 bytes and the suffix, so the system prompt, model, temperature and
+ * response format are not re-encoded on every call.
+ */
+final class CloudRequestTemplate {
+
+    private static final String QUERY_SLOT = "__aegis_user_query__";
+
+    private final String model;
+    private final byte[] prefix;
+    private final byte[] suffix;
+
+    private CloudRequestTemplate(String model, byte[] prefix, byte[] suffix) {
+        this.model = model;
+        this.prefix = prefix;
+        this.suffix = suffix;
+    }
+
+    static CloudRequestTemplate of(ObjectMapper objectMapper, String model, String systemPrompt) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("model", model);
+        body.put("temperature", 0.0);
+        body.put("response_format", Map.of("type", "json_object"));
+        body.put("messages", List.of(
+                Map.of("role", "system", "content", systemPrompt),
+                Map.of("role", "user", "content", QUERY_SLOT)
+        ));
+        String json;
+        try {
+            json = objectMapper.writeValueAsString(body);
+        } catch (JsonProcessingException ex) {
+            throw new IllegalStateException("Cloud intent request template could not be serialized", ex);
+        }
+        int slot = json.lastIndexOf('"' + QUERY_SLOT + '"');
+        return new CloudRequestTemplate(
+                model,
+                json.substring(0, slot + 1).getBytes(StandardCharsets.UTF_8),
+                json.substring(slot + QUERY_SLOT.length() + 1).getBytes(StandardCharsets.UTF_8)
+        );
+    }
+
+    String model() {
+        return model;
+    }
+
+    /**
+     * The query as it goes between the quotes of the user message: JSON-escaped and UTF-8 encoded.
+     */
+    static byte[] encodeQuery(String query) {
+        return JsonStringEncoder.getInstance().quoteAsUTF8(query == null ? "" : query);
+    }
+
+    int contentLength(byte[] encodedQuery) {
+        return prefix.length + encodedQuery.length + suffix.length;
+    }
+
+    void writeTo(OutputStream body, byte[] encodedQuery) throws IOException {
+        body.write(prefix);
+        body.write(encodedQuery);
+        body.write(suffix);
+    }
+}
@@ -0,0 +1,263 @@
+package com.aegis.agent.service;
+
+import com.aegis.agent.api.dto.ComponentStatusItem;
+import com.aegis.agent.api.dto.ComponentStatusResponse;
+import com.aegis.agent.config.AegisProperties;
+import com.aegis.agent.config.WorkerThreads;
+import com.aegis.agent.integration.JiraClient;
+import com.aegis.agent.integration.OpenSearchClient;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Keeps the {@code /api/status/components} answer current in the background. Every
+ * {@code aegis.component-status-refresh-ms} all components are probed in parallel, each bounded by
+ * {@code aegis.component-probe-timeout-ms}, and the results are published together as one immutable snapshot.
+ * Readers only dereference the latest snapshot, so a slow or unreachable dependency never holds up a status request.
+ * A probe that misses its deadline is cancelled and reported {@code DOWN}; components read {@code UNKNOWN} until the
+ * first round completes. Probe latency is published per component and outcome as {@code aegis.component.probe}.
+ */
+@Component
+public class ComponentStatusRefresher {
+
+    private static final Logger log = LoggerFactory.getLogger(ComponentStatusRefresher.class);
+    private static final int SMTP_CONNECT_TIMEOUT_MS = 1_500;
+
+    /**
+     * One component check. {@code healthy} may block on the network; {@code circuit} is read after it and may be
+     * null when the component has no circuit breaker.
+     */
+    record Probe(String name, String url, String detail, BooleanSupplier healthy, Supplier<String> circuit) {
+    }
+
+    private final List<Probe> probes;
+    private final long refreshIntervalMs;
+    private final long probeTimeoutMs;
+    private final ThreadPoolExecutor probeExecutor;
+    private final MeterRegistry meterRegistry;
+    private volatile ComponentStatusResponse snapshot;
+    private ScheduledExecutorService scheduler;
+
+    public ComponentStatusRefresher(
+            AegisProperties properties,
+            DeepPavlovIntentProvider deepPavlovIntentProvider,
+            CloudIntentProvider cloudIntentProvider,
+            OpenSearchClient openSearchClient,
+            JiraClient jiraClient,
+            Environment environment,
+            MeterRegistry meterRegistry
+    ) {
+        this(
+                probes(properties, deepPavlovIntentProvider, cloudIntentProvider, openSearchClient, jiraClient, environment),
+                properties.getComponentStatusRefreshMs(),
+                properties.getComponentProbeTimeoutMs(),
+                WorkerThreads.factory(properties, "component-probe-"),
+                meterRegistry
+        );
+    }
+
+    ComponentStatusRefresher(
+            List<Probe> probes,
+            long refreshIntervalMs,
+            long probeTimeoutMs,
+            ThreadFactory probeThreads,
+            MeterRegistry meterRegistry
+    ) {
+        this.probes = List.copyOf(probes);
+        this.refreshIntervalMs = refreshIntervalMs;
+        this.probeTimeoutMs = Math.max(1, probeTimeoutMs);
+        this.meterRegistry = meterRegistry;
+        int threads = Math.max(1, probes.size());
+        this.probeExecutor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), probeThreads);
+        this.probeExecutor.allowCoreThreadTimeOut(true);
+
+        Map<String, ComponentStatusItem> unknown = new HashMap<>();
+        for (Probe probe : this.probes) {
+            unknown.put(probe.name(), new ComponentStatusItem("UNKNOWN", probe.url(), probe.detail()));
+        }
+        this.snapshot = new ComponentStatusResponse(unknown);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (refreshIntervalMs <= 0) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "component-status-refresher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::refreshQuietly, 0, refreshIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        probeExecutor.shutdownNow();
+    }
+
+    /**
+     * The latest published snapshot; never blocks.
+     */
+    public ComponentStatusResponse snapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Probes every component in parallel and publishes the results once all have answered or timed out.
+     */
+    void refresh() {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(probeTimeoutMs);
+        List<Future<ComponentStatusItem>> running = new ArrayList<>(probes.size());
+        List<AtomicBoolean> settled = new ArrayList<>(probes.size());
+        for (Probe probe : probes) {
+            AtomicBoolean outcome = new AtomicBoolean();
+            settled.add(outcome);
+            running.add(probeExecutor.submit(() -> probe(probe, outcome)));
+        }
+        Map<String, ComponentStatusItem> components = new HashMap<>();
+        for (int i = 0; i < probes.size(); i++) {
+            components.put(probes.get(i).name(), await(probes.get(i), running.get(i), settled.get(i), deadline));
+        }
+        snapshot = new ComponentStatusResponse(components);
+    }
+
+    private void refreshQuietly() {
+        try {
+            refresh();
+        } catch (RuntimeException ex) {
+            // A scheduled task that throws is never run again, so the snapshot would silently go stale.
+            log.warn("Component status refresh failed, keeping the previous snapshot: {}", ex.getMessage());
+        }
+    }
+
+    /**
+     * {@code settled} is claimed by whichever of the probe and the deadline comes first, so each round records
+     * exactly one outcome per component even when a cancelled probe still returns afterwards.
+     */
+    private ComponentStatusItem probe(Probe probe, AtomicBoolean settled) {
+        long started = System.nanoTime();
+        boolean up;
+        try {
+            up = probe.healthy().getAsBoolean();
+        } catch (RuntimeException ex) {
+            up = false;
+        }
+        if (settled.compareAndSet(false, true)) {
+            probeTimer(probe, up ? "up" : "down").record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        }
+        return item(probe, up ? "UP" : "DOWN");
+    }
+
+    private ComponentStatusItem await(Probe probe, Future<ComponentStatusItem> call, AtomicBoolean settled, long deadline) {
+        try {
+            return call.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException ex) {
+            if (!settled.compareAndSet(false, true)) {
+                // The probe answered right at the deadline and has already recorded its outcome.
+                return finished(probe, call);
+            }
+            call.cancel(true);
+            probeTimer(probe, "timeout").record(probeTimeoutMs, TimeUnit.MILLISECONDS);
+            log.debug("Component probe {} did not answer within {}ms", probe.name(), probeTimeoutMs);
+            return item(probe, "DOWN");
+        } catch (ExecutionException ex) {
+            return item(probe, "DOWN");
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            call.cancel(true);
+            return item(probe, "DOWN");
+        }
+    }
+
+    private static ComponentStatusItem finished(Probe probe, Future<ComponentStatusItem> call) {
+        try {
+            return call.get();
+        } catch (ExecutionException ex) {
+            return item(probe, "DOWN");
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            call.cancel(true);
+            return item(probe, "DOWN");
+        }
+    }
+
+    private Timer probeTimer(Probe probe, String outcome) {
+        return Timer.builder("aegis.component.probe")
+                .description("Component health probe latency")
+                .tag("component", probe.name())
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    private static ComponentStatusItem item(Probe probe, String status) {
+        String circuit = probe.circuit() == null ? null : probe.circuit().get();
+        return new ComponentStatusItem(status, probe.url(), probe.detail(), circuit);
+    }
+
+    private static List<Probe> probes(
+            AegisProperties properties,
+            DeepPavlovIntentProvider deepPavlovIntentProvider,
+            CloudIntentProvider cloudIntentProvider,
+            OpenSearchClient openSearchClient,
+            JiraClient jiraClient,
+            Environment environment
+    ) {
+        String smtpHost = environment.getProperty("spring.mail.host", "");
+        int smtpPort = Integer.parseInt(environment.getProperty("spring.mail.port", "587"));
+        int smtpTimeoutMs = (int) Math.min(SMTP_CONNECT_TIMEOUT_MS, Math.max(1, properties.getComponentProbeTimeoutMs()));
+        return List.of(
+                new Probe("backend", "http://localhost:8080/actuator/health", "Core API", () -> true, null),
+                new Probe("deeppavlov", properties.getDeeppavlovUrl(), "Intent inference",
+                        deepPavlovIntentProvider::isHealthy, deepPavlovIntentProvider::circuitState),
+                new Probe("cloud-intent", properties.getCloudIntentUrl(), "Cloud intent classification",
+                        () -> cloudIntentProvider.isConfigured() && !"open".equals(cloudIntentProvider.circuitState()),
+                        cloudIntentProvider::circuitState),
+                new Probe("opensearch", properties.getOpenSearchUrl(), "Log indexing and replay", openSearchClient::isHealthy, null),
+                new Probe("jira", properties.getJiraBaseUrl(), "Ticket escalation", jiraClient::isHealthy, null),
+                new Probe("email", smtpHost.isBlank() ? null : "smtp://" + smtpHost + ":" + smtpPort, "Escalation email",
+                        () -> isSmtpReachable(smtpHost, smtpPort, smtpTimeoutMs), null)
+        );
+    }
+
+    private static boolean isSmtpReachable(String host, int port, int timeoutMs) {
+        if (host == null || host.isBlank()) {
+            return false;
+        }
+        try (Socket socket = new Socket()) {
+            socket.connect(new InetSocketAddress(host, port), timeoutMs);
+            return true;
+        } catch (IOException ex) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package com.aegis.agent.service;
+
+import com.aegis.agent.domain.IntentResult;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * Coalesces concurrent DeepPavlov classifications into one {@code texts} request. A dispatcher thread takes the
+ * first waiting query, collects whatever else arrives within {@code linger} up to {@code maxBatchSize}, and hands
+ * the batch to a sender pool of {@code maxInFlight} threads, so a slow batch does not hold up the next one.
+ * Predictions come back in request order and complete each caller's future; a failed request fails every future in
+ * the batch.
+ * <p>
+ * The batcher owns circuit-breaker accounting for batched calls: each request records one success or failure, and
+ * its latency sample covers only the request itself, not the time queries spent lingering or queued for a sender.
+ * Queries withdrawn by their caller before the batch goes out are left out of the request.
+ */
+final class DeepPavlovBatcher {
+
+    private static final long IDLE_POLL_MS = 200;
+
+    private record Pending(String text, CompletableFuture<IntentResult> result, long enqueuedAt) {
+    }
+
+    private final BlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+    private final int maxBatchSize;
+    private final long lingerNanos;
+    private final int maxInFlight;
+    private final Function<List<String>, List<IntentResult>> sender;
+    private final CircuitBreaker circuitBreaker;
+
+    private final DistributionSummary batchSize;
+    private final Timer queueDelay;
+
+    private final ReentrantLock lifecycle = new ReentrantLock();
+    private volatile boolean running;
+    private Thread dispatcher;
+    private ThreadPoolExecutor senders;
+
+    /**
+     * @param sender classifies a batch and returns one result per text, in order; throws when the request failed
+     */
+    DeepPavlovBatcher(
+            int maxBatchSize,
+            long lingerMs,
+            int maxInFlight,
+            Function<List<String>, List<IntentResult>> sender,
+            CircuitBreaker circuitBreaker,
+            MeterRegistry meterRegistry
+    ) {
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, lingerMs));
+        this.maxInFlight = Math.max(1, maxInFlight);
+        this.sender = sender;
+        this.circuitBreaker = circuitBreaker;
+
+        this.batchSize = DistributionSummary.builder("aegis.deeppavlov.batch.size")
+                .description("Queries per DeepPavlov inference request")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.queueDelay = Timer.builder("aegis.deeppavlov.batch.queue.delay")
+                .description("Time a query waited to be sent in a DeepPavlov batch")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    boolean isRunning() {
+        return running;
+    }
+
+    CompletableFuture<IntentResult> submit(String text) {
+        CompletableFuture<IntentResult> result = new CompletableFuture<>();
+        Pending pending = new Pending(text, result, System.nanoTime());
+        queue.add(pending);
+        // Re-checked after queueing so a query that races with stop() is failed rather than left waiting.
+        if (!running && queue.remove(pending)) {
+            result.completeExceptionally(new CancellationException("DeepPavlov batcher is stopped"));
+        }
+        return result;
+    }
+
+    /**
+     * Gives up on a submitted query: its future is cancelled, and it is dropped from the batch it would have joined.
+     * Returns true when it was still waiting in the queue, so no request was ever made for it.
+     */
+    boolean withdraw(CompletableFuture<IntentResult> result) {
+        result.cancel(false);
+        return queue.removeIf(pending -> pending.result() == result);
+    }
+
+    void start() {
+        lifecycle.lock();
+        try {
+            if (dispatcher != null) {
+                return;
+            }
+            AtomicInteger threadCount = new AtomicInteger();
+            senders = new ThreadPoolExecutor(maxInFlight, maxInFlight, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+                Thread thread = new Thread(runnable, "deeppavlov-batch-sender-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            senders.allowCoreThreadTimeOut(true);
+            running = true;
+            dispatcher = new Thread(this::dispatch, "deeppavlov-batcher");
+            dispatcher.setDaemon(true);
+            dispatcher.start();
+        } finally {
+            lifecycle.unlock();
+        }
+    }
+
+    /**
+     * Stops accepting queries and fails the ones still waiting; batches already sent complete normally.
+     */
+    void stop() {
+        lifecycle.lock();
+        try {
+            if (dispatcher == null) {
+                return;
+            }
+            running = false;
+            dispatcher.interrupt();
+            try {
+                dispatcher.join(1_000);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            dispatcher = null;
+            senders.shutdown();
+            Pending pending;
+            while ((pending = queue.poll()) != null) {
+                pending.result().completeExceptionally(new CancellationException("DeepPavlov batcher is stopped"));
+            }
+        } finally {
+            lifecycle.unlock();
+        }
+    }
+
+    private void dispatch() {
+        try {
+            while (running) {
+                Pending first = queue.poll(IDLE_POLL_MS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                List<Pending> batch = new ArrayList<>(maxBatchSize);
+                batch.add(first);
+                long deadline = System.nanoTime() + lingerNanos;
+                while (batch.size() < maxBatchSize) {
+                    if (queue.drainTo(batch, maxBatchSize - batch.size()) > 0) {
+                        continue;
+                    }
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        break;
+                    }
+                    Pending next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                senders.execute(() -> send(batch));
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void send(List<Pending> drained) {
+        List<Pending> batch = new ArrayList<>(drained.size());
+        for (Pending pending : drained) {
+            if (!pending.result().isDone()) {
+                batch.add(pending);
+            }
+        }
+        if (batch.isEmpty()) {
+            // Every caller withdrew while the batch waited for a sender; release their permits without a request.
+            circuitBreaker.onFailure();
+            return;
+        }
+        long now = System.nanoTime();
+        List<String> texts = new ArrayList<>(batch.size());
+        for (Pending pending : batch) {
+            queueDelay.record(now - pending.enqueuedAt(), TimeUnit.NANOSECONDS);
+            texts.add(pending.text());
+        }
+        batchSize.record(batch.size());
+        List<IntentResult> results;
+        long started = System.nanoTime();
+        try {
+            results = sender.apply(texts);
+            if (results.size() != batch.size()) {
+                throw new IllegalStateException("DeepPavlov returned " + results.size() + " predictions for " + batch.size() + " texts");
+            }
+        } catch (RuntimeException ex) {
+            circuitBreaker.onFailure();
+            for (Pending pending : batch) {
+                pending.result().completeExceptionally(ex);
+            }
+            return;
+        }
+        circuitBreaker.onSuccess(System.nanoTime() - started);
+        for (int i = 0; i < batch.size(); i++) {
+            batch.get(i).result().complete(results.get(i));
+        }
+    }
+}
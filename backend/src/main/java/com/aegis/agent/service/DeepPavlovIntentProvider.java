@@ -2,48 +2,138 @@ package com.aegis.agent.service;
 
 import com.aegis.agent.config.AegisProperties;
 import com.aegis.agent.domain.IntentResult;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Component;
 import org.springframework.web.client.RestClientException;
 import org.springframework.web.client.RestTemplate;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 
+/**
+ * Calls the DeepPavlov inference API. With {@code aegis.deeppavlov-batch-max-size} above 1, concurrent calls are
+ * coalesced by a {@link DeepPavlovBatcher} into one {@code texts} request and scored together. An inference server
+ * that answers a batch without {@code predictions} only understands single queries; batching is then switched off
+ * for the life of the process and that batch is re-sent one query at a time.
+ */
 @Component
 public class DeepPavlovIntentProvider {
 
+    private static final Logger log = LoggerFactory.getLogger(DeepPavlovIntentProvider.class);
+
     private final AegisProperties properties;
     private final RestTemplate restTemplate;
+    private final CircuitBreaker circuitBreaker;
+    private final DeepPavlovResponseReader responseReader;
+    private final DeepPavlovBatcher batcher;
+    private volatile boolean batchRequestsSupported = true;
 
-    public DeepPavlovIntentProvider(AegisProperties properties, RestTemplate externalRestTemplate) {
+    public DeepPavlovIntentProvider(
+            AegisProperties properties,
+            @Qualifier("deepPavlovRestTemplate") RestTemplate deepPavlovRestTemplate,
+            ObjectMapper objectMapper,
+            MeterRegistry meterRegistry
+    ) {
         this.properties = properties;
-        this.restTemplate = externalRestTemplate;
+        this.restTemplate = deepPavlovRestTemplate;
+        this.responseReader = new DeepPavlovResponseReader(objectMapper);
+        this.circuitBreaker = CircuitBreaker.forIntentProvider(properties);
+        this.batcher = properties.getDeeppavlovBatchMaxSize() > 1
+                ? new DeepPavlovBatcher(
+                        properties.getDeeppavlovBatchMaxSize(),
+                        properties.getDeeppavlovBatchLingerMs(),
+                        properties.getDeeppavlovMaxConnections(),
+                        this::classifyBatchOrEach,
+                        circuitBreaker,
+                        meterRegistry
+                )
+                : null;
     }
 
-    public IntentResult classify(String query) {
-        if (!properties.isDeeppavlovEnabled() || properties.getDeeppavlovUrl() == null || properties.getDeeppavlovUrl().isBlank()) {
-            return null;
+    @PostConstruct
+    public void startBatching() {
+        if (batcher != null && isConfigured()) {
+            batcher.start();
         }
+    }
 
-        Map<String, Object> payload = Map.of("query", query, "texts", List.of(query));
-
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.APPLICATION_JSON);
+    @PreDestroy
+    public void stopBatching() {
+        if (batcher != null) {
+            batcher.stop();
+        }
+    }
 
+    public IntentResult classify(String query) {
+        if (!isConfigured() || !circuitBreaker.tryAcquire()) {
+            return null;
+        }
+        if (batcher != null && batcher.isRunning() && batchRequestsSupported) {
+            // The batcher records the breaker outcome once per request it sends.
+            CompletableFuture<IntentResult> pending = batcher.submit(query);
+            try {
+                return pending.get();
+            } catch (ExecutionException ex) {
+                return null;
+            } catch (CancellationException ex) {
+                // Stopped before the query was sent, so release the permit taken above.
+                circuitBreaker.onFailure();
+                return null;
+            } catch (InterruptedException ex) {
+                // The routing deadline cancelled this call; free the worker instead of waiting for the batch.
+                if (batcher.withdraw(pending)) {
+                    circuitBreaker.onFailure();
+                }
+                Thread.currentThread().interrupt();
+                return null;
+            }
+        }
+        long started = System.nanoTime();
         try {
-            Map response = restTemplate.postForObject(properties.getDeeppavlovUrl(), new HttpEntity<>(payload, headers), Map.class);
-            return parseResponse(response);
+            IntentResult result = classifyBatch(List.of(query)).get(0);
+            circuitBreaker.onSuccess(System.nanoTime() - started);
+            return result;
         } catch (RestClientException ex) {
+            circuitBreaker.onFailure();
             return null;
+        } catch (RuntimeException ex) {
+            circuitBreaker.onFailure();
+            throw ex;
         }
     }
 
+    /**
+     * State of the circuit around the inference endpoint: {@code closed}, {@code open} or {@code half_open}.
+     */
+    public String circuitState() {
+        return circuitBreaker.state().name().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Longest the routing layer waits for a DeepPavlov answer, derived from recent call latency.
+     */
+    public long callTimeoutMillis() {
+        return circuitBreaker.timeoutMillis();
+    }
+
     public boolean isHealthy() {
-        if (!properties.isDeeppavlovEnabled() || properties.getDeeppavlovUrl() == null || properties.getDeeppavlovUrl().isBlank()) {
+        if (!isConfigured()) {
             return false;
         }
         String inferUrl = properties.getDeeppavlovUrl();
@@ -56,27 +146,47 @@ public class DeepPavlovIntentProvider {
         }
     }
 
-    @SuppressWarnings("unchecked")
-    private IntentResult parseResponse(Map response) {
-        if (response == null) {
-            return null;
-        }
-
-        Object intent = response.get("intent");
-        Object confidence = response.get("confidence");
-        if (intent instanceof String && confidence instanceof Number) {
-            return new IntentResult((String) intent, ((Number) confidence).doubleValue());
-        }
+    public boolean isConfigured() {
+        return properties.isDeeppavlovEnabled() && properties.getDeeppavlovUrl() != null && !properties.getDeeppavlovUrl().isBlank();
+    }
 
-        Object predictions = response.get("predictions");
-        if (predictions instanceof List<?> list && !list.isEmpty() && list.get(0) instanceof Map<?, ?> map) {
-            Object label = map.get("label");
-            Object score = map.get("score");
-            if (label instanceof String && score instanceof Number) {
-                return new IntentResult((String) label, ((Number) score).doubleValue());
+    /**
+     * Sends the texts as one batch, or one request per text once the server has shown it cannot score batches.
+     */
+    private List<IntentResult> classifyBatchOrEach(List<String> texts) {
+        if (batchRequestsSupported) {
+            try {
+                return classifyBatch(texts);
+            } catch (DeepPavlovResponseReader.MissingPredictionsException ex) {
+                batchRequestsSupported = false;
+                log.warn("DeepPavlov at {} does not return batch predictions; sending one query per request",
+                        properties.getDeeppavlovUrl());
             }
         }
+        List<IntentResult> results = new ArrayList<>(texts.size());
+        for (String text : texts) {
+            results.add(classifyBatch(List.of(text)).get(0));
+        }
+        return results;
+    }
+
+    /**
+     * Scores the texts in one request and returns one result per text, in order; null where a prediction could not
+     * be parsed. A single text is also sent as {@code query} so older inference servers still understand it.
+     */
+    private List<IntentResult> classifyBatch(List<String> texts) {
+        Map<String, Object> payload = texts.size() == 1
+                ? Map.of("query", texts.get(0), "texts", texts)
+                : Map.of("texts", texts);
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
 
-        return null;
+        return restTemplate.execute(
+                properties.getDeeppavlovUrl(),
+                HttpMethod.POST,
+                restTemplate.httpEntityCallback(new HttpEntity<>(payload, headers)),
+                response -> responseReader.read(response.getBody(), texts.size())
+        );
     }
 }
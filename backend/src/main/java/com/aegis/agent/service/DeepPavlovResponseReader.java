@@ -0,0 +1,122 @@
+package com.aegis.agent.service;
+
+import com.aegis.agent.domain.IntentResult;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Reads DeepPavlov inference responses with a streaming parser. For a single text the top-level
+ * {@code intent}/{@code confidence} pair is used and reading stops once both are known, falling back to the first
+ * entry of {@code predictions}; for a batch, {@code predictions} holds one {@code label}/{@code score} pair per text
+ * and reading stops at the end of that list.
+ */
+public final class DeepPavlovResponseReader {
+
+    private final JsonFactory jsonFactory;
+
+    public DeepPavlovResponseReader(ObjectMapper objectMapper) {
+        this.jsonFactory = objectMapper.getFactory();
+    }
+
+    /**
+     * Returns one result per text, in order; null where a prediction could not be read.
+     *
+     * @throws MissingPredictionsException when a batch response carries no {@code predictions} list
+     * @throws IOException when the response is not well-formed JSON
+     */
+    public List<IntentResult> read(InputStream body, int texts) throws IOException {
+        boolean single = texts == 1;
+        String intent = null;
+        double confidence = 0.0;
+        boolean confidenceRead = false;
+        List<IntentResult> predictions = null;
+        try (JsonParser parser = jsonFactory.createParser(body)) {
+            if (parser.nextToken() == JsonToken.START_OBJECT) {
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String field = parser.currentName();
+                    JsonToken value = parser.nextToken();
+                    if (single && "intent".equals(field) && value == JsonToken.VALUE_STRING) {
+                        intent = parser.getText();
+                    } else if (single && "confidence".equals(field) && value.isNumeric()) {
+                        confidence = parser.getDoubleValue();
+                        confidenceRead = true;
+                    } else if ("predictions".equals(field) && value == JsonToken.START_ARRAY) {
+                        predictions = readPredictions(parser, single ? 1 : Integer.MAX_VALUE);
+                    } else {
+                        parser.skipChildren();
+                    }
+                    if (single ? intent != null && confidenceRead : predictions != null) {
+                        break;
+                    }
+                }
+            }
+        }
+
+        if (single) {
+            if (intent != null && confidenceRead) {
+                return Collections.singletonList(new IntentResult(intent, confidence));
+            }
+            return Collections.singletonList(predictions == null || predictions.isEmpty() ? null : predictions.get(0));
+        }
+        if (predictions == null) {
+            throw new MissingPredictionsException("DeepPavlov response has no predictions for a batch of " + texts);
+        }
+        return predictions;
+    }
+
+    /**
+     * Thrown for a batch response without {@code predictions}, i.e. from an inference server that only understands
+     * single queries.
+     */
+    public static final class MissingPredictionsException extends IllegalStateException {
+
+        MissingPredictionsException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * Reads up to {@code limit} predictions and skips the rest of the list.
+     */
+    private static List<IntentResult> readPredictions(JsonParser parser, int limit) throws IOException {
+        List<IntentResult> predictions = new ArrayList<>(Math.min(limit, 16));
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            if (predictions.size() >= limit) {
+                parser.skipChildren();
+            } else if (parser.currentToken() == JsonToken.START_OBJECT) {
+                predictions.add(readPrediction(parser));
+            } else {
+                parser.skipChildren();
+                predictions.add(null);
+            }
+        }
+        return predictions;
+    }
+
+    private static IntentResult readPrediction(JsonParser parser) throws IOException {
+        String label = null;
+        double score = 0.0;
+        boolean scoreRead = false;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if ("label".equals(field) && value == JsonToken.VALUE_STRING) {
+                label = parser.getText();
+            } else if ("score".equals(field) && value.isNumeric()) {
+                score = parser.getDoubleValue();
+                scoreRead = true;
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return label != null && scoreRead ? new IntentResult(label, score) : null;
+    }
+}
@@ -0,0 +1,45 @@
+package com.aegis.agent.service;
+
+import java.util.Map;
+
+/**
+ * Field policies for the event types indexed to OpenSearch. Numbers and booleans are never scanned, so only
+ * string fields that need something other than {@link FieldPolicy#REDACT} are listed.
+ */
+public final class EventFieldPolicies {
+
+    private static final Map<String, FieldPolicy> CHAT = Map.of(
+            "intent", FieldPolicy.SKIP,
+            "ticketId", FieldPolicy.SKIP,
+            "userRef", FieldPolicy.PSEUDONYMIZE,
+            "challengeId", FieldPolicy.HASH,
+            "rootCause", FieldPolicy.SKIP,
+            "fixAction", FieldPolicy.SKIP
+    );
+
+    private static final Map<String, FieldPolicy> LOG_ANALYSIS = Map.of(
+            "rootCause", FieldPolicy.SKIP,
+            "fixAction", FieldPolicy.SKIP,
+            "severity", FieldPolicy.SKIP,
+            "matchedSignals", FieldPolicy.SKIP,
+            "intent", FieldPolicy.SKIP
+    );
+
+    private static final Map<String, Map<String, FieldPolicy>> BY_EVENT_TYPE = Map.of(
+            "CHAT_NEED_MORE_INFO", CHAT,
+            "CHAT_GUIDED", CHAT,
+            "MANUAL_ESCALATION", CHAT,
+            "MANUAL_ESCALATION_FAILED", CHAT,
+            "LOG_ANALYSIS", LOG_ANALYSIS
+    );
+
+    private EventFieldPolicies() {
+    }
+
+    /**
+     * Returns the declared policies for {@code eventType}; unknown types get an empty map, so every field is redacted.
+     */
+    public static Map<String, FieldPolicy> forEventType(String eventType) {
+        return eventType == null ? Map.of() : BY_EVENT_TYPE.getOrDefault(eventType, Map.of());
+    }
+}
@@ -0,0 +1,19 @@
+package com.aegis.agent.service;
+
+/**
+ * How {@link SensitiveDataSanitizer#sanitizeEvent} treats a top-level event field.
+ */
+public enum FieldPolicy {
+
+    /** Indexed as-is, including nested values; for fields produced by the service itself. */
+    SKIP,
+
+    /** Strings anywhere beneath the field are redacted; the default for undeclared fields. */
+    REDACT,
+
+    /** A user id replaced by its {@code user-<12 hex>} reference; missing ids become {@code user-anonymous}. */
+    PSEUDONYMIZE,
+
+    /** Replaced by the keyed HMAC-SHA256 hex of the exact value, so equal values can still be correlated. */
+    HASH
+}
@@ -0,0 +1,255 @@
+package com.aegis.agent.service;
+
+import com.aegis.agent.domain.IntentResult;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Multinomial logistic regression over hashed word n-grams, loaded from the weights that
+ * {@code ai/deeppavlov/train_model.py} exports.
+ * <p>
+ * Features are computed exactly as scikit-learn's {@code HashingVectorizer(alternate_sign=False, norm="l2")} does:
+ * the query is lowercased, split into runs of two or more word characters, expanded into 1..{@code ngramMax}-grams
+ * joined by single spaces, and each n-gram is hashed with 32-bit MurmurHash3 of its UTF-8 bytes into one of
+ * {@code features} buckets. Weights are held in one dense {@code float[features * labels]} array, so scoring a query
+ * touches only the rows of the n-grams it contains.
+ */
+final class HashedNgramIntentModel {
+
+    static final String FORMAT = "hashed-ngram-logreg/1";
+
+    private static final ObjectMapper MODEL_MAPPER = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    record Reference(String text, String expected, String label, double confidence) {
+    }
+
+    private record ModelDocument(
+            String format,
+            int features,
+            int ngramMax,
+            List<String> labels,
+            double[] intercepts,
+            List<double[]> weights,
+            Double confidenceThreshold,
+            List<Reference> reference
+    ) {
+    }
+
+    private final int features;
+    private final int ngramMax;
+    private final String[] labels;
+    private final float[] intercepts;
+    private final float[] weights;
+    private final int weightedFeatures;
+    private final Double confidenceThreshold;
+    private final List<Reference> reference;
+
+    private HashedNgramIntentModel(ModelDocument document) {
+        if (!FORMAT.equals(document.format())) {
+            throw new IllegalArgumentException("Unsupported intent model format: " + document.format());
+        }
+        if (document.features() <= 0 || document.ngramMax() <= 0) {
+            throw new IllegalArgumentException("Intent model needs positive features and ngramMax");
+        }
+        if (document.labels() == null || document.labels().isEmpty()
+                || document.intercepts() == null || document.intercepts().length != document.labels().size()) {
+            throw new IllegalArgumentException("Intent model needs one intercept per label");
+        }
+        this.features = document.features();
+        this.ngramMax = document.ngramMax();
+        this.labels = document.labels().toArray(String[]::new);
+        int classes = labels.length;
+        this.intercepts = new float[classes];
+        for (int k = 0; k < classes; k++) {
+            intercepts[k] = (float) document.intercepts()[k];
+        }
+        this.weights = new float[features * classes];
+        List<double[]> rows = document.weights() == null ? List.of() : document.weights();
+        for (double[] row : rows) {
+            int feature = (int) row[0];
+            if (row.length != classes + 1 || feature < 0 || feature >= features) {
+                throw new IllegalArgumentException("Malformed weight row for feature " + row[0]);
+            }
+            for (int k = 0; k < classes; k++) {
+                weights[feature * classes + k] = (float) row[k + 1];
+            }
+        }
+        this.weightedFeatures = rows.size();
+        this.confidenceThreshold = document.confidenceThreshold();
+        this.reference = document.reference() == null ? List.of() : List.copyOf(document.reference());
+    }
+
+    static HashedNgramIntentModel load(InputStream input) throws IOException {
+        return new HashedNgramIntentModel(MODEL_MAPPER.readValue(input, ModelDocument.class));
+    }
+
+    /**
+     * Returns the most probable label and its softmax probability; null when the query has no word of two or more
+     * characters.
+     */
+    IntentResult classify(String query) {
+        String[] tokens = tokenize(query.toLowerCase(Locale.ROOT));
+        if (tokens.length == 0) {
+            return null;
+        }
+
+        int[] buckets = new int[tokens.length * ngramMax];
+        int count = 0;
+        StringBuilder gram = new StringBuilder();
+        for (int n = 1; n <= ngramMax; n++) {
+            for (int i = 0; i + n <= tokens.length; i++) {
+                gram.setLength(0);
+                gram.append(tokens[i]);
+                for (int j = i + 1; j < i + n; j++) {
+                    gram.append(' ').append(tokens[j]);
+                }
+                buckets[count++] = bucket(gram.toString());
+            }
+        }
+
+        // Duplicate buckets add up, as in the sparse count vector; the norm is taken over the summed counts.
+        Arrays.sort(buckets, 0, count);
+        double squares = 0;
+        for (int i = 0; i < count; ) {
+            int run = 1;
+            while (i + run < count && buckets[i + run] == buckets[i]) {
+                run++;
+            }
+            squares += (double) run * run;
+            i += run;
+        }
+        double norm = Math.sqrt(squares);
+
+        int classes = labels.length;
+        double[] scores = new double[classes];
+        for (int k = 0; k < classes; k++) {
+            scores[k] = intercepts[k];
+        }
+        for (int i = 0; i < count; ) {
+            int run = 1;
+            while (i + run < count && buckets[i + run] == buckets[i]) {
+                run++;
+            }
+            double value = run / norm;
+            int offset = buckets[i] * classes;
+            for (int k = 0; k < classes; k++) {
+                scores[k] += value * weights[offset + k];
+            }
+            i += run;
+        }
+
+        int best = 0;
+        double max = scores[0];
+        for (int k = 1; k < classes; k++) {
+            if (scores[k] > max) {
+                max = scores[k];
+                best = k;
+            }
+        }
+        double sum = 0;
+        for (int k = 0; k < classes; k++) {
+            sum += Math.exp(scores[k] - max);
+        }
+        return new IntentResult(labels[best], 1.0 / sum);
+    }
+
+    int weightedFeatures() {
+        return weightedFeatures;
+    }
+
+    /**
+     * Lowest confidence at which the exporter found this model's held-out predictions precise enough to trust; null
+     * for files exported before the threshold was added.
+     */
+    Double confidenceThreshold() {
+        return confidenceThreshold;
+    }
+
+    /**
+     * Training examples with their labels and the predictions the exporting model made on them, for parity checks.
+     */
+    List<Reference> reference() {
+        return reference;
+    }
+
+    private int bucket(String gram) {
+        byte[] bytes = gram.getBytes(StandardCharsets.UTF_8);
+        int hash = murmur3(bytes, 0);
+        return hash == Integer.MIN_VALUE ? (int) (-(long) hash % features) : Math.abs(hash) % features;
+    }
+
+    /**
+     * Maximal runs of at least two word characters, like the {@code (?u)\b\w\w+\b} token pattern.
+     */
+    private static String[] tokenize(String text) {
+        String[] tokens = new String[8];
+        int count = 0;
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean word = i < text.length() && isWordChar(text.charAt(i));
+            if (word && start < 0) {
+                start = i;
+            } else if (!word && start >= 0) {
+                if (i - start >= 2) {
+                    if (count == tokens.length) {
+                        tokens = Arrays.copyOf(tokens, count * 2);
+                    }
+                    tokens[count++] = text.substring(start, i);
+                }
+                start = -1;
+            }
+        }
+        return Arrays.copyOf(tokens, count);
+    }
+
+    private static boolean isWordChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_';
+    }
+
+    /**
+     * MurmurHash3 x86 32-bit, as used by scikit-learn's feature hashing.
+     */
+    @SuppressWarnings("fallthrough")
+    static int murmur3(byte[] data, int seed) {
+        int hash = seed;
+        int blocks = data.length & ~3;
+        for (int i = 0; i < blocks; i += 4) {
+            int k = (data[i] & 0xff) | (data[i + 1] & 0xff) << 8 | (data[i + 2] & 0xff) << 16 | (data[i + 3] & 0xff) << 24;
+            hash ^= mixKey(k);
+            hash = Integer.rotateLeft(hash, 13) * 5 + 0xe6546b64;
+        }
+        int k = 0;
+        switch (data.length & 3) {
+            case 3:
+                k ^= (data[blocks + 2] & 0xff) << 16;
+            case 2:
+                k ^= (data[blocks + 1] & 0xff) << 8;
+            case 1:
+                k ^= data[blocks] & 0xff;
+                hash ^= mixKey(k);
+            default:
+                break;
+        }
+        hash ^= data.length;
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        hash *= 0xc2b2ae35;
+        hash ^= hash >>> 16;
+        return hash;
+    }
+
+    private static int mixKey(int k) {
+        k *= 0xcc9e2d51;
+        k = Integer.rotateLeft(k, 15);
+        return k * 0x1b873593;
+    }
+}
@@ -0,0 +1,128 @@
+package com.aegis.agent.service;
+
+import javax.crypto.Mac;
+import javax.crypto.ShortBufferException;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Locale;
+
+/**
+ * Derives {@code user-<12 hex>} references from user ids with HMAC-SHA256 under a configured secret, so a
+ * reference cannot be recomputed from a guessed id without the key.
+ * <p>
+ * Ids are trimmed and lowercased before hashing. Each thread keeps its own {@link Mac} and buffers; ASCII ids
+ * are lowercased straight into the input buffer and only the six digest bytes that make up the reference are
+ * hex-encoded, so the only allocation per call is the returned string.
+ */
+final class HmacPseudonymizer {
+
+    static final String PREFIX = "user-";
+
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final int REFERENCE_BYTES = 6;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final SecretKeySpec key;
+    private final ThreadLocal<State> states;
+
+    HmacPseudonymizer(byte[] secret) {
+        this.key = new SecretKeySpec(secret, ALGORITHM);
+        newMac();
+        this.states = ThreadLocal.withInitial(() -> new State(newMac()));
+    }
+
+    String pseudonymize(String userId) {
+        int start = 0;
+        int end = userId.length();
+        while (start < end && userId.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && userId.charAt(end - 1) <= ' ') {
+            end--;
+        }
+
+        State state = states.get();
+        if (state.lowercaseAscii(userId, start, end)) {
+            state.mac.update(state.input, 0, end - start);
+        } else {
+            state.mac.update(userId.substring(start, end).toLowerCase(Locale.ROOT).getBytes(StandardCharsets.UTF_8));
+        }
+        finish(state);
+
+        char[] reference = state.reference;
+        for (int i = 0; i < REFERENCE_BYTES; i++) {
+            int b = state.digest[i];
+            reference[PREFIX.length() + 2 * i] = HEX[(b >> 4) & 0xf];
+            reference[PREFIX.length() + 2 * i + 1] = HEX[b & 0xf];
+        }
+        return new String(reference);
+    }
+
+    /**
+     * Full hex HMAC of {@code value} as given, without trimming or case folding.
+     */
+    String hash(String value) {
+        State state = states.get();
+        state.mac.update(value.getBytes(StandardCharsets.UTF_8));
+        finish(state);
+
+        char[] hex = new char[2 * state.digest.length];
+        for (int i = 0; i < state.digest.length; i++) {
+            int b = state.digest[i];
+            hex[2 * i] = HEX[(b >> 4) & 0xf];
+            hex[2 * i + 1] = HEX[b & 0xf];
+        }
+        return new String(hex);
+    }
+
+    private static void finish(State state) {
+        try {
+            state.mac.doFinal(state.digest, 0);
+        } catch (ShortBufferException ex) {
+            throw new IllegalStateException("HMAC digest buffer too small", ex);
+        }
+    }
+
+    private Mac newMac() {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            return mac;
+        } catch (GeneralSecurityException ex) {
+            throw new IllegalStateException("Cannot initialize " + ALGORITHM + " for pseudonymization", ex);
+        }
+    }
+
+    private static final class State {
+
+        private final Mac mac;
+        private final byte[] digest;
+        private final char[] reference = new char[PREFIX.length() + 2 * REFERENCE_BYTES];
+        private byte[] input = new byte[64];
+
+        State(Mac mac) {
+            this.mac = mac;
+            this.digest = new byte[mac.getMacLength()];
+            PREFIX.getChars(0, PREFIX.length(), reference, 0);
+        }
+
+        /**
+         * Writes the lowercased range into {@link #input}; returns false, leaving the MAC untouched, if a
+         * non-ASCII character needs full Unicode case mapping.
+         */
+        boolean lowercaseAscii(String value, int start, int end) {
+            if (input.length < end - start) {
+                input = new byte[Math.max(end - start, input.length * 2)];
+            }
+            for (int i = start; i < end; i++) {
+                char c = value.charAt(i);
+                if (c >= 0x80) {
+                    return false;
+                }
+                input[i - start] = (byte) (c >= 'A' && c <= 'Z' ? c + ('a' - 'A') : c);
+            }
+            return true;
+        }
+    }
+}
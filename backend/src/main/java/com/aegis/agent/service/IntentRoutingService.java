@@ -1,30 +1,131 @@
 package com.aegis.agent.service;
 
 import com.aegis.agent.config.AegisProperties;
+import com.aegis.agent.config.WorkerThreads;
 import com.aegis.agent.domain.IntentResolution;
 import com.aegis.agent.domain.IntentResult;
-import org.springframework.context.annotation.Primary;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Classifies with the cloud provider and DeepPavlov concurrently and combines whatever answers arrive before
+ * {@code aegis.intent-deadline-ms}, or before the provider's own latency-derived timeout if that is shorter. A
+ * provider that misses its deadline, fails or has an open circuit counts as unavailable, so when neither answers in
+ * time the rule-based fallback is used as soon as the deadline passes. Calls that miss their deadline are cancelled:
+ * queued ones never run and running ones are interrupted, which leaves a blocking HTTP read to finish within its
+ * read timeout.
+ * <p>
+ * The fan-out queue is bounded by {@code aegis.intent-fan-out-queue-capacity}; when it is full the request skips the
+ * providers and answers from the rule-based fallback at once, instead of queueing behind calls it could only reach
+ * after its deadline. By default it holds both calls of every request the servlet container can run at once, so
+ * only load beyond the container's own limit is shed; calls that wait past their deadline are cancelled anyway.
+ * <p>
+ * When a {@link LocalIntentProvider} model is configured it takes DeepPavlov's place and is evaluated in-process;
+ * the DeepPavlov endpoint is then only needed for the BERT variant. Its answers are judged against the model's own
+ * confidence threshold and reported as {@code local model} in source summaries; an answer below that threshold
+ * gives way to the rule-based fallback.
+ * <p>
+ * Batches run each query through the same tiers on a separate pool of {@code aegis.intent-batch-parallelism}
+ * workers, and their provider calls go to a batch fan-out pool of twice that size rather than the one interactive
+ * requests use, so a backfill cannot take fan-out threads or queue slots from live chats. The concurrent DeepPavlov
+ * calls it produces are coalesced into multi-text requests by the provider's batcher, which is shared, so a large
+ * backfill can still lengthen DeepPavlov's answers for everyone.
+ * <p>
+ * All pools use virtual threads when {@link WorkerThreads#isVirtual} holds. The fan-out pool keeps its
+ * {@value #DEFAULT_FAN_OUT_THREADS} workers either way: the provider HTTP clients' connection limits cap the calls in
+ * flight, so more workers would only wait for a connection instead of in the bounded queue.
+ * <p>
+ * Callers that stream their answer can ask for interim resolutions: the rule-based result as soon as the provider
+ * calls are submitted, then DeepPavlov's answer while the cloud call is still outstanding.
+ */
 @Service
-@Primary
 public class IntentRoutingService implements IntentService {
 
+    private static final Logger log = LoggerFactory.getLogger(IntentRoutingService.class);
+    static final String RULE_FALLBACK_SOURCE = "rule-based fallback";
+    static final String SATURATED_SOURCE = "rule-based fallback, providers saturated";
+    static final String RULE_PREVIEW_SOURCE = "rule-based preview";
+    static final String DEEP_PREVIEW_SOURCE = "DeepPavlov preview, cloud pending";
+    static final String LOCAL_PREVIEW_SOURCE = "local model preview, cloud pending";
+    private static final String DEEPPAVLOV = "DeepPavlov";
+    private static final String LOCAL_MODEL = "local model";
+
+    private static final int DEFAULT_FAN_OUT_THREADS = 32;
+
     private final DeepPavlovIntentProvider deepPavlovIntentProvider;
+    private final LocalIntentProvider localIntentProvider;
     private final CloudIntentProvider cloudIntentProvider;
     private final RuleBasedIntentService fallbackIntentService;
     private final AegisProperties properties;
+    private final ThreadPoolExecutor executor;
+    private final ThreadPoolExecutor batchExecutor;
+    private final ThreadPoolExecutor batchFanOutExecutor;
+
+    private record BatchItem(int index, IntentResolution resolution) {
+    }
 
     public IntentRoutingService(
             DeepPavlovIntentProvider deepPavlovIntentProvider,
+            LocalIntentProvider localIntentProvider,
             CloudIntentProvider cloudIntentProvider,
             RuleBasedIntentService fallbackIntentService,
             AegisProperties properties
     ) {
         this.deepPavlovIntentProvider = deepPavlovIntentProvider;
+        this.localIntentProvider = localIntentProvider;
         this.cloudIntentProvider = cloudIntentProvider;
         this.fallbackIntentService = fallbackIntentService;
         this.properties = properties;
+        int threads = properties.getIntentFanOutThreads() > 0 ? properties.getIntentFanOutThreads() : DEFAULT_FAN_OUT_THREADS;
+        int queueCapacity = properties.getIntentFanOutQueueCapacity() > 0
+                ? properties.getIntentFanOutQueueCapacity()
+                : defaultFanOutQueueCapacity(properties, threads);
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(queueCapacity),
+                WorkerThreads.factory(properties, "intent-fan-out-"));
+        this.executor.allowCoreThreadTimeOut(true);
+        int batchThreads = Math.max(1, properties.getIntentBatchParallelism());
+        this.batchExecutor = new ThreadPoolExecutor(batchThreads, batchThreads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                WorkerThreads.factory(properties, "intent-batch-"));
+        this.batchExecutor.allowCoreThreadTimeOut(true);
+        // Two provider calls per batch worker, so batch calls only queue behind ones still finishing after a timeout.
+        this.batchFanOutExecutor = new ThreadPoolExecutor(2 * batchThreads, 2 * batchThreads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(2 * batchThreads), WorkerThreads.factory(properties, "intent-batch-fan-out-"));
+        this.batchFanOutExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Two calls per chat for every request the servlet container serves concurrently: Tomcat's thread limit, or its
+     * connection limit when requests run on virtual threads.
+     */
+    static int defaultFanOutQueueCapacity(AegisProperties properties, int threads) {
+        int requests = WorkerThreads.isVirtual(properties)
+                ? properties.getServletMaxConnections()
+                : properties.getServletMaxThreads();
+        return 2 * Math.max(threads, requests);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+        batchExecutor.shutdownNow();
+        batchFanOutExecutor.shutdownNow();
     }
 
     @Override
@@ -34,10 +135,26 @@ public class IntentRoutingService implements IntentService {
 
     @Override
     public IntentResolution classifyResolution(String query, boolean cloudOnly) {
-        IntentResult cloudResult = cloudIntentProvider.classify(query);
+        return resolve(query, cloudOnly, null, executor);
+    }
+
+    /**
+     * Reports the rule-based result before any provider answers, then a DeepPavlov (or local model) answer above the
+     * confidence threshold if the cloud call is still running. Cloud-only retries report the rule-based result only
+     * when it may also be the final answer, i.e. when {@code aegis.cloud-only-retry-allow-fallback} is set.
+     */
+    @Override
+    public IntentResolution classifyResolution(String query, boolean cloudOnly, Consumer<IntentResolution> interim) {
+        return resolve(query, cloudOnly, interim, executor);
+    }
 
+    private IntentResolution resolve(String query, boolean cloudOnly, Consumer<IntentResolution> interim, ThreadPoolExecutor fanOut) {
         if (cloudOnly) {
-            if (isKnown(cloudResult)) {
+            if (interim != null && properties.isCloudOnlyRetryAllowFallback()) {
+                interim.accept(IntentResolution.single(fallbackIntentService.classify(query), RULE_PREVIEW_SOURCE));
+            }
+            IntentResult cloudResult = cloudIntentProvider.classify(query);
+            if (isKnown(cloudResult, properties.getConfidenceThreshold())) {
                 return IntentResolution.single(cloudResult, "cloud-only retry");
             }
             if (isUsable(cloudResult)) {
@@ -50,45 +167,178 @@ public class IntentRoutingService implements IntentService {
             return IntentResolution.single(new IntentResult("Unknown", 0.0), "cloud-only unavailable");
         }
 
-        IntentResult deepResult = deepPavlovIntentProvider.classify(query);
+        long started = System.nanoTime();
+        long deadline = started + TimeUnit.MILLISECONDS.toNanos(properties.getIntentDeadlineMs());
+        Future<IntentResult> cloudCall;
+        Future<IntentResult> deepCall = null;
+        try {
+            cloudCall = fanOut.submit(() -> cloudIntentProvider.classify(query));
+        } catch (RejectedExecutionException ex) {
+            return saturated(query);
+        }
+        if (!localIntentProvider.isAvailable()) {
+            try {
+                deepCall = fanOut.submit(() -> deepPavlovIntentProvider.classify(query));
+            } catch (RejectedExecutionException ex) {
+                cancel(cloudCall, fanOut);
+                return saturated(query);
+            }
+        }
+        if (interim != null) {
+            interim.accept(IntentResolution.single(fallbackIntentService.classify(query), RULE_PREVIEW_SOURCE));
+        }
+        IntentResult deepResult;
+        String deepName;
+        double deepThreshold;
+        if (deepCall == null) {
+            // Microseconds in-process, so it runs on this thread while the cloud call is in flight.
+            deepResult = localIntentProvider.classify(query);
+            deepName = LOCAL_MODEL;
+            deepThreshold = localIntentProvider.confidenceThreshold();
+        } else {
+            deepResult = await(deepCall, fanOut, DEEPPAVLOV, providerDeadline(started, deadline, deepPavlovIntentProvider.callTimeoutMillis()));
+            deepName = DEEPPAVLOV;
+            deepThreshold = properties.getConfidenceThreshold();
+        }
+        if (interim != null && isKnown(deepResult, deepThreshold) && !cloudCall.isDone()) {
+            interim.accept(IntentResolution.single(deepResult, deepCall == null ? LOCAL_PREVIEW_SOURCE : DEEP_PREVIEW_SOURCE));
+        }
+        IntentResult cloudResult = await(cloudCall, fanOut, "cloud", providerDeadline(started, deadline, cloudIntentProvider.callTimeoutMillis()));
+
+        IntentResolution resolution = combine(query, deepResult, deepName, deepThreshold, cloudResult);
+        // A configured provider without an answer missed its deadline, failed or had an open circuit, so the answer
+        // may differ once that provider is back.
+        boolean partial = cloudIntentProvider.isConfigured() && cloudResult == null
+                || deepCall != null && deepPavlovIntentProvider.isConfigured() && deepResult == null;
+        return partial ? resolution.asPartial() : resolution;
+    }
 
-        boolean deepKnown = isKnown(deepResult);
-        boolean cloudKnown = isKnown(cloudResult);
+    private IntentResolution combine(String query, IntentResult deepResult, String deepName, double deepThreshold, IntentResult cloudResult) {
+        boolean deepKnown = isKnown(deepResult, deepThreshold);
+        boolean cloudKnown = isKnown(cloudResult, properties.getConfidenceThreshold());
 
         if (cloudKnown) {
             if (deepKnown && cloudResult.intent().equalsIgnoreCase(deepResult.intent())) {
                 double confidence = Math.max(cloudResult.confidence(), deepResult.confidence());
-                return IntentResolution.single(new IntentResult(cloudResult.intent(), confidence), "cloud-primary with DeepPavlov confirmation");
+                return IntentResolution.single(new IntentResult(cloudResult.intent(), confidence), "cloud-primary with " + deepName + " confirmation");
             }
             if (deepKnown) {
-                return new IntentResolution(cloudResult, deepResult, "cloud-primary cross-verified by DeepPavlov");
+                return new IntentResolution(cloudResult, deepResult, "cloud-primary cross-verified by " + deepName);
             }
             return IntentResolution.single(cloudResult, "cloud-primary");
         }
 
         if (deepKnown) {
-            return IntentResolution.single(deepResult, "DeepPavlov fallback");
+            return IntentResolution.single(deepResult, deepName + " fallback");
         }
 
         if (isUsable(cloudResult) && !"Unknown".equalsIgnoreCase(cloudResult.intent())) {
             return IntentResolution.single(cloudResult, "cloud-primary");
         }
 
-        if (isUsable(deepResult) && !"Unknown".equalsIgnoreCase(deepResult.intent())) {
-            return IntentResolution.single(deepResult, "DeepPavlov fallback");
+        // The local model labels any query with a word in it, so below its own threshold the rules know better.
+        if (!LOCAL_MODEL.equals(deepName) && isUsable(deepResult) && !"Unknown".equalsIgnoreCase(deepResult.intent())) {
+            return IntentResolution.single(deepResult, deepName + " fallback");
         }
 
         IntentResult fallback = fallbackIntentService.classify(query);
-        return IntentResolution.single(fallback, "rule-based fallback");
+        return IntentResolution.single(fallback, RULE_FALLBACK_SOURCE);
+    }
+
+    /**
+     * Stops delivering and cancels the queries not yet classified if {@code sink} throws, e.g. because the client
+     * that is streaming the results went away.
+     */
+    @Override
+    public void classifyBatch(List<String> queries, ObjIntConsumer<IntentResolution> sink) {
+        BlockingQueue<BatchItem> completed = new LinkedBlockingQueue<>();
+        List<Future<?>> tasks = new ArrayList<>(queries.size());
+        try {
+            for (int i = 0; i < queries.size(); i++) {
+                int index = i;
+                String query = queries.get(i);
+                tasks.add(batchExecutor.submit(() -> completed.add(new BatchItem(index, classifyBatchItem(query)))));
+            }
+            for (int delivered = 0; delivered < queries.size(); delivered++) {
+                BatchItem item = completed.take();
+                sink.accept(item.resolution(), item.index());
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Batch classification was interrupted");
+        } finally {
+            for (Future<?> task : tasks) {
+                task.cancel(true);
+            }
+        }
+    }
+
+    private IntentResolution classifyBatchItem(String query) {
+        try {
+            return resolve(query, false, null, batchFanOutExecutor);
+        } catch (RuntimeException ex) {
+            log.warn("Batch classification failed, using rule fallback: {}", ex.getMessage());
+            return IntentResolution.single(fallbackIntentService.classify(query), RULE_FALLBACK_SOURCE);
+        }
+    }
+
+    private IntentResolution saturated(String query) {
+        log.debug("Intent fan-out queue is full, answering from the rule-based fallback");
+        return IntentResolution.single(fallbackIntentService.classify(query), SATURATED_SOURCE);
+    }
+
+    private void cancel(Future<?> call, ThreadPoolExecutor pool) {
+        if (call.cancel(true)) {
+            // Frees the queue slot of a call that has not started yet.
+            pool.purge();
+        }
+    }
+
+    /**
+     * The earlier of the shared deadline and the provider's adaptive call timeout; {@link Long#MAX_VALUE} when
+     * neither applies.
+     */
+    private long providerDeadline(long started, long deadline, long providerTimeoutMs) {
+        long bound = properties.getIntentDeadlineMs() > 0 ? deadline : Long.MAX_VALUE;
+        if (providerTimeoutMs > 0) {
+            bound = Math.min(bound, started + TimeUnit.MILLISECONDS.toNanos(providerTimeoutMs));
+        }
+        return bound;
+    }
+
+    /**
+     * Waits for the call until {@code deadline}, cancelling it once the deadline has passed; {@link Long#MAX_VALUE}
+     * waits indefinitely.
+     */
+    private IntentResult await(Future<IntentResult> call, ThreadPoolExecutor pool, String provider, long deadline) {
+        try {
+            if (deadline == Long.MAX_VALUE) {
+                return call.get();
+            }
+            return call.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException ex) {
+            log.debug("{} intent provider did not answer in time", provider);
+            cancel(call, pool);
+            return null;
+        } catch (ExecutionException ex) {
+            log.warn("{} intent provider failed: {}", provider, ex.getCause().getMessage());
+            return null;
+        } catch (CancellationException ex) {
+            return null;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            cancel(call, pool);
+            return null;
+        }
     }
 
     private boolean isUsable(IntentResult result) {
         return result != null && result.intent() != null && !result.intent().isBlank();
     }
 
-    private boolean isKnown(IntentResult result) {
+    private boolean isKnown(IntentResult result, double threshold) {
         return isUsable(result)
-                && result.confidence() >= properties.getConfidenceThreshold()
+                && result.confidence() >= threshold
                 && !"Unknown".equalsIgnoreCase(result.intent());
     }
 }
@@ -3,6 +3,10 @@ package com.aegis.agent.service;
 import com.aegis.agent.domain.IntentResolution;
 import com.aegis.agent.domain.IntentResult;
 
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.ObjIntConsumer;
+
 public interface IntentService {
     IntentResult classify(String query);
 
@@ -13,4 +17,24 @@ public interface IntentService {
     default IntentResolution classifyResolution(String query, boolean cloudOnly) {
         return IntentResolution.single(classify(query), cloudOnly ? "cloud-only" : "single intent provider");
     }
+
+    /**
+     * Same as {@link #classifyResolution(String, boolean)}, but provisional resolutions from the faster tiers are
+     * handed to {@code interim} on the calling thread while slower providers are still working. The returned
+     * resolution is the final one and is not passed to {@code interim}; implementations without tiers report none.
+     */
+    default IntentResolution classifyResolution(String query, boolean cloudOnly, Consumer<IntentResolution> interim) {
+        return classifyResolution(query, cloudOnly);
+    }
+
+    /**
+     * First-pass classification of many queries. Each resolution is handed to {@code sink} with the index of its
+     * query as soon as it is ready, on the calling thread, so results may arrive out of order; the method returns
+     * once every query has been delivered.
+     */
+    default void classifyBatch(List<String> queries, ObjIntConsumer<IntentResolution> sink) {
+        for (int i = 0; i < queries.size(); i++) {
+            sink.accept(classifyResolution(queries.get(i)), i);
+        }
+    }
 }
@@ -0,0 +1,208 @@
+package com.aegis.agent.service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Aho-Corasick automaton over case-insensitive keywords.
+ * <p>
+ * Keywords are compiled once into a dense transition table, so scanning costs one table lookup per input
+ * character regardless of how many keywords there are. Instances are immutable and safe to share between threads;
+ * the scan state is a plain {@code int} owned by the caller, which also lets a scan continue across buffer chunks.
+ */
+final class KeywordAutomaton {
+
+    static final int START = 0;
+
+    private static final int ASCII_LIMIT = 128;
+    private static final int OTHER = 0;
+
+    private final int[] asciiClasses;
+    private final Map<Character, Integer> extendedClasses;
+    private final int alphabetSize;
+    private final int[] transitions;
+    private final int[] outputOffsets;
+    private final int[] outputs;
+    private final int[] keywordLengths;
+
+    private KeywordAutomaton(
+            int[] asciiClasses,
+            Map<Character, Integer> extendedClasses,
+            int alphabetSize,
+            int[] transitions,
+            int[] outputOffsets,
+            int[] outputs,
+            int[] keywordLengths
+    ) {
+        this.asciiClasses = asciiClasses;
+        this.extendedClasses = extendedClasses;
+        this.alphabetSize = alphabetSize;
+        this.transitions = transitions;
+        this.outputOffsets = outputOffsets;
+        this.outputs = outputs;
+        this.keywordLengths = keywordLengths;
+    }
+
+    /**
+     * Compiles the keywords; the position of each keyword in the list is the id reported on a match.
+     */
+    static KeywordAutomaton compile(List<String> keywords) {
+        int[] asciiClasses = new int[ASCII_LIMIT];
+        Map<Character, Integer> extendedClasses = new HashMap<>();
+        int alphabetSize = 1;
+        for (String keyword : keywords) {
+            if (keyword == null || keyword.isEmpty()) {
+                throw new IllegalArgumentException("Keywords must not be empty");
+            }
+            for (int i = 0; i < keyword.length(); i++) {
+                char c = Character.toLowerCase(keyword.charAt(i));
+                if (classOf(c, asciiClasses, extendedClasses) == OTHER) {
+                    int assigned = alphabetSize++;
+                    if (c < ASCII_LIMIT) {
+                        asciiClasses[c] = assigned;
+                        asciiClasses[Character.toUpperCase(c)] = assigned;
+                    } else {
+                        extendedClasses.put(c, assigned);
+                    }
+                }
+            }
+        }
+
+        List<int[]> gotoTable = new ArrayList<>();
+        List<List<Integer>> stateOutputs = new ArrayList<>();
+        gotoTable.add(newRow(alphabetSize));
+        stateOutputs.add(new ArrayList<>());
+        int[] keywordLengths = new int[keywords.size()];
+
+        for (int id = 0; id < keywords.size(); id++) {
+            String keyword = keywords.get(id);
+            keywordLengths[id] = keyword.length();
+            int state = START;
+            for (int i = 0; i < keyword.length(); i++) {
+                int cls = classOf(Character.toLowerCase(keyword.charAt(i)), asciiClasses, extendedClasses);
+                int next = gotoTable.get(state)[cls];
+                if (next < 0) {
+                    next = gotoTable.size();
+                    gotoTable.add(newRow(alphabetSize));
+                    stateOutputs.add(new ArrayList<>());
+                    gotoTable.get(state)[cls] = next;
+                }
+                state = next;
+            }
+            stateOutputs.get(state).add(id);
+        }
+
+        int stateCount = gotoTable.size();
+        int[] transitions = new int[stateCount * alphabetSize];
+        int[] failure = new int[stateCount];
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+
+        for (int cls = 0; cls < alphabetSize; cls++) {
+            int next = gotoTable.get(START)[cls];
+            if (next > 0) {
+                failure[next] = START;
+                transitions[cls] = next;
+                queue.add(next);
+            } else {
+                transitions[cls] = START;
+            }
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            stateOutputs.get(state).addAll(stateOutputs.get(failure[state]));
+            for (int cls = 0; cls < alphabetSize; cls++) {
+                int next = gotoTable.get(state)[cls];
+                if (next > 0) {
+                    failure[next] = transitions[failure[state] * alphabetSize + cls];
+                    transitions[state * alphabetSize + cls] = next;
+                    queue.add(next);
+                } else {
+                    transitions[state * alphabetSize + cls] = transitions[failure[state] * alphabetSize + cls];
+                }
+            }
+        }
+
+        int[] outputOffsets = new int[stateCount + 1];
+        int total = 0;
+        for (int state = 0; state < stateCount; state++) {
+            outputOffsets[state] = total;
+            total += stateOutputs.get(state).size();
+        }
+        outputOffsets[stateCount] = total;
+        int[] outputs = new int[total];
+        for (int state = 0; state < stateCount; state++) {
+            List<Integer> ids = stateOutputs.get(state);
+            for (int i = 0; i < ids.size(); i++) {
+                outputs[outputOffsets[state] + i] = ids.get(i);
+            }
+        }
+
+        return new KeywordAutomaton(
+                asciiClasses,
+                Map.copyOf(extendedClasses),
+                alphabetSize,
+                transitions,
+                outputOffsets,
+                outputs,
+                keywordLengths
+        );
+    }
+
+    int next(int state, char c) {
+        int cls;
+        if (c < ASCII_LIMIT) {
+            cls = asciiClasses[c];
+        } else if (extendedClasses.isEmpty()) {
+            cls = OTHER;
+        } else {
+            cls = extendedClasses.getOrDefault(Character.toLowerCase(c), OTHER);
+        }
+        return transitions[state * alphabetSize + cls];
+    }
+
+    /**
+     * Index of the first keyword id ending at {@code state}; iterate up to {@link #outputEnd(int)} with {@link #output(int)}.
+     */
+    int outputStart(int state) {
+        return outputOffsets[state];
+    }
+
+    int outputEnd(int state) {
+        return outputOffsets[state + 1];
+    }
+
+    int output(int index) {
+        return outputs[index];
+    }
+
+    int keywordCount() {
+        return keywordLengths.length;
+    }
+
+    int keywordLength(int id) {
+        return keywordLengths[id];
+    }
+
+    int stateCount() {
+        return outputOffsets.length - 1;
+    }
+
+    long approximateSizeBytes() {
+        long ints = (long) asciiClasses.length + transitions.length + outputOffsets.length + outputs.length + keywordLengths.length;
+        return ints * Integer.BYTES + extendedClasses.size() * 32L;
+    }
+
+    private static int classOf(char c, int[] asciiClasses, Map<Character, Integer> extendedClasses) {
+        return c < ASCII_LIMIT ? asciiClasses[c] : extendedClasses.getOrDefault(c, OTHER);
+    }
+
+    private static int[] newRow(int alphabetSize) {
+        int[] row = new int[alphabetSize];
+        Arrays.fill(row, -1);
+        return row;
+    }
+}
@@ -0,0 +1,82 @@
+package com.aegis.agent.service;
+
+import com.aegis.agent.config.AegisProperties;
+import com.aegis.agent.domain.IntentResult;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Classifies in-process with the {@link HashedNgramIntentModel} exported by {@code train_model.py}, so the
+ * classifier served by {@code inference_api.py} no longer needs an HTTP round trip. Disabled unless
+ * {@code aegis.local-intent-model} points at an exported weights file; the model is loaded once at startup and a
+ * file that cannot be loaded fails startup.
+ * <p>
+ * The model's softmax probabilities are not comparable with the cloud model's, so it has its own
+ * {@link #confidenceThreshold()}: {@code aegis.local-intent-confidence-threshold} when set, otherwise the one the
+ * exporter derived from held-out precision.
+ */
+@Component
+public class LocalIntentProvider {
+
+    private static final Logger log = LoggerFactory.getLogger(LocalIntentProvider.class);
+
+    private final HashedNgramIntentModel model;
+    private final double confidenceThreshold;
+    private final Timer classifyTimer;
+
+    public LocalIntentProvider(AegisProperties properties, ResourceLoader resourceLoader, MeterRegistry meterRegistry) {
+        String location = properties.getLocalIntentModel();
+        if (location == null || location.isBlank()) {
+            this.model = null;
+        } else {
+            try (InputStream input = resourceLoader.getResource(location).getInputStream()) {
+                this.model = HashedNgramIntentModel.load(input);
+            } catch (IOException | RuntimeException ex) {
+                throw new IllegalStateException("Local intent model could not be loaded from " + location, ex);
+            }
+            log.info("Loaded local intent model from {} ({} weighted features, confidence threshold {})",
+                    location, model.weightedFeatures(), model.confidenceThreshold());
+        }
+        if (properties.getLocalIntentConfidenceThreshold() > 0) {
+            this.confidenceThreshold = properties.getLocalIntentConfidenceThreshold();
+        } else if (model != null && model.confidenceThreshold() != null) {
+            this.confidenceThreshold = model.confidenceThreshold();
+        } else {
+            this.confidenceThreshold = properties.getConfidenceThreshold();
+        }
+        this.classifyTimer = Timer.builder("aegis.intent.local.classify")
+                .description("In-process intent classification latency")
+                .register(meterRegistry);
+    }
+
+    public boolean isAvailable() {
+        return model != null;
+    }
+
+    /**
+     * Confidence at or above which an answer from this model is trusted like a confident DeepPavlov answer.
+     */
+    public double confidenceThreshold() {
+        return confidenceThreshold;
+    }
+
+    public IntentResult classify(String query) {
+        if (model == null) {
+            return null;
+        }
+        long started = System.nanoTime();
+        try {
+            return model.classify(query);
+        } finally {
+            classifyTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        }
+    }
+}
@@ -1,77 +1,275 @@
 package com.aegis.agent.service;
 
+import com.aegis.agent.config.AegisProperties;
 import com.aegis.agent.domain.AnalysisResult;
+import jakarta.annotation.PreDestroy;
 import org.springframework.stereotype.Service;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Locale;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveTask;
 
 @Service
 public class LogAnalysisService {
 
+    static final int CHUNK_SIZE = 8192;
+    static final long SEGMENT_BYTES = 1L << 20;
+
+    private final LogSignatureCatalog signatureCatalog;
+    private final long parallelThresholdBytes;
+    private final int parallelism;
+    private final ForkJoinPool pool;
+
+    public LogAnalysisService(LogSignatureCatalog signatureCatalog, AegisProperties properties) {
+        this.signatureCatalog = signatureCatalog;
+        this.parallelThresholdBytes = properties.getLogAnalysisParallelThresholdBytes();
+        this.parallelism = properties.getLogAnalysisParallelism() > 0
+                ? properties.getLogAnalysisParallelism()
+                : Math.min(4, Runtime.getRuntime().availableProcessors());
+        this.pool = new ForkJoinPool(parallelism, pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("log-analysis-" + thread.getPoolIndex());
+            thread.setDaemon(true);
+            return thread;
+        }, null, false);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
     public AnalysisResult analyze(String rawLog) {
-        String input = rawLog == null ? "" : rawLog;
-        String normalized = input.toLowerCase(Locale.ROOT);
-        List<String> matches = new ArrayList<>();
-
-        if (normalized.contains("error 503") || normalized.contains("http 503")) {
-            matches.add("Error503");
-            return new AnalysisResult(
-                    "Service unavailable or upstream outage",
-                    "Check server health, retry after 2 minutes, verify network proxy rules.",
-                    "HIGH",
-                    0.93,
-                    matches
-            );
+        LogScan scan = signatureCatalog.current().newScan();
+        scan.feed(rawLog == null ? "" : rawLog);
+        return scan.finish();
+    }
+
+    /**
+     * Scans the stream in fixed-size chunks so heap usage stays constant regardless of the log size.
+     * The caller owns the stream and is responsible for closing it.
+     */
+    public AnalysisResult analyze(InputStream rawLog) throws IOException {
+        if (rawLog == null) {
+            return analyze((String) null);
+        }
+        LogScan scan = signatureCatalog.current().newScan();
+        scanInto(scan, rawLog);
+        return scan.finish();
+    }
+
+    /**
+     * Analyzes an in-memory log, splitting it across the analysis pool once it reaches the parallel threshold.
+     */
+    public AnalysisResult analyze(byte[] rawLog) throws IOException {
+        if (rawLog == null) {
+            return analyze((String) null);
+        }
+        return analyze(new ArraySource(rawLog));
+    }
+
+    /**
+     * Analyzes a log file, splitting it across the analysis pool once it reaches the parallel threshold.
+     */
+    public AnalysisResult analyze(Path rawLog) throws IOException {
+        try (FileChannel channel = FileChannel.open(rawLog, StandardOpenOption.READ)) {
+            return analyze(new FileSource(channel));
+        }
+    }
+
+    /**
+     * A single-worker pool only adds splitting and merging on top of the sequential scan, so it never goes parallel.
+     */
+    public boolean isParallelCandidate(long sizeBytes) {
+        return parallelism > 1 && parallelThresholdBytes > 0 && sizeBytes >= parallelThresholdBytes;
+    }
+
+    private AnalysisResult analyze(ByteSource source) throws IOException {
+        LogSignatureIndex index = signatureCatalog.current();
+        if (!isParallelCandidate(source.size())) {
+            LogScan scan = index.newScan();
+            try (InputStream input = source.open(0, source.size())) {
+                scanInto(scan, input);
+            }
+            return scan.finish();
+        }
+        try {
+            return pool.invoke(new SegmentTask(index, source, 0, source.size())).finish();
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+    }
+
+    private static void scanInto(LogScan scan, InputStream input) throws IOException {
+        Reader reader = new InputStreamReader(input, StandardCharsets.UTF_8);
+        char[] chunk = new char[CHUNK_SIZE];
+        int read;
+        while ((read = reader.read(chunk)) != -1) {
+            scan.feed(chunk, 0, read);
+        }
+    }
+
+    /**
+     * Splits a byte range in half at the next line break until segments are small enough to scan directly.
+     * Segments always start at a line start, so no keyword or regex line spans two segments and the merged
+     * result is identical to a sequential scan.
+     */
+    private static final class SegmentTask extends RecursiveTask<LogScan> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final LogSignatureIndex index;
+        private final ByteSource source;
+        private final long from;
+        private final long to;
+
+        SegmentTask(LogSignatureIndex index, ByteSource source, long from, long to) {
+            this.index = index;
+            this.source = source;
+            this.from = from;
+            this.to = to;
         }
-        if (normalized.contains("cert_invalid") || normalized.contains("certificate verify failed")) {
-            matches.add("Cert_Invalid");
-            return new AnalysisResult(
-                    "Device certificate invalid or expired",
-                    "Re-register device certificate and confirm trust chain is current.",
-                    "HIGH",
-                    0.91,
-                    matches
-            );
+
+        @Override
+        protected LogScan compute() {
+            try {
+                long split = to - from > SEGMENT_BYTES ? source.nextLineStart(from + (to - from) / 2, to) : -1;
+                if (split <= from || split >= to) {
+                    LogScan scan = index.newScan();
+                    try (InputStream input = source.open(from, to)) {
+                        scanInto(scan, input);
+                    }
+                    return scan;
+                }
+                SegmentTask left = new SegmentTask(index, source, from, split);
+                left.fork();
+                LogScan right = new SegmentTask(index, source, split, to).compute();
+                LogScan merged = left.join();
+                merged.merge(right);
+                return merged;
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
         }
-        if (normalized.contains("time_skew") || normalized.contains("clock") || normalized.contains("time drift")) {
-            matches.add("Time_Skew");
-            return new AnalysisResult(
-                    "Device time out of sync",
-                    "Enable automatic date/time, sync timezone, then regenerate OTP.",
-                    "MEDIUM",
-                    0.9,
-                    matches
-            );
+    }
+
+    private interface ByteSource {
+
+        long size() throws IOException;
+
+        InputStream open(long from, long to) throws IOException;
+
+        /**
+         * Position just after the first line break at or after {@code from}, or -1 if there is none before {@code limit}.
+         */
+        long nextLineStart(long from, long limit) throws IOException;
+    }
+
+    private record ArraySource(byte[] bytes) implements ByteSource {
+
+        @Override
+        public long size() {
+            return bytes.length;
         }
-        if (normalized.contains("fido2") || normalized.contains("webauthn")) {
-            matches.add("FIDO2_WebAuthn_Failure");
-            return new AnalysisResult(
-                    "Passkey registration or assertion failed",
-                    "Re-enroll passkey, verify platform authenticator support, and retry login.",
-                    "MEDIUM",
-                    0.82,
-                    matches
-            );
+
+        @Override
+        public InputStream open(long from, long to) {
+            return new ByteArrayInputStream(bytes, (int) from, (int) (to - from));
+        }
+
+        @Override
+        public long nextLineStart(long from, long limit) {
+            for (int i = (int) from; i < limit; i++) {
+                if (bytes[i] == '\n') {
+                    return i + 1L;
+                }
+            }
+            return -1;
+        }
+    }
+
+    /**
+     * Reads a file through positional reads, which are safe to issue concurrently from several segment tasks.
+     */
+    private record FileSource(FileChannel channel) implements ByteSource {
+
+        @Override
+        public long size() throws IOException {
+            return channel.size();
         }
-        if (normalized.contains("push") && normalized.contains("timeout")) {
-            matches.add("PushApprovalTimeout");
-            return new AnalysisResult(
-                    "Push approval timed out",
-                    "Check push notification permissions and network reachability, then resend challenge.",
-                    "MEDIUM",
-                    0.84,
-                    matches
-            );
+
+        @Override
+        public InputStream open(long from, long to) {
+            return new InputStream() {
+                private final ByteBuffer buffer = ByteBuffer.allocate(CHUNK_SIZE).flip();
+                private long position = from;
+
+                @Override
+                public int read() throws IOException {
+                    return fill() ? buffer.get() & 0xff : -1;
+                }
+
+                @Override
+                public int read(byte[] target, int offset, int length) throws IOException {
+                    if (length == 0) {
+                        return 0;
+                    }
+                    if (!fill()) {
+                        return -1;
+                    }
+                    int count = Math.min(length, buffer.remaining());
+                    buffer.get(target, offset, count);
+                    return count;
+                }
+
+                private boolean fill() throws IOException {
+                    if (buffer.hasRemaining()) {
+                        return true;
+                    }
+                    if (position >= to) {
+                        return false;
+                    }
+                    buffer.clear().limit((int) Math.min(CHUNK_SIZE, to - position));
+                    int read = channel.read(buffer, position);
+                    buffer.flip();
+                    if (read <= 0) {
+                        return false;
+                    }
+                    position += read;
+                    return true;
+                }
+            };
         }
 
-        return new AnalysisResult(
-                "Unknown root cause",
-                "Collect additional logs, include timestamp and app version, then escalate.",
-                "MEDIUM",
-                0.4,
-                matches
-        );
+        @Override
+        public long nextLineStart(long from, long limit) throws IOException {
+            ByteBuffer buffer = ByteBuffer.allocate(CHUNK_SIZE);
+            long position = from;
+            while (position < limit) {
+                buffer.clear().limit((int) Math.min(CHUNK_SIZE, limit - position));
+                int read = channel.read(buffer, position);
+                if (read <= 0) {
+                    return -1;
+                }
+                for (int i = 0; i < read; i++) {
+                    if (buffer.get(i) == '\n') {
+                        return position + i + 1;
+                    }
+                }
+                position += read;
+            }
+            return -1;
+        }
     }
 }
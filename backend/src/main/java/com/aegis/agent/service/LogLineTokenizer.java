@@ -0,0 +1,218 @@
+package com.aegis.agent.service;
+
+/**
+ * Splits the head of a log line into timestamp, level, component and message spans without allocating.
+ * <p>
+ * Recognizes the shapes our clients emit: ISO-8601 and {@code yyyy-MM-dd HH:mm:ss,SSS} timestamps, logcat
+ * {@code MM-dd HH:mm:ss.SSS}, bare {@code HH:mm:ss}, each optionally wrapped in brackets; word levels
+ * ({@code INFO}, {@code WARN}, ...) or single-letter logcat levels; and a component token that follows the level.
+ * Spans index into the buffer passed to {@link #tokenize(char[], int)} and stay valid until the next call.
+ * Not thread-safe: one instance per scan.
+ */
+final class LogLineTokenizer {
+
+    private static final String[] LEVELS = {"TRACE", "DEBUG", "INFO", "NOTICE", "WARN", "WARNING", "ERROR", "SEVERE", "FATAL", "CRITICAL"};
+    private static final String SINGLE_LETTER_LEVELS = "VDIWEF";
+
+    private int timestampStart;
+    private int timestampEnd;
+    private int levelStart;
+    private int levelEnd;
+    private int componentStart;
+    private int componentEnd;
+    private int messageStart;
+
+    void tokenize(char[] line, int length) {
+        timestampStart = timestampEnd = levelStart = levelEnd = componentStart = componentEnd = 0;
+        int position = skipSpaces(line, 0, length);
+
+        int tokenEnd = timestampEnd(line, position, length);
+        if (tokenEnd > position) {
+            boolean bracketed = line[position] == '[';
+            timestampStart = bracketed ? position + 1 : position;
+            timestampEnd = bracketed ? tokenEnd - 1 : tokenEnd;
+            position = skipSpaces(line, tokenEnd, length);
+        }
+
+        tokenEnd = tokenEnd(line, position, length);
+        for (int skipped = 0; skipped < 2 && isNumber(line, position, tokenEnd); skipped++) {
+            // logcat threadtime puts the pid and tid between the timestamp and the level
+            position = skipSpaces(line, tokenEnd, length);
+            tokenEnd = tokenEnd(line, position, length);
+        }
+        int start = unbracketStart(line, position, tokenEnd);
+        int end = unbracketEnd(line, start, tokenEnd);
+        if (isLevel(line, start, end)) {
+            levelStart = start;
+            levelEnd = end;
+            position = skipSpaces(line, tokenEnd, length);
+
+            tokenEnd = tokenEnd(line, position, length);
+            start = unbracketStart(line, position, tokenEnd);
+            end = unbracketEnd(line, start, tokenEnd);
+            if (end > start) {
+                componentStart = start;
+                componentEnd = end;
+                position = skipSpaces(line, tokenEnd, length);
+            }
+        }
+        messageStart = position;
+    }
+
+    boolean hasTimestamp() {
+        return timestampEnd > timestampStart;
+    }
+
+    int timestampStart() {
+        return timestampStart;
+    }
+
+    int timestampEnd() {
+        return timestampEnd;
+    }
+
+    boolean hasLevel() {
+        return levelEnd > levelStart;
+    }
+
+    int levelStart() {
+        return levelStart;
+    }
+
+    int levelEnd() {
+        return levelEnd;
+    }
+
+    boolean hasComponent() {
+        return componentEnd > componentStart;
+    }
+
+    int componentStart() {
+        return componentStart;
+    }
+
+    int componentEnd() {
+        return componentEnd;
+    }
+
+    int messageStart() {
+        return messageStart;
+    }
+
+    /**
+     * End of a leading timestamp token, or {@code from} when the line does not start with one. A date and a time
+     * separated by a single space are treated as one token.
+     */
+    private static int timestampEnd(char[] line, int from, int length) {
+        int position = from;
+        boolean bracketed = position < length && line[position] == '[';
+        if (bracketed) {
+            position++;
+        }
+        if (position >= length || !Character.isDigit(line[position])) {
+            return from;
+        }
+        int separators = 0;
+        while (position < length) {
+            char c = line[position];
+            if (Character.isDigit(c) || c == 'T' || c == 'Z' || c == '.' || c == ',' || c == '+' || c == '/') {
+                position++;
+            } else if (c == ':' || c == '-') {
+                separators++;
+                position++;
+            } else if (c == ' ' && position + 1 < length && Character.isDigit(line[position + 1]) && containsDash(line, from, position)
+                    && !containsColon(line, from, position)) {
+                position++;
+            } else {
+                break;
+            }
+        }
+        if (separators < 2) {
+            return from;
+        }
+        if (bracketed) {
+            return position < length && line[position] == ']' ? position + 1 : from;
+        }
+        return position;
+    }
+
+    private static boolean isLevel(char[] line, int start, int end) {
+        int length = end - start;
+        if (length == 1) {
+            return SINGLE_LETTER_LEVELS.indexOf(line[start]) >= 0;
+        }
+        for (String level : LEVELS) {
+            if (level.length() == length && regionMatchesIgnoreCase(line, start, level)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean regionMatchesIgnoreCase(char[] line, int start, String expected) {
+        for (int i = 0; i < expected.length(); i++) {
+            if (Character.toUpperCase(line[start + i]) != expected.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isNumber(char[] line, int start, int end) {
+        if (end <= start) {
+            return false;
+        }
+        for (int i = start; i < end; i++) {
+            if (!Character.isDigit(line[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int tokenEnd(char[] line, int from, int length) {
+        int position = from;
+        while (position < length && !Character.isWhitespace(line[position])) {
+            position++;
+        }
+        return position;
+    }
+
+    private static int unbracketStart(char[] line, int start, int end) {
+        return end > start && line[start] == '[' ? start + 1 : start;
+    }
+
+    private static int unbracketEnd(char[] line, int start, int end) {
+        int position = end;
+        while (position > start && (line[position - 1] == ']' || line[position - 1] == ':')) {
+            position--;
+        }
+        return position;
+    }
+
+    private static int skipSpaces(char[] line, int from, int length) {
+        int position = from;
+        while (position < length && (line[position] == ' ' || line[position] == '\t')) {
+            position++;
+        }
+        return position;
+    }
+
+    private static boolean containsDash(char[] line, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (line[i] == '-') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean containsColon(char[] line, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (line[i] == ':') {
+                return true;
+            }
+        }
+        return false;
+    }
+}
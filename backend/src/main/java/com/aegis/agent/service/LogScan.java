@@ -0,0 +1,257 @@
+package com.aegis.agent.service;
+
+import com.aegis.agent.domain.AnalysisResult;
+import com.aegis.agent.domain.SignalOccurrence;
+
+import java.util.regex.Matcher;
+
+/**
+ * Mutable state of one log scan against a {@link LogSignatureIndex}. Input can be fed in any number of chunks;
+ * keyword matches carry across chunk boundaries through the automaton state, and regexes run once per line.
+ * <p>
+ * Alongside the hit counts, the scan keeps where each signature occurs: a line is an occurrence when it matches the
+ * whole signature on its own, i.e. hits every keyword group or one of the regexes. The head of the current line is
+ * retained in a fixed buffer and tokenized only when a signature matched the line, so per-line work allocates nothing.
+ * Not thread-safe: each scan belongs to a single request or segment.
+ */
+final class LogScan {
+
+    static final int MAX_REGEX_LINE_LENGTH = 4096;
+    static final int HEADER_CAPACITY = 160;
+
+    private final LogSignatureIndex index;
+    private final KeywordAutomaton automaton;
+    private final long[] keywordHits;
+    private final boolean[] regexHits;
+    private final Matcher[] matchers;
+    private final StringBuilder line;
+    private final SignalStats[] stats;
+    private final LogLineTokenizer tokenizer = new LogLineTokenizer();
+    private final char[] header = new char[HEADER_CAPACITY];
+    private final int[] pendingSignatures;
+    private final long[] pendingOffsets;
+    private final long[] lineGroups;
+    private final long[] markedLines;
+    private int state = KeywordAutomaton.START;
+    private int headerLength;
+    private int pendingCount;
+    private long offset;
+    private long lineNumber = 1;
+    private long lineStartOffset;
+
+    LogScan(LogSignatureIndex index) {
+        this.index = index;
+        this.automaton = index.automaton();
+        this.keywordHits = new long[automaton.keywordCount()];
+        this.regexHits = new boolean[index.regexCount()];
+        this.matchers = new Matcher[index.regexCount()];
+        for (int r = 0; r < matchers.length; r++) {
+            matchers[r] = index.regex(r).matcher("");
+        }
+        this.line = matchers.length == 0 ? null : new StringBuilder(256);
+        int signatureCount = index.signatureCount();
+        this.stats = new SignalStats[signatureCount];
+        for (int s = 0; s < signatureCount; s++) {
+            stats[s] = new SignalStats();
+        }
+        this.pendingSignatures = new int[signatureCount];
+        this.pendingOffsets = new long[signatureCount];
+        this.lineGroups = new long[signatureCount];
+        this.markedLines = new long[signatureCount];
+    }
+
+    void feed(char[] buffer, int offset, int length) {
+        for (int i = offset, end = offset + length; i < end; i++) {
+            accept(buffer[i]);
+        }
+    }
+
+    void feed(CharSequence text) {
+        for (int i = 0, end = text.length(); i < end; i++) {
+            accept(text.charAt(i));
+        }
+    }
+
+    /**
+     * Folds in a scan over the next line-aligned segment of the same log, shifting its line numbers and offsets
+     * so they read as positions in the whole log.
+     */
+    void merge(LogScan other) {
+        flushLine();
+        other.flushLine();
+        long lineShift = lineNumber - 1;
+        for (int k = 0; k < keywordHits.length; k++) {
+            keywordHits[k] += other.keywordHits[k];
+        }
+        for (int r = 0; r < regexHits.length; r++) {
+            regexHits[r] |= other.regexHits[r];
+        }
+        for (int s = 0; s < stats.length; s++) {
+            stats[s].merge(other.stats[s], lineShift, offset);
+        }
+        lineStartOffset = offset + other.lineStartOffset;
+        offset += other.offset;
+        lineNumber += other.lineNumber - 1;
+    }
+
+    AnalysisResult finish() {
+        flushLine();
+        SignalOccurrence[] occurrences = new SignalOccurrence[stats.length];
+        for (int s = 0; s < stats.length; s++) {
+            occurrences[s] = stats[s].toOccurrence(index.signal(s));
+        }
+        return index.rank(keywordHits, regexHits, occurrences);
+    }
+
+    private void accept(char c) {
+        long position = offset++;
+        state = automaton.next(state, c);
+        for (int i = automaton.outputStart(state), end = automaton.outputEnd(state); i < end; i++) {
+            int keyword = automaton.output(i);
+            keywordHits[keyword]++;
+            mark(index.keywordSignature(keyword), 1L << index.keywordGroup(keyword), position - automaton.keywordLength(keyword) + 1);
+        }
+        if (c == '\n') {
+            endLine();
+            lineNumber++;
+            lineStartOffset = offset;
+            return;
+        }
+        if (headerLength < HEADER_CAPACITY) {
+            header[headerLength++] = c;
+        }
+        if (line != null && line.length() < MAX_REGEX_LINE_LENGTH) {
+            line.append(c);
+        }
+    }
+
+    private void mark(int signature, long groups, long matchOffset) {
+        if (markedLines[signature] != lineNumber) {
+            markedLines[signature] = lineNumber;
+            pendingSignatures[pendingCount++] = signature;
+            pendingOffsets[signature] = matchOffset;
+            lineGroups[signature] = 0;
+        }
+        lineGroups[signature] |= groups;
+    }
+
+    private void flushLine() {
+        if (headerLength > 0 || pendingCount > 0) {
+            endLine();
+        }
+    }
+
+    private void endLine() {
+        if (line != null) {
+            for (int r = 0; r < matchers.length; r++) {
+                Matcher matcher = matchers[r].reset(line);
+                if (matcher.find()) {
+                    regexHits[r] = true;
+                    int signature = index.regexSignature(r);
+                    mark(signature, index.lineMask(signature), lineStartOffset + matcher.start());
+                }
+            }
+            line.setLength(0);
+        }
+        if (pendingCount > 0) {
+            tokenizer.tokenize(header, headerLength);
+            for (int p = 0; p < pendingCount; p++) {
+                int signature = pendingSignatures[p];
+                if (lineGroups[signature] != index.lineMask(signature)) {
+                    continue;
+                }
+                stats[signature].record(lineNumber, pendingOffsets[signature], header, tokenizer);
+            }
+            pendingCount = 0;
+        }
+        headerLength = 0;
+    }
+
+    /**
+     * Per-signature occurrence summary. Text fields are copied into fixed buffers so updating them on every
+     * matching line does not allocate; strings are only built once in {@link #toOccurrence(String)}.
+     */
+    private static final class SignalStats {
+
+        private static final int TIMESTAMP_CAPACITY = 40;
+        private static final int LEVEL_CAPACITY = 16;
+        private static final int COMPONENT_CAPACITY = 64;
+
+        private final char[] firstTimestamp = new char[TIMESTAMP_CAPACITY];
+        private final char[] lastTimestamp = new char[TIMESTAMP_CAPACITY];
+        private final char[] firstLevel = new char[LEVEL_CAPACITY];
+        private final char[] firstComponent = new char[COMPONENT_CAPACITY];
+        private long count;
+        private long firstLine;
+        private long lastLine;
+        private long firstOffset;
+        private int firstTimestampLength;
+        private int lastTimestampLength;
+        private int firstLevelLength;
+        private int firstComponentLength;
+
+        void record(long lineNumber, long matchOffset, char[] header, LogLineTokenizer tokens) {
+            lastTimestampLength = tokens.hasTimestamp()
+                    ? copy(header, tokens.timestampStart(), tokens.timestampEnd(), lastTimestamp)
+                    : 0;
+            lastLine = lineNumber;
+            if (count++ == 0) {
+                firstLine = lineNumber;
+                firstOffset = matchOffset;
+                System.arraycopy(lastTimestamp, 0, firstTimestamp, 0, lastTimestampLength);
+                firstTimestampLength = lastTimestampLength;
+                firstLevelLength = tokens.hasLevel() ? copy(header, tokens.levelStart(), tokens.levelEnd(), firstLevel) : 0;
+                firstComponentLength = tokens.hasComponent()
+                        ? copy(header, tokens.componentStart(), tokens.componentEnd(), firstComponent)
+                        : 0;
+            }
+        }
+
+        void merge(SignalStats later, long lineShift, long offsetShift) {
+            if (later.count == 0) {
+                return;
+            }
+            if (count == 0) {
+                firstLine = later.firstLine + lineShift;
+                firstOffset = later.firstOffset + offsetShift;
+                System.arraycopy(later.firstTimestamp, 0, firstTimestamp, 0, later.firstTimestampLength);
+                firstTimestampLength = later.firstTimestampLength;
+                System.arraycopy(later.firstLevel, 0, firstLevel, 0, later.firstLevelLength);
+                firstLevelLength = later.firstLevelLength;
+                System.arraycopy(later.firstComponent, 0, firstComponent, 0, later.firstComponentLength);
+                firstComponentLength = later.firstComponentLength;
+            }
+            count += later.count;
+            lastLine = later.lastLine + lineShift;
+            System.arraycopy(later.lastTimestamp, 0, lastTimestamp, 0, later.lastTimestampLength);
+            lastTimestampLength = later.lastTimestampLength;
+        }
+
+        SignalOccurrence toOccurrence(String signal) {
+            if (count == 0) {
+                return null;
+            }
+            return new SignalOccurrence(
+                    signal,
+                    count,
+                    firstLine,
+                    lastLine,
+                    firstOffset,
+                    text(firstTimestamp, firstTimestampLength),
+                    text(lastTimestamp, lastTimestampLength),
+                    text(firstLevel, firstLevelLength),
+                    text(firstComponent, firstComponentLength)
+            );
+        }
+
+        private static int copy(char[] source, int start, int end, char[] target) {
+            int length = Math.min(end - start, target.length);
+            System.arraycopy(source, start, target, 0, length);
+            return length;
+        }
+
+        private static String text(char[] value, int length) {
+            return length == 0 ? null : new String(value, 0, length);
+        }
+    }
+}
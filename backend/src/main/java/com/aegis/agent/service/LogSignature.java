@@ -0,0 +1,25 @@
+package com.aegis.agent.service;
+
+import java.util.List;
+
+/**
+ * A known failure signature as declared in the signature catalog. A signature matches when every keyword group is
+ * present in the log (a group is present when any of its keywords is found, case-insensitive), or when any of its
+ * regexes matches a single log line.
+ */
+record LogSignature(
+        String signal,
+        String intent,
+        String rootCause,
+        String fixAction,
+        String severity,
+        double confidence,
+        List<List<String>> keywords,
+        List<String> regexes
+) {
+
+    LogSignature {
+        keywords = keywords == null ? List.of() : keywords.stream().map(List::copyOf).toList();
+        regexes = regexes == null ? List.of() : List.copyOf(regexes);
+    }
+}
@@ -0,0 +1,131 @@
+package com.aegis.agent.service;
+
+import com.aegis.agent.config.AegisProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Owns the signature catalog file and the compiled {@link LogSignatureIndex} built from it.
+ * <p>
+ * The index is published through a volatile field, so the request path reads it without locking. When the catalog
+ * is a file on disk it is polled for changes and a freshly compiled index replaces the old one atomically; a catalog
+ * that fails to compile is rejected and the previous index stays in service.
+ */
+@Component
+public class LogSignatureCatalog {
+
+    private static final Logger log = LoggerFactory.getLogger(LogSignatureCatalog.class);
+
+    private final AegisProperties properties;
+    private final Resource resource;
+    private final Timer compileTimer;
+    private final Counter reloadSuccess;
+    private final Counter reloadFailure;
+
+    private volatile LogSignatureIndex current;
+    private volatile long loadedModifiedAt;
+    private ScheduledExecutorService watcher;
+
+    public LogSignatureCatalog(AegisProperties properties, ResourceLoader resourceLoader, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.resource = resourceLoader.getResource(properties.getLogSignatureCatalog());
+        this.compileTimer = Timer.builder("aegis.log.signatures.compile")
+                .description("Time to compile the log signature catalog into a matcher index")
+                .register(meterRegistry);
+        this.reloadSuccess = Counter.builder("aegis.log.signatures.reloads").tag("result", "success").register(meterRegistry);
+        this.reloadFailure = Counter.builder("aegis.log.signatures.reloads").tag("result", "failure").register(meterRegistry);
+
+        try {
+            this.loadedModifiedAt = lastModified();
+            this.current = load();
+        } catch (IOException | RuntimeException ex) {
+            throw new IllegalStateException("Log signature catalog could not be loaded from " + properties.getLogSignatureCatalog(), ex);
+        }
+        log.info("Loaded log signature catalog {} ({} signatures)", current.version(), current.signatureCount());
+
+        Gauge.builder("aegis.log.signatures.count", this, catalog -> catalog.current().signatureCount())
+                .description("Signatures in the active catalog")
+                .register(meterRegistry);
+        Gauge.builder("aegis.log.signatures.index.states", this, catalog -> catalog.current().automaton().stateCount())
+                .description("Automaton states in the active matcher index")
+                .register(meterRegistry);
+        Gauge.builder("aegis.log.signatures.index.size", this, catalog -> catalog.current().automaton().approximateSizeBytes())
+                .description("Approximate heap size of the active matcher index")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void startWatching() {
+        long interval = properties.getLogSignatureReloadIntervalMs();
+        if (interval <= 0 || !resource.isFile()) {
+            return;
+        }
+        watcher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "log-signature-catalog-watcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        watcher.scheduleWithFixedDelay(this::reloadIfChanged, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stopWatching() {
+        if (watcher != null) {
+            watcher.shutdownNow();
+        }
+    }
+
+    LogSignatureIndex current() {
+        return current;
+    }
+
+    /**
+     * Recompiles the catalog when the file changed since the last load. Returns true when a new index was published.
+     */
+    boolean reloadIfChanged() {
+        try {
+            long modifiedAt = lastModified();
+            if (modifiedAt == loadedModifiedAt) {
+                return false;
+            }
+            loadedModifiedAt = modifiedAt;
+            LogSignatureIndex reloaded = load();
+            current = reloaded;
+            reloadSuccess.increment();
+            log.info("Reloaded log signature catalog {} ({} signatures)", reloaded.version(), reloaded.signatureCount());
+            return true;
+        } catch (IOException | RuntimeException ex) {
+            reloadFailure.increment();
+            log.warn("Rejected log signature catalog change, keeping version {}: {}", current.version(), ex.getMessage());
+            return false;
+        }
+    }
+
+    private LogSignatureIndex load() throws IOException {
+        try (InputStream input = resource.getInputStream()) {
+            LogSignatureIndex index = LogSignatureIndex.load(input);
+            compileTimer.record(index.compileNanos(), TimeUnit.NANOSECONDS);
+            return index;
+        }
+    }
+
+    private long lastModified() throws IOException {
+        return resource.isFile() ? resource.lastModified() : 0L;
+    }
+}
@@ -0,0 +1,255 @@
+package com.aegis.agent.service;
+
+import com.aegis.agent.domain.AnalysisResult;
+import com.aegis.agent.domain.SignalOccurrence;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Immutable, precompiled form of a signature catalog: one keyword automaton for all signatures plus the regexes
+ * that are evaluated per log line. A new index is compiled on every catalog change and swapped in whole.
+ */
+final class LogSignatureIndex {
+
+    private static final ObjectMapper CATALOG_MAPPER = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    private final String version;
+    private final List<LogSignature> signatures;
+    private final LogSignature unknown;
+    private final KeywordAutomaton automaton;
+    private final int[] keywordSignatures;
+    private final int[] keywordGroups;
+    private final long[] lineMasks;
+    private final Pattern[] regexes;
+    private final int[] regexSignatures;
+    private final long compileNanos;
+
+    private LogSignatureIndex(
+            String version,
+            List<LogSignature> signatures,
+            LogSignature unknown,
+            KeywordAutomaton automaton,
+            int[] keywordSignatures,
+            int[] keywordGroups,
+            long[] lineMasks,
+            Pattern[] regexes,
+            int[] regexSignatures,
+            long compileNanos
+    ) {
+        this.version = version;
+        this.signatures = signatures;
+        this.unknown = unknown;
+        this.automaton = automaton;
+        this.keywordSignatures = keywordSignatures;
+        this.keywordGroups = keywordGroups;
+        this.lineMasks = lineMasks;
+        this.regexes = regexes;
+        this.regexSignatures = regexSignatures;
+        this.compileNanos = compileNanos;
+    }
+
+    static LogSignatureIndex load(InputStream catalog) throws IOException {
+        CatalogDocument document = CATALOG_MAPPER.readValue(catalog, CatalogDocument.class);
+        return compile(document.version(), document.signatures(), document.unknown());
+    }
+
+    /**
+     * Compiles the signatures in ranking order: when several match, the first one provides the root cause.
+     */
+    static LogSignatureIndex compile(String version, List<LogSignature> signatures, LogSignature unknown) {
+        long started = System.nanoTime();
+        if (version == null || version.isBlank()) {
+            throw new IllegalArgumentException("Signature catalog version is required");
+        }
+        if (signatures == null || signatures.isEmpty()) {
+            throw new IllegalArgumentException("Signature catalog " + version + " has no signatures");
+        }
+        if (unknown == null || unknown.rootCause() == null) {
+            throw new IllegalArgumentException("Signature catalog " + version + " has no unknown fallback");
+        }
+
+        List<String> keywords = new ArrayList<>();
+        List<int[]> keywordOwners = new ArrayList<>();
+        List<Pattern> regexes = new ArrayList<>();
+        List<Integer> regexOwners = new ArrayList<>();
+        long[] lineMasks = new long[signatures.size()];
+        for (int s = 0; s < signatures.size(); s++) {
+            LogSignature signature = signatures.get(s);
+            if (signature.signal() == null || signature.rootCause() == null) {
+                throw new IllegalArgumentException("Signature #" + s + " in catalog " + version + " needs signal and rootCause");
+            }
+            if (signature.keywords().isEmpty() && signature.regexes().isEmpty()) {
+                throw new IllegalArgumentException("Signature " + signature.signal() + " has neither keywords nor regexes");
+            }
+            if (signature.keywords().size() > Long.SIZE) {
+                throw new IllegalArgumentException("Signature " + signature.signal() + " has more than " + Long.SIZE + " keyword groups");
+            }
+            lineMasks[s] = signature.keywords().size() == Long.SIZE ? -1L : (1L << signature.keywords().size()) - 1;
+            for (int g = 0; g < signature.keywords().size(); g++) {
+                List<String> group = signature.keywords().get(g);
+                if (group.isEmpty()) {
+                    throw new IllegalArgumentException("Signature " + signature.signal() + " has an empty keyword group");
+                }
+                for (String keyword : group) {
+                    if (keyword == null || keyword.isEmpty() || keyword.indexOf('\n') >= 0) {
+                        // Parallel analysis splits logs on line breaks, so a keyword must fit on one line.
+                        throw new IllegalArgumentException("Signature " + signature.signal() + " has an empty or multi-line keyword");
+                    }
+                    keywords.add(keyword);
+                    keywordOwners.add(new int[]{s, g});
+                }
+            }
+            for (String regex : signature.regexes()) {
+                try {
+                    regexes.add(Pattern.compile(regex, Pattern.CASE_INSENSITIVE));
+                } catch (PatternSyntaxException ex) {
+                    throw new IllegalArgumentException("Signature " + signature.signal() + " has an invalid regex: " + regex, ex);
+                }
+                regexOwners.add(s);
+            }
+        }
+
+        int[] keywordSignatures = new int[keywords.size()];
+        int[] keywordGroups = new int[keywords.size()];
+        for (int k = 0; k < keywords.size(); k++) {
+            keywordSignatures[k] = keywordOwners.get(k)[0];
+            keywordGroups[k] = keywordOwners.get(k)[1];
+        }
+        int[] regexSignatures = regexOwners.stream().mapToInt(Integer::intValue).toArray();
+
+        return new LogSignatureIndex(
+                version,
+                List.copyOf(signatures),
+                unknown,
+                KeywordAutomaton.compile(keywords),
+                keywordSignatures,
+                keywordGroups,
+                lineMasks,
+                regexes.toArray(new Pattern[0]),
+                regexSignatures,
+                System.nanoTime() - started
+        );
+    }
+
+    LogScan newScan() {
+        return new LogScan(this);
+    }
+
+    /**
+     * Collects every signature that matched and lets the highest-ranked one drive the result.
+     */
+    AnalysisResult rank(long[] keywordHits, boolean[] regexHits, SignalOccurrence[] occurrences) {
+        boolean[] matched = new boolean[signatures.size()];
+        boolean[][] groupsHit = new boolean[signatures.size()][];
+        for (int s = 0; s < signatures.size(); s++) {
+            groupsHit[s] = new boolean[signatures.get(s).keywords().size()];
+        }
+        for (int k = 0; k < keywordHits.length; k++) {
+            if (keywordHits[k] > 0) {
+                groupsHit[keywordSignatures[k]][keywordGroups[k]] = true;
+            }
+        }
+        for (int s = 0; s < signatures.size(); s++) {
+            matched[s] = groupsHit[s].length > 0 && allTrue(groupsHit[s]);
+        }
+        for (int r = 0; r < regexHits.length; r++) {
+            if (regexHits[r]) {
+                matched[regexSignatures[r]] = true;
+            }
+        }
+
+        List<String> matches = new ArrayList<>();
+        List<SignalOccurrence> matchedOccurrences = new ArrayList<>();
+        LogSignature primary = null;
+        for (int s = 0; s < signatures.size(); s++) {
+            if (matched[s]) {
+                LogSignature signature = signatures.get(s);
+                matches.add(signature.signal());
+                if (occurrences[s] != null) {
+                    matchedOccurrences.add(occurrences[s]);
+                }
+                if (primary == null) {
+                    primary = signature;
+                }
+            }
+        }
+
+        LogSignature selected = primary == null ? unknown : primary;
+        return new AnalysisResult(
+                selected.rootCause(),
+                selected.fixAction(),
+                selected.severity(),
+                selected.confidence(),
+                matches,
+                selected.intent() == null ? "Unknown" : selected.intent(),
+                matchedOccurrences
+        );
+    }
+
+    String version() {
+        return version;
+    }
+
+    int signatureCount() {
+        return signatures.size();
+    }
+
+    String signal(int signature) {
+        return signatures.get(signature).signal();
+    }
+
+    int keywordSignature(int keyword) {
+        return keywordSignatures[keyword];
+    }
+
+    int keywordGroup(int keyword) {
+        return keywordGroups[keyword];
+    }
+
+    /**
+     * Bit set of every keyword group of a signature; a line whose hits cover it matches the whole signature.
+     */
+    long lineMask(int signature) {
+        return lineMasks[signature];
+    }
+
+    int regexSignature(int regex) {
+        return regexSignatures[regex];
+    }
+
+    KeywordAutomaton automaton() {
+        return automaton;
+    }
+
+    int regexCount() {
+        return regexes.length;
+    }
+
+    Pattern regex(int index) {
+        return regexes[index];
+    }
+
+    long compileNanos() {
+        return compileNanos;
+    }
+
+    private static boolean allTrue(boolean[] values) {
+        for (boolean value : values) {
+            if (!value) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private record CatalogDocument(String version, LogSignature unknown, List<LogSignature> signatures) {
+    }
+}
@@ -0,0 +1,492 @@
+package com.aegis.agent.service;
+
+/**
+ * Single-pass redaction of emails, phone numbers, JWTs, UUIDs, bearer tokens and key=value secrets.
+ * <p>
+ * Each kind has a hand-written matcher with the same semantics as the regex the sanitizer used to run for it.
+ * At every position the matchers are tried in the order those regexes were applied, and a match is cut short
+ * where an earlier kind matches inside it, so the output is what applying the six {@code replaceAll} calls one
+ * after another produced, without the intermediate strings. Redacted text is written into a per-thread builder
+ * that is only touched once something matches; clean input comes back as the same instance.
+ * Not thread-safe: use {@link #redact(String)}, which hands out one instance per thread.
+ */
+final class PiiRedactor {
+
+    private static final int EMAIL = 0;
+    private static final int PHONE = 1;
+    private static final int JWT = 2;
+    private static final int UUID = 3;
+    private static final int BEARER = 4;
+    private static final int SECRET = 5;
+    private static final String[] REPLACEMENTS = {
+            "[redacted-email]", "[redacted-phone]", "[redacted-jwt]", "[redacted-uuid]", "Bearer [redacted]"
+    };
+    private static final int JWT_SEGMENT_MIN = 16;
+    private static final int UUID_LENGTH = 36;
+    private static final int MAX_RETAINED_CAPACITY = 64 * 1024;
+    private static final ThreadLocal<PiiRedactor> INSTANCES = ThreadLocal.withInitial(PiiRedactor::new);
+    private static final int WORD_START_KINDS = 1 << EMAIL | 1 << JWT | 1 << UUID;
+    private static final int[] START_KINDS = new int[128];
+
+    static {
+        for (char c = 0; c < START_KINDS.length; c++) {
+            int kinds = 0;
+            if (isEmailLocal(c)) {
+                kinds |= 1 << EMAIL;
+            }
+            if (isDigit(c) || c == '+') {
+                kinds |= 1 << PHONE;
+            }
+            if (isJwtChar(c)) {
+                kinds |= 1 << JWT;
+            }
+            if (isHex(c)) {
+                kinds |= 1 << UUID;
+            }
+            if ((c | 0x20) == 'b') {
+                kinds |= 1 << BEARER;
+            }
+            if ((c | 0x20) == 'a' || (c | 0x20) == 't' || (c | 0x20) == 's' || (c | 0x20) == 'p') {
+                kinds |= 1 << SECRET;
+            }
+            START_KINDS[c] = kinds;
+        }
+    }
+
+    private StringBuilder builder = new StringBuilder(256);
+    private String text;
+    private int length;
+    private int possibleKinds;
+    private int lastEnd;
+    private int lastKind;
+    private int lastEmailEnd;
+    private int phoneBlockedUntil;
+    private int higherKind;
+    private int secretKeywordEnd;
+    private boolean secretBearerTail;
+
+    static String redact(String value) {
+        return INSTANCES.get().run(value);
+    }
+
+    private String run(String value) {
+        text = value;
+        length = value.length();
+        lastEnd = -1;
+        lastKind = -1;
+        lastEmailEnd = 0;
+        phoneBlockedUntil = 0;
+        possibleKinds = possibleKinds(value);
+        StringBuilder out = null;
+        int copied = 0;
+        int position = 0;
+        while (position < length) {
+            int candidates = candidateKinds(position);
+            int kind = EMAIL;
+            int end = -1;
+            for (; candidates != 0 && kind <= SECRET; kind++) {
+                if ((candidates & 1 << kind) != 0) {
+                    end = match(kind, position);
+                    if (end >= 0) {
+                        break;
+                    }
+                }
+            }
+            if (end < 0) {
+                position++;
+                continue;
+            }
+            if (out == null) {
+                out = builder;
+                out.setLength(0);
+            }
+            out.append(text, copied, position);
+            if (kind == SECRET) {
+                out.append(text, position, secretKeywordEnd).append("=[redacted]");
+                if (secretBearerTail) {
+                    out.append(" [redacted]");
+                }
+            } else {
+                out.append(REPLACEMENTS[kind]);
+            }
+            if (kind == EMAIL) {
+                lastEmailEnd = end;
+            }
+            lastEnd = end;
+            lastKind = kind;
+            copied = position = end;
+        }
+        text = null;
+        if (out == null) {
+            return value;
+        }
+        out.append(value, copied, length);
+        String redacted = out.toString();
+        if (out.capacity() > MAX_RETAINED_CAPACITY) {
+            builder = new StringBuilder(256);
+        }
+        return redacted;
+    }
+
+    /**
+     * Kinds that can start at {@code position}, judged from its character and the one before. Inside a word only
+     * phone numbers, bearer tokens and secrets can start, which keeps the per-character cost of plain text low.
+     */
+    private int candidateKinds(int position) {
+        char c = text.charAt(position);
+        if (c >= START_KINDS.length) {
+            return 0;
+        }
+        int kinds = START_KINDS[c] & possibleKinds;
+        if (position > 0 && position != lastEnd && position != lastEmailEnd
+                && isWord(c) && isWord(text.charAt(position - 1))) {
+            kinds &= ~WORD_START_KINDS;
+        }
+        return kinds;
+    }
+
+    /**
+     * End of a match of {@code kind} at {@code start}, or -1. The span is truncated at the first position where
+     * an earlier kind matches, because the sequential regexes saw a placeholder there.
+     */
+    private int match(int kind, int start) {
+        if ((possibleKinds & 1 << kind) == 0) {
+            return -1;
+        }
+        if (kind == EMAIL) {
+            return email(start);
+        }
+        if (kind == SECRET) {
+            return secret(start);
+        }
+        int end = match(kind, start, length);
+        if (end < 0) {
+            return -1;
+        }
+        for (int position = start + 1; position < end; position++) {
+            if (higherMatch(kind, position) >= 0) {
+                return match(kind, start, position);
+            }
+        }
+        return end;
+    }
+
+    /**
+     * Kinds whose mandatory punctuation occurs somewhere in the value. {@code indexOf} is vectorized, so this
+     * takes most kinds off the per-position loop for ordinary text.
+     */
+    private static int possibleKinds(String value) {
+        int kinds = 1 << PHONE | 1 << BEARER;
+        if (value.indexOf('@') >= 0) {
+            kinds |= 1 << EMAIL;
+        }
+        int dot = value.indexOf('.');
+        if (dot >= 0 && value.indexOf('.', dot + 1) >= 0) {
+            kinds |= 1 << JWT;
+        }
+        if (value.indexOf('-') >= 0) {
+            kinds |= 1 << UUID;
+        }
+        if (value.indexOf('=') >= 0 || value.indexOf(':') >= 0) {
+            kinds |= 1 << SECRET;
+        }
+        return kinds;
+    }
+
+    private int match(int kind, int start, int limit) {
+        return switch (kind) {
+            case PHONE -> phone(start, limit);
+            case JWT -> jwt(start, limit);
+            case UUID -> uuid(start, limit);
+            case BEARER -> bearer(start, limit);
+            default -> throw new IllegalArgumentException("Unexpected kind " + kind);
+        };
+    }
+
+    private int higherMatch(int kind, int position) {
+        for (int higher = EMAIL; higher < kind; higher++) {
+            int end = match(higher, position);
+            if (end >= 0) {
+                higherKind = higher;
+                return end;
+            }
+        }
+        return -1;
+    }
+
+    /** {@code [A-Za-z0-9._%+-]+@[A-Za-z0-9.-]+\.[A-Za-z]{2,}} */
+    private int email(int start) {
+        if (!isEmailLocal(text.charAt(start))
+                || start > 0 && start != lastEmailEnd && isEmailLocal(text.charAt(start - 1))) {
+            // a match starting mid-run would already have been found at the start of the run
+            return -1;
+        }
+        int at = start + 1;
+        while (at < length && isEmailLocal(text.charAt(at))) {
+            at++;
+        }
+        if (at >= length || text.charAt(at) != '@') {
+            return -1;
+        }
+        int domainEnd = at + 1;
+        while (domainEnd < length && isEmailDomain(text.charAt(domainEnd))) {
+            domainEnd++;
+        }
+        for (int dot = domainEnd - 3; dot >= at + 2; dot--) {
+            if (text.charAt(dot) == '.' && isLetter(text.charAt(dot + 1)) && isLetter(text.charAt(dot + 2))) {
+                int end = dot + 3;
+                while (end < domainEnd && isLetter(text.charAt(end))) {
+                    end++;
+                }
+                return end;
+            }
+        }
+        return -1;
+    }
+
+    /** {@code \+?\d[\d\s()-]{7,}\d} */
+    private int phone(int start, int limit) {
+        if (start < phoneBlockedUntil) {
+            return -1;
+        }
+        int first = text.charAt(start) == '+' ? start + 1 : start;
+        if (first >= limit || !isDigit(text.charAt(first))) {
+            return -1;
+        }
+        int runEnd = first + 1;
+        while (runEnd < limit && isPhoneFill(text.charAt(runEnd))) {
+            runEnd++;
+        }
+        for (int last = runEnd - 1; last >= first + 8; last--) {
+            if (isDigit(text.charAt(last))) {
+                return last + 1;
+            }
+        }
+        if (limit == length) {
+            // every later start inside this run is shorter, so none of them can match either
+            phoneBlockedUntil = runEnd;
+        }
+        return -1;
+    }
+
+    /** {@code \b[A-Za-z0-9_-]{16,}\.[A-Za-z0-9_-]{16,}\.[A-Za-z0-9_-]{16,}\b} */
+    private int jwt(int start, int limit) {
+        if (!isJwtChar(text.charAt(start)) || !boundaryBefore(start, JWT)) {
+            return -1;
+        }
+        int firstDot = jwtRunEnd(start, limit);
+        if (firstDot - start < JWT_SEGMENT_MIN || firstDot >= limit || text.charAt(firstDot) != '.') {
+            return -1;
+        }
+        int secondDot = jwtRunEnd(firstDot + 1, limit);
+        if (secondDot - firstDot - 1 < JWT_SEGMENT_MIN || secondDot >= limit || text.charAt(secondDot) != '.') {
+            return -1;
+        }
+        int signature = secondDot + 1;
+        for (int end = jwtRunEnd(signature, limit); end >= signature + JWT_SEGMENT_MIN; end--) {
+            if (isWordAt(end - 1, limit) != isWordAt(end, limit)) {
+                return end;
+            }
+        }
+        return -1;
+    }
+
+    /** {@code \b[0-9a-fA-F]{8}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{12}\b} */
+    private int uuid(int start, int limit) {
+        if (start + UUID_LENGTH > limit || !isHex(text.charAt(start)) || !boundaryBefore(start, UUID)) {
+            return -1;
+        }
+        for (int i = 1; i < UUID_LENGTH; i++) {
+            char c = text.charAt(start + i);
+            boolean separator = i == 8 || i == 13 || i == 18 || i == 23;
+            if (separator ? c != '-' : !isHex(c)) {
+                return -1;
+            }
+        }
+        return isWordAt(start + UUID_LENGTH, limit) ? -1 : start + UUID_LENGTH;
+    }
+
+    /** {@code (?i)Bearer\s+[A-Za-z0-9._\-]+(?:\.[A-Za-z0-9._\-]+){0,2}} */
+    private int bearer(int start, int limit) {
+        if (!regionMatchesAscii(start, limit, "bearer")) {
+            return -1;
+        }
+        int token = start + 6;
+        while (token < limit && isSpace(text.charAt(token))) {
+            token++;
+        }
+        if (token == start + 6) {
+            return -1;
+        }
+        int end = token;
+        while (end < limit && isBearerChar(text.charAt(end))) {
+            end++;
+        }
+        return end > token ? end : -1;
+    }
+
+    /**
+     * {@code (?i)(api[_-]?key|token|secret|password)\s*[:=]\s*[^\s,;]+}. Earlier kinds inside the value were
+     * placeholders for the old regex, which it swallowed as part of the value; a bearer placeholder contains a
+     * space, so the value stops after its {@code Bearer} and {@code " [redacted]"} is kept. Each placeholder updates
+     * the same state a top-level match would, so the next one inside the value starts where the old regex saw it.
+     */
+    private int secret(int start) {
+        int keywordEnd = secretKeywordEnd(start);
+        if (keywordEnd < 0) {
+            return -1;
+        }
+        int position = keywordEnd;
+        while (position < length && isSpace(text.charAt(position))) {
+            position++;
+        }
+        if (position >= length || text.charAt(position) != ':' && text.charAt(position) != '=') {
+            return -1;
+        }
+        position++;
+        while (position < length && isSpace(text.charAt(position))) {
+            position++;
+        }
+        int valueStart = position;
+        boolean bearerTail = false;
+        while (position < length) {
+            int placeholderEnd = higherMatch(SECRET, position);
+            if (placeholderEnd >= 0) {
+                if (higherKind == EMAIL) {
+                    lastEmailEnd = placeholderEnd;
+                }
+                lastEnd = placeholderEnd;
+                lastKind = higherKind;
+                position = placeholderEnd;
+                if (higherKind == BEARER) {
+                    bearerTail = true;
+                    break;
+                }
+                continue;
+            }
+            char c = text.charAt(position);
+            if (isSpace(c) || c == ',' || c == ';') {
+                break;
+            }
+            position++;
+        }
+        if (position == valueStart) {
+            return -1;
+        }
+        secretKeywordEnd = keywordEnd;
+        secretBearerTail = bearerTail;
+        return position;
+    }
+
+    private int secretKeywordEnd(int start) {
+        switch (text.charAt(start) | 0x20) {
+            case 'a':
+                if (!regionMatchesAscii(start, length, "api")) {
+                    return -1;
+                }
+                int key = start + 3;
+                if (key < length && (text.charAt(key) == '_' || text.charAt(key) == '-')) {
+                    key++;
+                }
+                return regionMatchesAscii(key, length, "key") ? key + 3 : -1;
+            case 't':
+                return regionMatchesAscii(start, length, "token") ? start + 5 : -1;
+            case 's':
+                return regionMatchesAscii(start, length, "secret") ? start + 6 : -1;
+            case 'p':
+                return regionMatchesAscii(start, length, "password") ? start + 8 : -1;
+            default:
+                return -1;
+        }
+    }
+
+    /**
+     * {@code \b} before {@code start}. Right after a placeholder from an earlier kind the old regex saw its
+     * closing bracket rather than the original character.
+     */
+    private boolean boundaryBefore(int start, int kind) {
+        boolean previousWord = start > 0
+                && !(start == lastEnd && lastKind < kind)
+                && isBoundaryWordBefore(start);
+        return previousWord != isWordAt(start, length);
+    }
+
+    private boolean isWordAt(int position, int limit) {
+        if (position >= limit) {
+            return false;
+        }
+        char c = text.charAt(position);
+        return c < 128 ? isWord(c) : isBoundaryWord(Character.codePointAt(text, position));
+    }
+
+    private boolean isBoundaryWordBefore(int position) {
+        char c = text.charAt(position - 1);
+        return c < 128 ? isWord(c) : isBoundaryWord(Character.codePointBefore(text, position));
+    }
+
+    private int jwtRunEnd(int from, int limit) {
+        int position = from;
+        while (position < limit && isJwtChar(text.charAt(position))) {
+            position++;
+        }
+        return position;
+    }
+
+    /** ASCII-only case-insensitive match, like a regex without {@code UNICODE_CASE}. */
+    private boolean regionMatchesAscii(int start, int limit, String lowercase) {
+        if (start + lowercase.length() > limit) {
+            return false;
+        }
+        for (int i = 0; i < lowercase.length(); i++) {
+            if ((text.charAt(start + i) | 0x20) != lowercase.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isLetter(char c) {
+        return c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z';
+    }
+
+    private static boolean isHex(char c) {
+        return isDigit(c) || c >= 'a' && c <= 'f' || c >= 'A' && c <= 'F';
+    }
+
+    private static boolean isWord(char c) {
+        return isLetter(c) || isDigit(c) || c == '_';
+    }
+
+    /** Word characters as {@code \b} sees them: Unicode letters and digits, not just {@code \w}. */
+    private static boolean isBoundaryWord(int codePoint) {
+        return codePoint == '_' || Character.isLetterOrDigit(codePoint);
+    }
+
+    private static boolean isSpace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    private static boolean isEmailLocal(char c) {
+        return isWord(c) || c == '.' || c == '%' || c == '+' || c == '-';
+    }
+
+    private static boolean isEmailDomain(char c) {
+        return isLetter(c) || isDigit(c) || c == '.' || c == '-';
+    }
+
+    private static boolean isPhoneFill(char c) {
+        return isDigit(c) || isSpace(c) || c == '(' || c == ')' || c == '-';
+    }
+
+    private static boolean isJwtChar(char c) {
+        return isWord(c) || c == '-';
+    }
+
+    private static boolean isBearerChar(char c) {
+        return isWord(c) || c == '.' || c == '-';
+    }
+}
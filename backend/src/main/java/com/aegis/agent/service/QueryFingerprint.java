@@ -0,0 +1,58 @@
+package com.aegis.agent.service;
+
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Reduces a chat query to the words that carry its meaning, so rephrasings that differ only in case, punctuation,
+ * repeated or filler words share one cache key. Word order is kept because it decides what a negation applies to:
+ * "push not working, otp fine" and "otp not working, push fine" have the same words but different keys.
+ */
+final class QueryFingerprint {
+
+    private static final Set<String> STOP_WORDS = Set.of(
+            "a", "an", "the", "is", "are", "was", "were", "be", "been", "am", "i", "im", "i'm", "me", "my", "we",
+            "our", "you", "your", "it", "its", "this", "that", "on", "in", "at", "to", "for", "of", "from", "with",
+            "and", "or", "so", "just", "please", "pls", "help", "hi", "hello", "hey", "can", "could", "would", "do",
+            "does", "did", "again", "still", "any", "some", "anymore", "today", "now", "thanks", "thank"
+    );
+
+    private QueryFingerprint() {
+    }
+
+    /**
+     * Returns the content words of {@code query} in their original order, joined by single spaces and without
+     * immediate repetitions, or an empty string when nothing meaningful is left.
+     */
+    static String of(String query) {
+        if (query == null || query.isBlank()) {
+            return "";
+        }
+        StringBuilder fingerprint = new StringBuilder(query.length());
+        String previous = null;
+        for (String word : query.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}']+")) {
+            String trimmed = stripQuotes(word);
+            if (trimmed.isEmpty() || STOP_WORDS.contains(trimmed) || trimmed.equals(previous)) {
+                continue;
+            }
+            if (!fingerprint.isEmpty()) {
+                fingerprint.append(' ');
+            }
+            fingerprint.append(trimmed);
+            previous = trimmed;
+        }
+        return fingerprint.toString();
+    }
+
+    private static String stripQuotes(String word) {
+        int start = 0;
+        int end = word.length();
+        while (start < end && word.charAt(start) == '\'') {
+            start++;
+        }
+        while (end > start && word.charAt(end - 1) == '\'') {
+            end--;
+        }
+        return word.substring(start, end);
+    }
+}
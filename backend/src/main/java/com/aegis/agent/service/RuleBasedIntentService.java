@@ -3,50 +3,189 @@ package com.aegis.agent.service;
 import com.aegis.agent.domain.IntentResult;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.LinkedHashMap;
-import java.util.Locale;
+import java.util.List;
 import java.util.Map;
-import java.util.regex.Pattern;
 
+/**
+ * Keyword classifier used when no model answers.
+ * <p>
+ * All keywords are compiled into one {@link KeywordAutomaton} and the query is scanned once, case-insensitively.
+ * Keywords match anywhere, as substrings, unless their rule asks for a boundary: {@code otp} must start a word, so it
+ * does not fire inside {@code hotpot} or {@code footprint}; the factors {@code totp} and {@code hotp} and the status
+ * {@code 503} must be whole words. Each intent scores the summed weights of its distinct matched keywords, and intents
+ * are ranked by score, ties going to the intent declared first. Confidence is {@value #MATCH_CONFIDENCE} scaled by
+ * the intent's share of the total matched weight, so one unambiguous hit keeps the fixed confidence this classifier
+ * has always reported and conflicting evidence lowers it.
+ */
 @Service
 public class RuleBasedIntentService implements IntentService {
 
-    private static final Map<String, String> KEYWORDS_TO_INTENT = new LinkedHashMap<>();
-    private static final Pattern ALPHA_NUMERIC_PATTERN = Pattern.compile(".*[a-zA-Z0-9].*");
-
-    static {
-        KEYWORDS_TO_INTENT.put("enroll", "EnrollmentFailure");
-        KEYWORDS_TO_INTENT.put("registration", "EnrollmentFailure");
-        KEYWORDS_TO_INTENT.put("otp", "GenerateOTP");
-        KEYWORDS_TO_INTENT.put("code not generating", "GenerateOTP");
-        KEYWORDS_TO_INTENT.put("token sync", "TokenSyncError");
-        KEYWORDS_TO_INTENT.put("time drift", "TimeDriftFailure");
-        KEYWORDS_TO_INTENT.put("time skew", "TimeDriftFailure");
-        KEYWORDS_TO_INTENT.put("config", "ConfigIssue");
-        KEYWORDS_TO_INTENT.put("503", "ServerUnreachable");
-        KEYWORDS_TO_INTENT.put("unreachable", "ServerUnreachable");
-        KEYWORDS_TO_INTENT.put("push timeout", "PushApprovalTimeout");
-        KEYWORDS_TO_INTENT.put("passkey", "PasskeyRegistrationFailure");
-        KEYWORDS_TO_INTENT.put("biometric", "BiometricLockout");
-        KEYWORDS_TO_INTENT.put("device binding", "DeviceBindingFailure");
+    private static final double MATCH_CONFIDENCE = 0.76;
+    private static final double NO_TEXT_CONFIDENCE = 0.05;
+    private static final double NO_MATCH_CONFIDENCE = 0.2;
+
+    private enum Boundary {
+        NONE,
+        WORD_START,
+        WHOLE_WORD
+    }
+
+    private record Rule(String keyword, String intent, double weight, Boundary boundary) {
+    }
+
+    private static final List<Rule> RULES = List.of(
+            new Rule("enroll", "EnrollmentFailure", 1.0, Boundary.NONE),
+            new Rule("registration", "EnrollmentFailure", 1.0, Boundary.NONE),
+            new Rule("otp", "GenerateOTP", 1.0, Boundary.WORD_START),
+            new Rule("totp", "GenerateOTP", 1.0, Boundary.WHOLE_WORD),
+            new Rule("hotp", "GenerateOTP", 1.0, Boundary.WHOLE_WORD),
+            new Rule("code not generating", "GenerateOTP", 1.5, Boundary.NONE),
+            new Rule("token sync", "TokenSyncError", 1.5, Boundary.NONE),
+            new Rule("time drift", "TimeDriftFailure", 1.5, Boundary.NONE),
+            new Rule("time skew", "TimeDriftFailure", 1.5, Boundary.NONE),
+            new Rule("config", "ConfigIssue", 1.0, Boundary.NONE),
+            new Rule("503", "ServerUnreachable", 1.0, Boundary.WHOLE_WORD),
+            new Rule("unreachable", "ServerUnreachable", 1.0, Boundary.NONE),
+            new Rule("push timeout", "PushApprovalTimeout", 1.5, Boundary.NONE),
+            new Rule("passkey", "PasskeyRegistrationFailure", 1.5, Boundary.NONE),
+            new Rule("biometric", "BiometricLockout", 1.5, Boundary.NONE),
+            new Rule("device binding", "DeviceBindingFailure", 1.5, Boundary.NONE)
+    );
+
+    private final KeywordAutomaton automaton;
+    private final String[] intents;
+    private final int[] ruleIntents;
+    private final ThreadLocal<Scan> scans;
+
+    public RuleBasedIntentService() {
+        Map<String, Integer> intentIds = new LinkedHashMap<>();
+        List<String> keywords = new ArrayList<>(RULES.size());
+        this.ruleIntents = new int[RULES.size()];
+        for (int r = 0; r < RULES.size(); r++) {
+            Rule rule = RULES.get(r);
+            keywords.add(rule.keyword());
+            ruleIntents[r] = intentIds.computeIfAbsent(rule.intent(), intent -> intentIds.size());
+        }
+        this.automaton = KeywordAutomaton.compile(keywords);
+        this.intents = intentIds.keySet().toArray(String[]::new);
+        this.scans = ThreadLocal.withInitial(() -> new Scan(intents.length, RULES.size()));
     }
 
     @Override
     public IntentResult classify(String query) {
+        return classifyTopK(query, 1).get(0);
+    }
+
+    /**
+     * Up to {@code limit} matched intents, best first. When nothing matches the single result is {@code Unknown}
+     * with a confidence that tells an empty or symbol-only query apart from one that mentions no known symptom.
+     */
+    public List<IntentResult> classifyTopK(String query, int limit) {
         if (query == null || query.isBlank()) {
-            return new IntentResult("Unknown", 0.0);
+            return List.of(new IntentResult("Unknown", 0.0));
+        }
+
+        Scan scan = scans.get();
+        scan.reset();
+        int state = KeywordAutomaton.START;
+        boolean alphanumeric = false;
+        int first = -1;
+        int last = -1;
+        for (int i = 0; i < query.length(); i++) {
+            char c = query.charAt(i);
+            if (c > ' ') {
+                if (first < 0) {
+                    first = i;
+                }
+                last = i;
+            }
+            if (!alphanumeric) {
+                char lower = Character.toLowerCase(c);
+                alphanumeric = (lower >= 'a' && lower <= 'z') || (lower >= '0' && lower <= '9');
+            }
+            state = automaton.next(state, c);
+            for (int o = automaton.outputStart(state); o < automaton.outputEnd(state); o++) {
+                int rule = automaton.output(o);
+                if (isBoundedMatch(query, rule, i)) {
+                    scan.hit(rule, ruleIntents[rule], RULES.get(rule).weight());
+                }
+            }
         }
 
-        String normalized = query.toLowerCase(Locale.ROOT);
-        if (!ALPHA_NUMERIC_PATTERN.matcher(normalized).matches() || normalized.trim().length() < 3) {
-            return new IntentResult("Unknown", 0.05);
+        if (!alphanumeric || last - first + 1 < 3) {
+            return List.of(new IntentResult("Unknown", NO_TEXT_CONFIDENCE));
+        }
+        if (scan.total == 0) {
+            return List.of(new IntentResult("Unknown", NO_MATCH_CONFIDENCE));
+        }
+        return scan.ranked(intents, Math.max(1, limit));
+    }
+
+    private boolean isBoundedMatch(String query, int rule, int end) {
+        Boundary boundary = RULES.get(rule).boundary();
+        if (boundary == Boundary.NONE) {
+            return true;
+        }
+        int start = end - automaton.keywordLength(rule) + 1;
+        if (start > 0 && Character.isLetterOrDigit(query.charAt(start - 1))) {
+            return false;
+        }
+        return boundary == Boundary.WORD_START || end + 1 == query.length() || !Character.isLetterOrDigit(query.charAt(end + 1));
+    }
+
+    /**
+     * Per-thread scoring buffers, reused across calls so a scan only allocates its result.
+     */
+    private static final class Scan {
+
+        private final double[] scores;
+        private final int[] seen;
+        private int generation;
+        private double total;
+
+        Scan(int intentCount, int ruleCount) {
+            this.scores = new double[intentCount];
+            this.seen = new int[ruleCount];
+        }
+
+        void reset() {
+            Arrays.fill(scores, 0.0);
+            total = 0;
+            generation++;
+        }
+
+        void hit(int rule, int intent, double weight) {
+            if (seen[rule] == generation) {
+                return;
+            }
+            seen[rule] = generation;
+            scores[intent] += weight;
+            total += weight;
         }
 
-        for (Map.Entry<String, String> entry : KEYWORDS_TO_INTENT.entrySet()) {
-            if (normalized.contains(entry.getKey())) {
-                return new IntentResult(entry.getValue(), 0.76);
+        List<IntentResult> ranked(String[] intents, int limit) {
+            List<IntentResult> ranked = new ArrayList<>(Math.min(limit, intents.length));
+            double previous = Double.POSITIVE_INFINITY;
+            int previousIntent = -1;
+            while (ranked.size() < limit) {
+                int best = -1;
+                for (int i = 0; i < scores.length; i++) {
+                    boolean after = scores[i] < previous || (scores[i] == previous && i > previousIntent);
+                    if (scores[i] > 0 && after && (best < 0 || scores[i] > scores[best])) {
+                        best = i;
+                    }
+                }
+                if (best < 0) {
+                    break;
+                }
+                ranked.add(new IntentResult(intents[best], MATCH_CONFIDENCE * scores[best] / total));
+                previous = scores[best];
+                previousIntent = best;
             }
+            return ranked;
         }
-        return new IntentResult("Unknown", 0.2);
     }
 }
@@ -1,84 +1,179 @@
 package com.aegis.agent.service;
 
+import com.aegis.agent.config.AegisProperties;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.HexFormat;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
-import java.util.regex.Pattern;
+import java.util.function.Function;
 
 @Component
 public class SensitiveDataSanitizer {
 
-    private static final Pattern EMAIL_PATTERN = Pattern.compile("[A-Za-z0-9._%+-]+@[A-Za-z0-9.-]+\\.[A-Za-z]{2,}");
-    private static final Pattern PHONE_PATTERN = Pattern.compile("\\+?\\d[\\d\\s()-]{7,}\\d");
-    private static final Pattern JWT_PATTERN = Pattern.compile("\\b[A-Za-z0-9_-]{16,}\\.[A-Za-z0-9_-]{16,}\\.[A-Za-z0-9_-]{16,}\\b");
-    private static final Pattern UUID_PATTERN = Pattern.compile("\\b[0-9a-fA-F]{8}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{12}\\b");
-    private static final Pattern BEARER_PATTERN = Pattern.compile("(?i)Bearer\\s+[A-Za-z0-9._\\-]+(?:\\.[A-Za-z0-9._\\-]+){0,2}");
-    private static final Pattern KEY_VALUE_SECRET_PATTERN = Pattern.compile(
-            "(?i)(api[_-]?key|token|secret|password)\\s*[:=]\\s*[^\\s,;]+"
-    );
+    private static final Logger log = LoggerFactory.getLogger(SensitiveDataSanitizer.class);
+    private static final String FALLBACK_KEY_LABEL = "aegis-agent/pseudonym-secret/unset";
 
+    private final HmacPseudonymizer pseudonymizer;
+    private final BoundedLruCache<String, String> userRefs;
+    private final Function<String, String> userRefLoader;
+
+    public SensitiveDataSanitizer(AegisProperties properties, MeterRegistry meterRegistry) {
+        this.pseudonymizer = new HmacPseudonymizer(pseudonymSecret(properties.getPseudonymSecret()));
+        this.userRefs = new BoundedLruCache<>(Math.max(1, properties.getPseudonymCacheSize()));
+        this.userRefLoader = pseudonymizer::pseudonymize;
+
+        Gauge.builder("aegis.pseudonym.cache.size", userRefs, BoundedLruCache::size)
+                .description("User references held in the pseudonymization cache")
+                .register(meterRegistry);
+        Gauge.builder("aegis.pseudonym.cache.hit.ratio", userRefs, BoundedLruCache::hitRatio)
+                .description("Share of pseudonymization lookups served from the cache")
+                .register(meterRegistry);
+        FunctionCounter.builder("aegis.pseudonym.cache.requests", userRefs, BoundedLruCache::hits)
+                .tag("result", "hit")
+                .register(meterRegistry);
+        FunctionCounter.builder("aegis.pseudonym.cache.requests", userRefs, BoundedLruCache::misses)
+                .tag("result", "miss")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Redacts emails, phone numbers, JWTs, UUIDs, bearer tokens and key=value secrets in one pass.
+     * Returns {@code value} itself when there is nothing to redact.
+     */
     public String sanitize(String value) {
         if (value == null || value.isBlank()) {
             return value;
         }
-
-        String redacted = value;
-        redacted = EMAIL_PATTERN.matcher(redacted).replaceAll("[redacted-email]");
-        redacted = PHONE_PATTERN.matcher(redacted).replaceAll("[redacted-phone]");
-        redacted = JWT_PATTERN.matcher(redacted).replaceAll("[redacted-jwt]");
-        redacted = UUID_PATTERN.matcher(redacted).replaceAll("[redacted-uuid]");
-        redacted = BEARER_PATTERN.matcher(redacted).replaceAll("Bearer [redacted]");
-        redacted = KEY_VALUE_SECRET_PATTERN.matcher(redacted).replaceAll("$1=[redacted]");
-        return redacted;
+        return PiiRedactor.redact(value);
     }
 
+    /**
+     * Maps a user id to a stable {@code user-<12 hex>} reference keyed by the configured pseudonym secret.
+     * Ids are compared trimmed and case-insensitively; recent ids are served from a bounded LRU cache keyed by the
+     * normalized id, so spellings of the same id share one entry.
+     */
     public String pseudonymize(String value) {
         if (value == null || value.isBlank()) {
             return "user-anonymous";
         }
-        try {
-            MessageDigest digest = MessageDigest.getInstance("SHA-256");
-            byte[] hash = digest.digest(value.trim().toLowerCase(Locale.ROOT).getBytes(StandardCharsets.UTF_8));
-            String hex = HexFormat.of().formatHex(hash);
-            return "user-" + hex.substring(0, 12);
-        } catch (Exception ignored) {
-            return "user-redacted";
-        }
+        return userRefs.computeIfAbsent(value.trim().toLowerCase(Locale.ROOT), userRefLoader);
     }
 
+    /**
+     * Redacts every string beneath {@code input}. Containers are copied only when something beneath them changes,
+     * so a payload without sensitive data comes back as the same instance.
+     */
+    @SuppressWarnings("unchecked")
     public Map<String, Object> sanitizeMap(Map<String, Object> input) {
         if (input == null || input.isEmpty()) {
             return Map.of();
         }
-        Map<String, Object> sanitized = new HashMap<>();
-        input.forEach((key, value) -> sanitized.put(key, sanitizeValue(value)));
-        return sanitized;
+        return (Map<String, Object>) sanitizeValue(input);
+    }
+
+    /**
+     * Builds the document for an indexed event: each top-level field is handled by its {@link FieldPolicy} from
+     * {@link EventFieldPolicies}, undeclared fields are redacted. The returned map is new and mutable so callers
+     * can add their own fields; nested containers are shared with {@code payload} unless something in them changed.
+     */
+    public Map<String, Object> sanitizeEvent(String eventType, Map<String, Object> payload) {
+        Map<String, FieldPolicy> policies = EventFieldPolicies.forEventType(eventType);
+        int size = payload == null ? 0 : payload.size();
+        Map<String, Object> document = new HashMap<>(Math.max(16, (int) ((size + 2) / 0.75f) + 1));
+        if (payload != null) {
+            payload.forEach((field, value) ->
+                    document.put(field, applyPolicy(policies.getOrDefault(field, FieldPolicy.REDACT), value)));
+        }
+        return document;
+    }
+
+    private Object applyPolicy(FieldPolicy policy, Object value) {
+        return switch (policy) {
+            case SKIP -> value;
+            case REDACT -> sanitizeValue(value);
+            case PSEUDONYMIZE -> pseudonymize(value == null ? null : String.valueOf(value));
+            case HASH -> value == null ? null : pseudonymizer.hash(String.valueOf(value));
+        };
     }
 
-    @SuppressWarnings("unchecked")
     private Object sanitizeValue(Object value) {
         if (value instanceof String str) {
             return sanitize(str);
         }
         if (value instanceof Map<?, ?> mapValue) {
-            Map<String, Object> nested = new HashMap<>();
-            mapValue.forEach((k, v) -> nested.put(String.valueOf(k), sanitizeValue(v)));
-            return nested;
+            return sanitizeNestedMap(mapValue);
         }
         if (value instanceof List<?> listValue) {
-            List<Object> list = new ArrayList<>();
-            for (Object item : listValue) {
-                list.add(sanitizeValue(item));
-            }
-            return list;
+            return sanitizeList(listValue);
         }
         return value;
     }
+
+    private Map<?, ?> sanitizeNestedMap(Map<?, ?> input) {
+        Map<String, Object> copy = null;
+        int position = 0;
+        for (Map.Entry<?, ?> entry : input.entrySet()) {
+            Object value = entry.getValue();
+            Object sanitized = sanitizeValue(value);
+            if (copy == null && (sanitized != value || !(entry.getKey() instanceof String))) {
+                copy = new HashMap<>(Math.max(16, (int) (input.size() / 0.75f) + 1));
+                Iterator<? extends Map.Entry<?, ?>> earlier = input.entrySet().iterator();
+                for (int i = 0; i < position; i++) {
+                    Map.Entry<?, ?> unchanged = earlier.next();
+                    copy.put((String) unchanged.getKey(), unchanged.getValue());
+                }
+            }
+            if (copy != null) {
+                copy.put(String.valueOf(entry.getKey()), sanitized);
+            }
+            position++;
+        }
+        return copy == null ? input : copy;
+    }
+
+    private List<?> sanitizeList(List<?> input) {
+        List<Object> copy = null;
+        int position = 0;
+        for (Object value : input) {
+            Object sanitized = sanitizeValue(value);
+            if (copy == null && sanitized != value) {
+                copy = new ArrayList<>(input.size());
+                copy.addAll(input.subList(0, position));
+            }
+            if (copy != null) {
+                copy.add(sanitized);
+            }
+            position++;
+        }
+        return copy == null ? input : copy;
+    }
+
+    /**
+     * Without a configured secret the key is derived from a fixed label: references stay stable across restarts and
+     * replicas, but anyone with the source can recompute them from a guessed id, so this is only fit for development.
+     */
+    private static byte[] pseudonymSecret(String configured) {
+        if (configured != null && !configured.isBlank()) {
+            return configured.getBytes(StandardCharsets.UTF_8);
+        }
+        log.error("PSEUDONYM_SECRET is not set: user references use a key derived from a public label and can be "
+                + "recomputed from guessed user ids. Set aegis.pseudonym-secret in every non-development environment.");
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(FALLBACK_KEY_LABEL.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 is not available", ex);
+        }
+    }
 }
@@ -0,0 +1,76 @@
+package com.aegis.agent.service;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Collapses concurrent calls with the same key into one. The first caller for a key runs the call; callers that
+ * arrive while it is in flight wait for its outcome instead of starting their own, and get its value or its
+ * exception. Nothing is remembered once the call completes, so this only deduplicates overlapping calls and sits
+ * underneath any result cache.
+ */
+final class SingleFlight<K, V> {
+
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final Consumer<V> onShared;
+
+    /**
+     * @param onShared invoked with the result once for every caller that was served by another caller's call
+     */
+    SingleFlight(Consumer<V> onShared) {
+        this.onShared = onShared;
+    }
+
+    /**
+     * Returns {@code call}'s result, or that of an identical call already in flight. A waiting caller that is
+     * interrupted gets {@code null} with its interrupt flag set.
+     */
+    V execute(K key, Supplier<V> call) {
+        CompletableFuture<V> own = new CompletableFuture<>();
+        CompletableFuture<V> running = inFlight.putIfAbsent(key, own);
+        if (running != null) {
+            return await(running);
+        }
+        try {
+            V value = call.get();
+            own.complete(value);
+            return value;
+        } catch (RuntimeException | Error ex) {
+            own.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            inFlight.remove(key, own);
+        }
+    }
+
+    int inFlight() {
+        return inFlight.size();
+    }
+
+    /**
+     * Callers currently blocked on the call in flight for {@code key}; 0 when there is none.
+     */
+    int waiting(K key) {
+        CompletableFuture<V> running = inFlight.get(key);
+        return running == null ? 0 : running.getNumberOfDependents();
+    }
+
+    private V await(CompletableFuture<V> running) {
+        try {
+            V value = running.get();
+            onShared.accept(value);
+            return value;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(ex.getCause());
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.aegis.agent.api;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SseFrameTest {
+
+    @Test
+    void singleLinePayloadIsOneDataField() {
+        assertEquals("event: final\ndata: {\"intent\":\"GenerateOTP\"}\n\n", frame("final", "{\"intent\":\"GenerateOTP\"}"));
+    }
+
+    @Test
+    void everyLineOfAnIndentedPayloadGetsItsOwnDataField() {
+        String indented = "{\r\n  \"intent\" : \"GenerateOTP\",\n  \"status\" : \"GUIDED\"\r}";
+
+        assertEquals("event: diagnosis\n"
+                + "data: {\n"
+                + "data:   \"intent\" : \"GenerateOTP\",\n"
+                + "data:   \"status\" : \"GUIDED\"\n"
+                + "data: }\n\n", frame("diagnosis", indented));
+    }
+
+    private static String frame(String event, String data) {
+        return new String(SseFrame.encode(event, data), StandardCharsets.UTF_8);
+    }
+}
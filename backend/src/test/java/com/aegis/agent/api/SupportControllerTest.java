@@ -1,13 +1,15 @@
 package com.aegis.agent.api;
 
 import com.aegis.agent.config.AegisProperties;
+import com.aegis.agent.api.dto.ComponentStatusItem;
+import com.aegis.agent.api.dto.ComponentStatusResponse;
 import com.aegis.agent.api.dto.JiraValidationResponse;
 import com.aegis.agent.domain.AnalysisResult;
 import com.aegis.agent.domain.IntentResolution;
 import com.aegis.agent.domain.IntentResult;
 import com.aegis.agent.integration.JiraClient;
 import com.aegis.agent.integration.OpenSearchClient;
-import com.aegis.agent.service.DeepPavlovIntentProvider;
+import com.aegis.agent.service.ComponentStatusRefresher;
 import com.aegis.agent.service.EscalationService;
 import com.aegis.agent.service.IntentService;
 import com.aegis.agent.service.LogAnalysisService;
@@ -19,17 +21,27 @@ import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.ObjIntConsumer;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.willAnswer;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @WebMvcTest(SupportController.class)
@@ -60,7 +72,7 @@ class SupportControllerTest {
     private JiraClient jiraClient;
 
     @MockBean
-    private DeepPavlovIntentProvider deepPavlovIntentProvider;
+    private ComponentStatusRefresher componentStatusRefresher;
 
     @MockBean
     private SensitiveDataSanitizer sensitiveDataSanitizer;
@@ -109,6 +121,69 @@ class SupportControllerTest {
                 .andExpect(jsonPath("$.intent").value("GenerateOTP"));
     }
 
+    @Test
+    void chatNamesTheLocalModelWhenItSuppliedTheCrossCheck() throws Exception {
+        given(intentService.classifyResolution(anyString(), anyBoolean())).willReturn(new IntentResolution(
+                new IntentResult("PushApprovalTimeout", 0.9), new IntentResult("GenerateOTP", 0.86), "cloud-primary cross-verified by local model"));
+        given(playbookService.actionsFor(anyString())).willReturn(List.of("Retry push"));
+
+        mockMvc.perform(post("/api/chat")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"query\":\"push challenge timed out\",\"platform\":\"Android\",\"userId\":\"user-1\"}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.message").value("Primary diagnosis from cloud model: probable issue is PushApprovalTimeout."
+                        + " Local model cross-check also suggests GenerateOTP."));
+    }
+
+    @Test
+    void chatRetryInputIsTruncatedToTheTokenBudget() throws Exception {
+        given(properties.getCloudIntentMaxInputTokens()).willReturn(20);
+        given(intentService.classifyResolution(anyString(), anyBoolean())).willReturn(IntentResolution.single(new IntentResult("GenerateOTP", 0.92), "cloud-only retry"));
+        given(playbookService.actionsFor(anyString())).willReturn(List.of("Sync time"));
+
+        String payload = """
+                {
+                  "query": "otp still rejected after sync",
+                  "platform": "Android",
+                  "userId": "user-1",
+                  "deviceMetadata": {"model":"Pixel"},
+                  "retryAttempt": true,
+                  "previousDiagnosis": "%s",
+                  "attemptedActions": ["Sync time", "Reinstall app"],
+                  "attemptCount": 2
+                }
+                """.formatted("Probable issue is TimeDriftFailure. ".repeat(20));
+
+        mockMvc.perform(post("/api/chat")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(payload))
+                .andExpect(status().isOk());
+
+        verify(intentService).classifyResolution(argThat(input -> input.length() == 80
+                && input.startsWith("otp still rejected after sync\n\nPrevious diagnosis:\nProba")
+                && !input.contains("Attempted actions")
+                && input.endsWith("\nRetry attempt number: 2")), eq(true));
+    }
+
+    @Test
+    void chatRetryInputTruncationKeepsSurrogatePairsWhole() throws Exception {
+        given(properties.getCloudIntentMaxInputTokens()).willReturn(20);
+        given(intentService.classifyResolution(anyString(), anyBoolean())).willReturn(IntentResolution.single(new IntentResult("GenerateOTP", 0.92), "cloud-only retry"));
+        given(playbookService.actionsFor(anyString())).willReturn(List.of("Sync time"));
+        // 80 characters minus the 24-character attempt line leaves 56; the emoji sits at indexes 55 and 56.
+        String query = "x".repeat(55) + "\uD83D\uDE00 still failing";
+
+        mockMvc.perform(post("/api/chat")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                                {"query": "%s", "platform": "Android", "userId": "user-1", "deviceMetadata": {"model":"Pixel"},
+                                 "retryAttempt": true, "attemptCount": 2}
+                                """.formatted(query)))
+                .andExpect(status().isOk());
+
+        verify(intentService).classifyResolution(eq("x".repeat(55) + "\nRetry attempt number: 2"), eq(true));
+    }
+
     @Test
     void chatReturnsNeedMoreInfoWithoutInvokingInferenceForLowInfoInput() throws Exception {
         String payload = """
@@ -305,16 +380,144 @@ class SupportControllerTest {
     }
 
     @Test
-    void componentStatusReturnsServiceHealthStates() throws Exception {
-        given(deepPavlovIntentProvider.isHealthy()).willReturn(true);
-        given(openSearchClient.isHealthy()).willReturn(true);
-        given(jiraClient.isHealthy()).willReturn(false);
+    void componentStatusReturnsTheLatestSnapshot() throws Exception {
+        ComponentStatusResponse snapshot = new ComponentStatusResponse(Map.of(
+                "backend", new ComponentStatusItem("UP", "http://localhost:8080/actuator/health", "Core API"),
+                "deeppavlov", new ComponentStatusItem("UP", "http://deeppavlov:5000/infer", "Intent inference", "closed"),
+                "cloud-intent", new ComponentStatusItem("DOWN", "https://api.openai.com/v1/chat/completions",
+                        "Cloud intent classification", "open"),
+                "opensearch", new ComponentStatusItem("UP", "http://opensearch:9200", "Log indexing and replay"),
+                "jira", new ComponentStatusItem("DOWN", "https://jira.example.com", "Ticket escalation")
+        ));
+        given(componentStatusRefresher.snapshot()).willReturn(snapshot);
 
         mockMvc.perform(get("/api/status/components"))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.components.backend.status").value("UP"))
                 .andExpect(jsonPath("$.components.deeppavlov.status").value("UP"))
+                .andExpect(jsonPath("$.components.deeppavlov.circuit").value("closed"))
+                .andExpect(jsonPath("$.components['cloud-intent'].status").value("DOWN"))
+                .andExpect(jsonPath("$.components['cloud-intent'].circuit").value("open"))
                 .andExpect(jsonPath("$.components.opensearch.status").value("UP"))
                 .andExpect(jsonPath("$.components.jira.status").value("DOWN"));
     }
+
+    @Test
+    void chatStreamSendsInterimDiagnosesBeforeTheFinalResponse() throws Exception {
+        willAnswer(invocation -> {
+            Consumer<IntentResolution> interim = invocation.getArgument(2);
+            interim.accept(IntentResolution.single(new IntentResult("GenerateOTP", 0.76), "rule-based preview"));
+            return IntentResolution.single(new IntentResult("TimeDriftFailure", 0.93), "cloud-primary");
+        }).given(intentService).classifyResolution(anyString(), anyBoolean(), any());
+        given(playbookService.actionsFor(anyString())).willReturn(List.of("Sync time", "Retry OTP"));
+
+        MvcResult started = mockMvc.perform(post("/api/chat/stream")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"query\":\"otp rejected after travel\",\"platform\":\"Android\",\"correlationId\":\"corr-7\"}"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String events = mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.TEXT_EVENT_STREAM))
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+
+        String[] frames = events.split("\n\n");
+        assertEquals(2, frames.length);
+        assertTrue(frames[0].startsWith("event: diagnosis\ndata: {"));
+        assertTrue(frames[0].contains("\"intent\":\"GenerateOTP\""));
+        assertTrue(frames[0].contains("\"status\":\"PRELIMINARY\""));
+        assertTrue(frames[1].startsWith("event: final\ndata: {"));
+        assertTrue(frames[1].contains("\"intent\":\"TimeDriftFailure\""));
+        assertTrue(frames[1].contains("\"status\":\"GUIDED\""));
+        assertTrue(frames[1].contains("\"correlationId\":\"corr-7\""));
+        verify(openSearchClient, times(1)).indexEvent(eq("CHAT_GUIDED"), anyMap());
+    }
+
+    @Test
+    void chatStreamEndsWithAnErrorEventWhenClassificationFailsAfterTheFirstEvent() throws Exception {
+        willAnswer(invocation -> {
+            Consumer<IntentResolution> interim = invocation.getArgument(2);
+            interim.accept(IntentResolution.single(new IntentResult("GenerateOTP", 0.76), "rule-based preview"));
+            throw new IllegalStateException("fan-out pool shut down");
+        }).given(intentService).classifyResolution(anyString(), anyBoolean(), any());
+        given(playbookService.actionsFor(anyString())).willReturn(List.of("Sync time"));
+
+        MvcResult started = mockMvc.perform(post("/api/chat/stream")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"query\":\"otp rejected after travel\",\"platform\":\"Android\",\"correlationId\":\"corr-8\"}"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String events = mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+
+        String[] frames = events.split("\n\n");
+        assertEquals(2, frames.length);
+        assertTrue(frames[0].startsWith("event: diagnosis\ndata: {"));
+        assertTrue(frames[1].startsWith("event: error\ndata: {"));
+        assertTrue(frames[1].contains("\"status\":\"ERROR\""));
+        assertTrue(frames[1].contains("\"correlationId\":\"corr-8\""));
+        verify(openSearchClient, never()).indexEvent(eq("CHAT_GUIDED"), anyMap());
+    }
+
+    @Test
+    void chatStreamAnswersLowInformationQueriesWithASingleFinalEvent() throws Exception {
+        MvcResult started = mockMvc.perform(post("/api/chat/stream")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"query\":\"??\",\"platform\":\"iOS\"}"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String events = mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+
+        assertTrue(events.startsWith("event: final\ndata: {"));
+        assertTrue(events.contains("\"status\":\"NEED_MORE_INFO\""));
+        verify(intentService, never()).classifyResolution(anyString(), anyBoolean(), any());
+    }
+
+    @Test
+    void classifyBatchStreamsOneLinePerQueryWithoutTelemetry() throws Exception {
+        given(properties.getIntentBatchMaxQueries()).willReturn(10);
+        willAnswer(invocation -> {
+            ObjIntConsumer<IntentResolution> sink = invocation.getArgument(1);
+            sink.accept(IntentResolution.single(new IntentResult("ConfigIssue", 0.84), "DeepPavlov fallback"), 1);
+            sink.accept(new IntentResolution(new IntentResult("PushApprovalTimeout", 0.9), new IntentResult("GenerateOTP", 0.86), "cloud-primary cross-verified by DeepPavlov"), 0);
+            return null;
+        }).given(intentService).classifyBatch(anyList(), any());
+
+        MvcResult started = mockMvc.perform(post("/api/classify/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"queries\":[\"push challenge timed out\",\"config mismatch\"]}"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON))
+                .andExpect(content().string(
+                        "{\"index\":1,\"intent\":\"ConfigIssue\",\"confidence\":0.84,\"secondaryIntent\":null,\"source\":\"DeepPavlov fallback\"}\n"
+                                + "{\"index\":0,\"intent\":\"PushApprovalTimeout\",\"confidence\":0.9,\"secondaryIntent\":\"GenerateOTP\",\"source\":\"cloud-primary cross-verified by DeepPavlov\"}\n"));
+        verify(openSearchClient, never()).indexEvent(anyString(), anyMap());
+    }
+
+    @Test
+    void classifyBatchRejectsOversizedBatch() throws Exception {
+        given(properties.getIntentBatchMaxQueries()).willReturn(1);
+
+        mockMvc.perform(post("/api/classify/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"queries\":[\"one\",\"two\"]}"))
+                .andExpect(status().isBadRequest());
+        verify(intentService, never()).classifyBatch(anyList(), any());
+    }
 }
@@ -0,0 +1,56 @@
+package com.aegis.agent.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.mock.http.client.MockClientHttpRequest;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.io.IOException;
+import java.net.URI;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class DownstreamRequestLimiterTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final DownstreamRequestLimiter limiter = new DownstreamRequestLimiter("jira", 2, 10, registry);
+    private final MockClientHttpRequest request = new MockClientHttpRequest(HttpMethod.GET, URI.create("http://jira.local/rest"));
+
+    @Test
+    void holdsAPermitUntilTheResponseIsClosed() throws IOException {
+        ClientHttpResponse first = send();
+        ClientHttpResponse second = send();
+
+        assertEquals(2, limiter.active());
+        assertEquals(1.0, registry.get("aegis.http.client.pool.utilization").tag("client", "jira").gauge().value());
+        assertThrows(ResourceAccessException.class, this::send);
+        assertEquals(1.0, registry.get("aegis.http.client.pool.rejected").tag("client", "jira").counter().count());
+
+        first.close();
+        first.close();
+
+        assertEquals(1, limiter.active());
+        send().close();
+        second.close();
+        assertEquals(0, limiter.active());
+        assertEquals(4, registry.get("aegis.http.client.pool.wait").tag("client", "jira").timer().count());
+    }
+
+    @Test
+    void releasesThePermitWhenTheRequestFails() {
+        assertThrows(IOException.class, () -> limiter.intercept(request, new byte[0], (req, body) -> {
+            throw new IOException("connection refused");
+        }));
+
+        assertEquals(0, limiter.active());
+    }
+
+    private ClientHttpResponse send() throws IOException {
+        return limiter.intercept(request, new byte[0], (req, body) -> new MockClientHttpResponse(new byte[0], HttpStatus.OK));
+    }
+}
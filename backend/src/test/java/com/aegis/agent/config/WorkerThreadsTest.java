@@ -0,0 +1,42 @@
+package com.aegis.agent.config;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ThreadFactory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WorkerThreadsTest {
+
+    @Test
+    void createsNamedDaemonPlatformThreadsByDefault() {
+        AegisProperties properties = new AegisProperties();
+
+        ThreadFactory factory = WorkerThreads.factory(properties, "intent-fan-out-");
+        Thread first = factory.newThread(() -> { });
+        Thread second = factory.newThread(() -> { });
+
+        assertFalse(WorkerThreads.isVirtual(properties));
+        assertEquals("intent-fan-out-1", first.getName());
+        assertEquals("intent-fan-out-2", second.getName());
+        assertTrue(first.isDaemon());
+    }
+
+    @Test
+    void virtualSettingOnlyTakesEffectFromJava21() throws InterruptedException {
+        AegisProperties properties = new AegisProperties();
+        properties.setVirtualThreadsEnabled(true);
+
+        assertEquals(Runtime.version().feature() >= 21, WorkerThreads.isVirtual(properties));
+        boolean[] ran = new boolean[1];
+        Thread thread = WorkerThreads.factory(properties, "intent-batch-").newThread(() -> ran[0] = true);
+        thread.start();
+        thread.join();
+
+        assertTrue(thread.getName().startsWith("intent-batch-"));
+        assertTrue(thread.isDaemon());
+        assertTrue(ran[0]);
+    }
+}
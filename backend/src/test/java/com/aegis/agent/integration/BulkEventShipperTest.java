@@ -0,0 +1,173 @@
+package com.aegis.agent.integration;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToIntFunction;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BulkEventShipperTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final List<List<Map<String, Object>>> batches = new CopyOnWriteArrayList<>();
+
+    @Test
+    void flushesFullBatchesWithoutWaitingForLinger() throws Exception {
+        CountDownLatch sent = new CountDownLatch(2);
+        BulkEventShipper shipper = shipper(100, 3, 60_000, BulkEventShipper.Overflow.DROP_NEWEST, batch -> {
+            batches.add(new ArrayList<>(batch));
+            sent.countDown();
+            return 0;
+        });
+        for (int i = 0; i < 6; i++) {
+            shipper.offer(event(i));
+        }
+
+        shipper.start();
+        assertTrue(sent.await(5, TimeUnit.SECONDS));
+        shipper.stop(5_000);
+
+        assertEquals(List.of(List.of(event(0), event(1), event(2)), List.of(event(3), event(4), event(5))), batches);
+        assertEquals(2, registry.get("aegis.opensearch.bulk.batch.size").summary().count());
+        assertEquals(6.0, registry.get("aegis.opensearch.bulk.batch.size").summary().totalAmount());
+        assertEquals(2, registry.get("aegis.opensearch.bulk.flush").timer().count());
+    }
+
+    @Test
+    void flushesPartialBatchAfterLinger() throws Exception {
+        CountDownLatch sent = new CountDownLatch(1);
+        BulkEventShipper shipper = shipper(100, 500, 50, BulkEventShipper.Overflow.DROP_NEWEST, batch -> {
+            batches.add(new ArrayList<>(batch));
+            sent.countDown();
+            return 0;
+        });
+        shipper.start();
+
+        shipper.offer(event(1));
+        shipper.offer(event(2));
+
+        assertTrue(sent.await(5, TimeUnit.SECONDS));
+        shipper.stop(5_000);
+        assertEquals(List.of(List.of(event(1), event(2))), batches);
+    }
+
+    @Test
+    void dropNewestRejectsEventsWhenFull() {
+        BulkEventShipper shipper = shipper(2, 10, 10, BulkEventShipper.Overflow.DROP_NEWEST, batch -> 0);
+
+        assertTrue(shipper.offer(event(1)));
+        assertTrue(shipper.offer(event(2)));
+        assertFalse(shipper.offer(event(3)));
+
+        assertEquals(2, shipper.queued());
+        assertEquals(1.0, dropped("overflow"));
+        assertEquals(2.0, registry.get("aegis.opensearch.queue.depth").gauge().value());
+    }
+
+    @Test
+    void dropOldestKeepsNewestEvents() throws Exception {
+        CountDownLatch sent = new CountDownLatch(1);
+        BulkEventShipper shipper = shipper(2, 10, 10, BulkEventShipper.Overflow.DROP_OLDEST, batch -> {
+            batches.add(new ArrayList<>(batch));
+            sent.countDown();
+            return 0;
+        });
+        for (int i = 1; i <= 5; i++) {
+            assertTrue(shipper.offer(event(i)));
+        }
+        assertEquals(3.0, dropped("overflow"));
+
+        shipper.start();
+        assertTrue(sent.await(5, TimeUnit.SECONDS));
+        shipper.stop(5_000);
+        assertEquals(List.of(List.of(event(4), event(5))), batches);
+    }
+
+    @Test
+    void blockGivesUpAfterTimeout() {
+        BulkEventShipper shipper = shipper(1, 10, 10, BulkEventShipper.Overflow.BLOCK, batch -> 0);
+        shipper.offer(event(1));
+
+        long started = System.nanoTime();
+        assertFalse(shipper.offer(event(2)));
+
+        assertTrue(System.nanoTime() - started >= TimeUnit.MILLISECONDS.toNanos(20));
+        assertEquals(1.0, dropped("overflow"));
+    }
+
+    @Test
+    void countsFailedAndRejectedDocuments() throws Exception {
+        CountDownLatch sent = new CountDownLatch(2);
+        BulkEventShipper shipper = shipper(100, 2, 10, BulkEventShipper.Overflow.DROP_NEWEST, batch -> {
+            sent.countDown();
+            if (batch.contains(event(1))) {
+                throw new IllegalStateException("connection refused");
+            }
+            return 1;
+        });
+        for (int i = 1; i <= 4; i++) {
+            shipper.offer(event(i));
+        }
+
+        shipper.start();
+        assertTrue(sent.await(5, TimeUnit.SECONDS));
+        shipper.stop(5_000);
+
+        assertEquals(2.0, dropped("flush-failed"));
+        assertEquals(1.0, dropped("rejected"));
+    }
+
+    @Test
+    void stopShipsQueuedEventsWithoutWaitingForLinger() {
+        BulkEventShipper shipper = shipper(100, 500, 60_000, BulkEventShipper.Overflow.DROP_NEWEST, batch -> {
+            batches.add(new ArrayList<>(batch));
+            return 0;
+        });
+        shipper.start();
+        shipper.offer(event(1));
+
+        long started = System.nanoTime();
+        shipper.stop(5_000);
+
+        assertTrue(System.nanoTime() - started < TimeUnit.SECONDS.toNanos(5));
+        assertEquals(List.of(List.of(event(1))), batches);
+        assertEquals(0.0, dropped("shutdown"));
+    }
+
+    @Test
+    void parsesOverflowPolicies() {
+        assertEquals(BulkEventShipper.Overflow.DROP_OLDEST, BulkEventShipper.Overflow.parse("drop-oldest"));
+        assertEquals(BulkEventShipper.Overflow.DROP_NEWEST, BulkEventShipper.Overflow.parse(" DROP_NEWEST "));
+        assertEquals(BulkEventShipper.Overflow.BLOCK, BulkEventShipper.Overflow.parse("block"));
+        assertEquals(BulkEventShipper.Overflow.DROP_OLDEST, BulkEventShipper.Overflow.parse(""));
+        assertThrows(IllegalArgumentException.class, () -> BulkEventShipper.Overflow.parse("retry"));
+    }
+
+    private BulkEventShipper shipper(
+            int capacity,
+            int maxActions,
+            long lingerMs,
+            BulkEventShipper.Overflow overflow,
+            ToIntFunction<List<Map<String, Object>>> sender
+    ) {
+        return new BulkEventShipper(capacity, maxActions, lingerMs, overflow, 20, sender, registry);
+    }
+
+    private double dropped(String reason) {
+        return registry.get("aegis.opensearch.events.dropped").tag("reason", reason).counter().count();
+    }
+
+    private static Map<String, Object> event(int id) {
+        return Map.of("correlationId", "corr-" + id);
+    }
+}
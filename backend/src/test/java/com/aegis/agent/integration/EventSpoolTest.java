@@ -0,0 +1,189 @@
+package com.aegis.agent.integration;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EventSpoolTest {
+
+    @TempDir
+    Path directory;
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @Test
+    void replaysEventsInOrderAcrossSegments() throws Exception {
+        EventSpool spool = new EventSpool(directory, 128, 8, registry);
+        List<String> events = events(20);
+        spool.append(events);
+
+        assertEquals(20, spool.pendingEvents());
+        assertTrue(segmentFiles() > 1);
+
+        List<String> replayed = drain(spool, 7);
+
+        assertEquals(events, replayed);
+        assertFalse(spool.hasBacklog());
+        assertEquals(1, segmentFiles());
+        assertEquals(20.0, registry.get("aegis.opensearch.events.replayed").counter().count());
+        spool.close();
+    }
+
+    @Test
+    void uncommittedBatchIsReadAgain() throws Exception {
+        EventSpool spool = new EventSpool(directory, 4096, 4, registry);
+        spool.append(events(3));
+
+        EventSpool.Batch first = spool.peek(2);
+        EventSpool.Batch again = spool.peek(2);
+
+        assertEquals(first.documents(), again.documents());
+        spool.commit(again);
+        assertEquals(List.of("{\"n\":2}"), spool.peek(10).documents());
+        spool.close();
+    }
+
+    @Test
+    void pendingEventsSurviveRestart() throws Exception {
+        EventSpool spool = new EventSpool(directory, 64, 8, registry);
+        spool.append(events(12));
+        spool.commit(spool.peek(5));
+        spool.close();
+
+        EventSpool reopened = new EventSpool(directory, 64, 8, new SimpleMeterRegistry());
+        assertEquals(7, reopened.pendingEvents());
+        reopened.append(List.of("{\"n\":99}"));
+
+        List<String> expected = new ArrayList<>(events(12).subList(5, 12));
+        expected.add("{\"n\":99}");
+        assertEquals(expected, drain(reopened, 4));
+        reopened.close();
+    }
+
+    @Test
+    void evictsOldestSegmentWhenFull() throws Exception {
+        EventSpool spool = new EventSpool(directory, 64, 2, registry);
+        // Five of these small documents fill a 64-byte segment, so the first five are evicted.
+        spool.append(events(15));
+
+        assertEquals(2, segmentFiles());
+        assertEquals(128, spool.diskBytes());
+        assertEquals(5.0, registry.get("aegis.opensearch.events.dropped").tag("reason", "spool-evicted").counter().count());
+        assertEquals(events(15).subList(5, 15), drain(spool, 100));
+        spool.close();
+    }
+
+    @Test
+    void skipsDocumentsLargerThanASegment() throws Exception {
+        EventSpool spool = new EventSpool(directory, 64, 2, registry);
+        spool.append(List.of("x".repeat(100), "{\"n\":1}"));
+
+        assertEquals(1, spool.pendingEvents());
+        assertEquals(1.0, registry.get("aegis.opensearch.events.dropped").tag("reason", "spool-oversized").counter().count());
+        spool.close();
+    }
+
+    @Test
+    void settlesBatchItemByItem() throws Exception {
+        EventSpool spool = new EventSpool(directory, 4096, 4, registry);
+        spool.append(events(4));
+
+        EventSpool.Batch batch = spool.peek(4);
+        spool.commit(batch, bits(1), bits(2));
+
+        assertEquals(1, spool.pendingEvents());
+        assertEquals(2.0, registry.get("aegis.opensearch.events.replayed").counter().count());
+        assertEquals(1.0, registry.get("aegis.opensearch.events.dropped").tag("reason", "spool-rejected").counter().count());
+        assertEquals(List.of("{\"n\":2}"), spool.peek(10).documents());
+        spool.close();
+    }
+
+    @Test
+    void batchEvictedWhileInFlightIsCountedOnce() throws Exception {
+        EventSpool spool = new EventSpool(directory, 64, 2, registry);
+        spool.append(events(10));
+        EventSpool.Batch batch = spool.peek(3);
+
+        // Fills a third segment, so the one the batch was read from is evicted while it is out.
+        spool.append(events(5));
+        spool.commit(batch, new BitSet(), bits(2));
+
+        assertEquals(2.0, registry.get("aegis.opensearch.events.replayed").counter().count());
+        assertEquals(3.0, registry.get("aegis.opensearch.events.dropped").tag("reason", "spool-evicted").counter().count());
+        assertEquals(10, spool.pendingEvents());
+        spool.close();
+    }
+
+    @Test
+    void releasedBatchStaysPending() throws Exception {
+        EventSpool spool = new EventSpool(directory, 4096, 4, registry);
+        spool.append(events(3));
+
+        spool.release(spool.peek(2));
+
+        assertEquals(3, spool.pendingEvents());
+        assertEquals(0.0, registry.get("aegis.opensearch.events.replayed").counter().count());
+        assertEquals(events(3), drain(spool, 10));
+        spool.close();
+    }
+
+    @Test
+    void recoversSegmentsWrittenWithAnotherSize() throws Exception {
+        EventSpool spool = new EventSpool(directory, 128, 8, registry);
+        spool.append(events(6));
+        spool.close();
+        Files.write(directory.resolve("events-00000000000000000099.spool"), new byte[3]);
+
+        EventSpool reopened = new EventSpool(directory, 4096, 8, new SimpleMeterRegistry());
+
+        assertEquals(6, reopened.pendingEvents());
+        assertEquals(events(6), drain(reopened, 4));
+        assertEquals(1, segmentFiles());
+        reopened.close();
+    }
+
+    private static BitSet bits(int... indexes) {
+        BitSet bits = new BitSet();
+        for (int index : indexes) {
+            bits.set(index);
+        }
+        return bits;
+    }
+
+    private static List<String> drain(EventSpool spool, int batchSize) {
+        List<String> replayed = new ArrayList<>();
+        EventSpool.Batch batch;
+        while ((batch = spool.peek(batchSize)) != null) {
+            replayed.addAll(batch.documents());
+            spool.commit(batch);
+        }
+        assertNull(spool.peek(batchSize));
+        return replayed;
+    }
+
+    private long segmentFiles() throws Exception {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+
+    private static List<String> events(int count) {
+        List<String> events = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            events.add("{\"n\":" + i + "}");
+        }
+        return events;
+    }
+}
@@ -0,0 +1,121 @@
+package com.aegis.agent.integration;
+
+import com.aegis.agent.config.AegisProperties;
+import com.aegis.agent.service.SensitiveDataSanitizer;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class OpenSearchClientTest {
+
+    private static final String ACCEPTED = "{\"errors\":false,\"items\":[]}";
+
+    @TempDir
+    Path spoolDirectory;
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final AtomicInteger status = new AtomicInteger(200);
+    private final AtomicReference<String> body = new AtomicReference<>(ACCEPTED);
+    private final AtomicInteger requests = new AtomicInteger();
+    private HttpServer server;
+    private OpenSearchClient client;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            requests.incrementAndGet();
+            exchange.getRequestBody().readAllBytes();
+            byte[] response = body.get().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(status.get(), response.length);
+            try (OutputStream output = exchange.getResponseBody()) {
+                output.write(response);
+            }
+        });
+        server.start();
+
+        AegisProperties properties = new AegisProperties();
+        properties.setOpenSearchEnabled(true);
+        properties.setOpenSearchUrl("http://127.0.0.1:" + server.getAddress().getPort());
+        properties.setOpenSearchSpoolDirectory(spoolDirectory.toString());
+        properties.setOpenSearchSpoolSegmentBytes(4096);
+        properties.setPseudonymSecret("test-secret");
+        client = new OpenSearchClient(properties, new RestTemplate(), new SensitiveDataSanitizer(properties, registry), registry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        client.stopShipping();
+        server.stop(0);
+    }
+
+    @Test
+    void spoolsBatchWhenOpenSearchAnswers5xx() {
+        status.set(503);
+        body.set("{\"error\":\"cluster unavailable\"}");
+
+        assertEquals(0, client.sendBulk(List.of(event(1), event(2))));
+        assertEquals(2.0, spooledEvents());
+
+        // With a backlog, later batches go straight to the spool without another request.
+        client.sendBulk(List.of(event(3)));
+        assertEquals(1, requests.get());
+        assertEquals(3.0, spooledEvents());
+
+        status.set(200);
+        body.set(ACCEPTED);
+        client.replaySpool();
+
+        assertEquals(0.0, spooledEvents());
+        assertEquals(3.0, registry.get("aegis.opensearch.events.replayed").counter().count());
+    }
+
+    @Test
+    void replayDropsRejectedItemsAndKeepsThrottledOnes() {
+        status.set(503);
+        client.sendBulk(List.of(event(1), event(2), event(3)));
+
+        status.set(200);
+        body.set("""
+                {"errors":true,"items":[
+                {"index":{"status":201}},
+                {"index":{"status":400,"error":{"type":"mapper_parsing_exception"}}},
+                {"index":{"status":429,"error":{"type":"es_rejected_execution_exception"}}}]}""");
+        client.replaySpool();
+
+        assertEquals(1.0, spooledEvents());
+        assertEquals(1.0, registry.get("aegis.opensearch.events.replayed").counter().count());
+        assertEquals(1.0, registry.get("aegis.opensearch.events.dropped").tag("reason", "spool-rejected").counter().count());
+
+        body.set(ACCEPTED);
+        client.replaySpool();
+
+        assertEquals(0.0, spooledEvents());
+        assertEquals(2.0, registry.get("aegis.opensearch.events.replayed").counter().count());
+    }
+
+    private double spooledEvents() {
+        return registry.get("aegis.opensearch.spool.events").gauge().value();
+    }
+
+    private static Map<String, Object> event(int n) {
+        return Map.of("eventType", "chat_request", "n", n);
+    }
+}
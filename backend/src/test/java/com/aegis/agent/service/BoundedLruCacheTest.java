@@ -0,0 +1,52 @@
+package com.aegis.agent.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class BoundedLruCacheTest {
+
+    private final long[] now = {0};
+
+    @Test
+    void evictsLeastRecentlyUsedEntryWhenFull() {
+        BoundedLruCache<String, String> cache = new BoundedLruCache<>(2, 0, () -> now[0]);
+        cache.put("a", "1");
+        cache.put("b", "2");
+        cache.get("a");
+        cache.put("c", "3");
+
+        assertNull(cache.get("b"));
+        assertEquals("1", cache.get("a"));
+        assertEquals("3", cache.get("c"));
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    void expiresEntriesOnceTheirTtlHasPassed() {
+        BoundedLruCache<String, String> cache = new BoundedLruCache<>(2, 100, () -> now[0]);
+        cache.put("a", "1");
+
+        now[0] = 99;
+        assertEquals("1", cache.get("a"));
+
+        now[0] = 100;
+        assertNull(cache.get("a"));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void computeIfAbsentLoadsOnceAndCountsHitsAndMisses() {
+        BoundedLruCache<String, String> cache = new BoundedLruCache<>(2, 0, () -> now[0]);
+        int[] loads = {0};
+
+        cache.computeIfAbsent("a", key -> key + ++loads[0]);
+        assertEquals("a1", cache.computeIfAbsent("a", key -> key + ++loads[0]));
+
+        assertEquals(1, loads[0]);
+        assertEquals(1, cache.hits());
+        assertEquals(1, cache.misses());
+        assertEquals(0.5, cache.hitRatio());
+    }
+}
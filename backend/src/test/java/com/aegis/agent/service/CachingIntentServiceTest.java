@@ -0,0 +1,145 @@
+package com.aegis.agent.service;
+
+import com.aegis.agent.config.AegisProperties;
+import com.aegis.agent.domain.IntentResolution;
+import com.aegis.agent.domain.IntentResult;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.DefaultResourceLoader;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class CachingIntentServiceTest {
+
+    private final AegisProperties properties = new AegisProperties();
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final List<String> delegateCalls = new ArrayList<>();
+    private String nextSource = "cloud-primary";
+    private boolean nextPartial;
+    private boolean localModelLoaded;
+
+    private final LocalIntentProvider localIntentProvider = new LocalIntentProvider(properties, new DefaultResourceLoader(), registry) {
+        @Override
+        public boolean isAvailable() {
+            return localModelLoaded;
+        }
+    };
+
+    private final IntentRoutingService routing = new IntentRoutingService(
+            new DeepPavlovIntentProvider(properties, null, new ObjectMapper(), registry),
+            localIntentProvider,
+            new CloudIntentProvider(properties, null, new ObjectMapper(), registry),
+            new RuleBasedIntentService(),
+            properties
+    ) {
+        @Override
+        public IntentResolution classifyResolution(String query, boolean cloudOnly) {
+            delegateCalls.add(query);
+            IntentResolution resolution = IntentResolution.single(new IntentResult("GenerateOTP", 0.9), nextSource);
+            return nextPartial ? resolution.asPartial() : resolution;
+        }
+    };
+
+    @AfterEach
+    void tearDown() {
+        routing.shutdown();
+    }
+
+    @Test
+    void fingerprintIgnoresCasePunctuationAndFillerWords() {
+        assertEquals("otp invalid android", QueryFingerprint.of("OTP invalid on Android!!"));
+        assertEquals("otp invalid android", QueryFingerprint.of("  hi, my otp is INVALID on android again... please help "));
+        assertEquals("otp invalid android", QueryFingerprint.of("otp otp invalid, android"));
+        assertEquals("otp not working", QueryFingerprint.of("OTP not working"));
+        assertEquals("otp working", QueryFingerprint.of("otp working"));
+        assertEquals("", QueryFingerprint.of("  please help!! "));
+    }
+
+    @Test
+    void fingerprintKeepsNegationWithTheWordItNegates() {
+        assertNotEquals(QueryFingerprint.of("push not working, otp fine"), QueryFingerprint.of("otp not working, push fine"));
+        assertNotEquals(QueryFingerprint.of("otp not invalid"), QueryFingerprint.of("not otp invalid"));
+    }
+
+    @Test
+    void repeatedQueriesSkipTheProviders() {
+        properties.setCloudIntentEnabled(true);
+        properties.setDeeppavlovEnabled(true);
+        CachingIntentService service = new CachingIntentService(routing, localIntentProvider, properties, registry);
+
+        IntentResolution first = service.classifyResolution("OTP invalid on Android");
+        IntentResolution second = service.classifyResolution("otp invalid on android, please help");
+
+        assertSame(first, second);
+        assertEquals(List.of("OTP invalid on Android"), delegateCalls);
+        assertEquals(1.0, registry.get("aegis.intent.cache.requests").tag("result", "hit").functionCounter().count());
+        assertEquals(2.0, registry.get("aegis.intent.cache.saved.calls").counter().count());
+        assertEquals(0.5, registry.get("aegis.intent.cache.hit.ratio").gauge().value());
+        assertEquals(1, registry.get("aegis.intent.classify").tag("cache", "hit").timer().count());
+        assertEquals(1, registry.get("aegis.intent.classify").tag("cache", "miss").timer().count());
+    }
+
+    @Test
+    void cacheHitsDoNotCountDeepPavlovWhileTheLocalModelReplacesIt() {
+        properties.setCloudIntentEnabled(true);
+        properties.setDeeppavlovEnabled(true);
+        localModelLoaded = true;
+        CachingIntentService service = new CachingIntentService(routing, localIntentProvider, properties, registry);
+
+        service.classifyResolution("otp invalid");
+        service.classifyResolution("otp invalid");
+
+        assertEquals(1.0, registry.get("aegis.intent.cache.saved.calls").counter().count());
+    }
+
+    @Test
+    void retryAttemptsBypassTheCache() {
+        CachingIntentService service = new CachingIntentService(routing, localIntentProvider, properties, registry);
+
+        service.classifyResolution("otp invalid");
+        service.classifyResolution("otp invalid", true);
+        service.classifyResolution("otp invalid", true);
+
+        assertEquals(3, delegateCalls.size());
+    }
+
+    @Test
+    void ruleFallbackAnswersAreNotCached() {
+        nextSource = "rule-based fallback";
+        CachingIntentService service = new CachingIntentService(routing, localIntentProvider, properties, registry);
+
+        service.classifyResolution("otp invalid");
+        service.classifyResolution("otp invalid");
+
+        assertEquals(2, delegateCalls.size());
+    }
+
+    @Test
+    void answersMissingAConfiguredProviderAreNotCached() {
+        nextPartial = true;
+        CachingIntentService service = new CachingIntentService(routing, localIntentProvider, properties, registry);
+
+        service.classifyResolution("otp invalid");
+        service.classifyResolution("otp invalid");
+
+        assertEquals(2, delegateCalls.size());
+    }
+
+    @Test
+    void zeroSizeDisablesTheCache() {
+        properties.setIntentCacheSize(0);
+        CachingIntentService service = new CachingIntentService(routing, localIntentProvider, properties, registry);
+
+        service.classifyResolution("otp invalid");
+        service.classifyResolution("otp invalid");
+
+        assertEquals(2, delegateCalls.size());
+    }
+}
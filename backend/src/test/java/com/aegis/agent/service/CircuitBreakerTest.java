@@ -0,0 +1,97 @@
+package com.aegis.agent.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CircuitBreakerTest {
+
+    private long now;
+    private final CircuitBreaker breaker = new CircuitBreaker(3, 1_000, 100, 2_000, () -> now);
+
+    @Test
+    void opensAfterConsecutiveFailuresAndRefusesCalls() {
+        breaker.onFailure();
+        breaker.onFailure();
+        breaker.onSuccess(millis(10));
+        breaker.onFailure();
+        breaker.onFailure();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+
+        breaker.onFailure();
+
+        assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+        assertFalse(breaker.tryAcquire());
+    }
+
+    @Test
+    void halfOpenAllowsOneTrialAndClosesOnSuccess() {
+        open();
+        now += millis(1_000);
+
+        assertTrue(breaker.tryAcquire());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.state());
+        assertFalse(breaker.tryAcquire());
+
+        breaker.onSuccess(millis(10));
+
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+        assertTrue(breaker.tryAcquire());
+    }
+
+    @Test
+    void failedTrialReopensForAnotherPeriod() {
+        open();
+        now += millis(1_000);
+        assertTrue(breaker.tryAcquire());
+
+        breaker.onFailure();
+
+        assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+        now += millis(999);
+        assertFalse(breaker.tryAcquire());
+    }
+
+    @Test
+    void timeoutFollowsLatencyPercentileWithinBounds() {
+        assertEquals(2_000, breaker.timeoutMillis());
+
+        for (int i = 0; i < CircuitBreaker.MIN_SAMPLES; i++) {
+            breaker.onSuccess(millis(150));
+        }
+        assertEquals(300, breaker.timeoutMillis());
+
+        for (int i = 0; i < 2 * CircuitBreaker.WINDOW; i++) {
+            breaker.onSuccess(millis(10));
+        }
+        assertEquals(100, breaker.timeoutMillis());
+    }
+
+    @Test
+    void callsSlowerThanTheTimeoutCountAsFailures() {
+        for (int i = 0; i < 200; i++) {
+            breaker.onSuccess(millis(100));
+        }
+        assertEquals(200, breaker.timeoutMillis());
+
+        for (int i = 0; i < 3; i++) {
+            breaker.onSuccess(millis(250));
+        }
+
+        assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+    }
+
+    private void open() {
+        for (int i = 0; i < 3; i++) {
+            breaker.onFailure();
+        }
+    }
+
+    private static long millis(long value) {
+        return TimeUnit.MILLISECONDS.toNanos(value);
+    }
+}
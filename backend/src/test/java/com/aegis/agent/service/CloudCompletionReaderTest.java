@@ -0,0 +1,70 @@
+package com.aegis.agent.service;
+
+import com.aegis.agent.domain.IntentResult;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CloudCompletionReaderTest {
+
+    private final CloudCompletionReader reader = new CloudCompletionReader(new ObjectMapper());
+
+    @Test
+    void readsFirstChoiceContentAndBilledTokens() throws IOException {
+        CloudCompletionReader.Completion completion = reader.read(body("""
+                {"id":"chatcmpl-1","model":"gpt-4o-mini","choices":[
+                  {"index":0,"message":{"role":"assistant","content":"{\\"reason\\":\\"x\\",\\"intent\\":\\"GenerateOTP\\",\\"confidence\\":0.93}"}},
+                  {"index":1,"message":{"role":"assistant","content":"{\\"intent\\":\\"ConfigIssue\\",\\"confidence\\":0.5}"}}
+                ],"usage":{"prompt_tokens":400,"completion_tokens":20,"total_tokens":420,"prompt_tokens_details":{"cached_tokens":0}}}
+                """));
+
+        assertEquals(new IntentResult("GenerateOTP", 0.93), completion.intent());
+        assertEquals(420, completion.totalTokens());
+    }
+
+    @Test
+    void stopsReadingOnceContentAndUsageAreKnown() throws IOException {
+        CloudCompletionReader.Completion completion = reader.read(body("""
+                {"choices":[{"message":{"content":"{\\"intent\\":\\"ConfigIssue\\",\\"confidence\\":0.8}"}}],
+                 "usage":{"total_tokens":12},"system_fingerprint": this is never parsed
+                """));
+
+        assertEquals(new IntentResult("ConfigIssue", 0.8), completion.intent());
+        assertEquals(12, completion.totalTokens());
+    }
+
+    @Test
+    void concatenatesContentPartsAndReportsMissingUsage() throws IOException {
+        CloudCompletionReader.Completion completion = reader.read(body("""
+                {"choices":[{"message":{"content":[{"type":"text","text":"{\\"intent\\":\\"Passkey"},{"type":"text","text":"RegistrationFailure\\",\\"confidence\\":\\"0.7\\"}"}]}}]}
+                """));
+
+        assertEquals(new IntentResult("PasskeyRegistrationFailure", 0.7), completion.intent());
+        assertEquals(-1, completion.totalTokens());
+    }
+
+    @Test
+    void unreadableAnswerYieldsNoIntent() throws IOException {
+        assertNull(reader.read(body("{\"choices\":[{\"message\":{\"content\":\"GenerateOTP, probably\"}}]}")).intent());
+        assertNull(reader.read(body("{\"choices\":[]}")).intent());
+        assertNull(reader.read(body("")).intent());
+        assertEquals(new IntentResult("Unknown", 0.0), reader.readAnswer("{\"reason\":\"no idea\"}"));
+    }
+
+    @Test
+    void malformedResponseFails() {
+        assertThrows(IOException.class, () -> reader.read(body("{\"choices\":[{\"message\":")));
+    }
+
+    private static InputStream body(String json) {
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,37 @@
+package com.aegis.agent.service;
+
+import com.aegis.agent.config.AegisProperties;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class CloudIntentProviderTest {
+
+    @Test
+    void unencodableQueryIsNotSentAndDoesNotTripTheBreaker() {
+        AegisProperties properties = new AegisProperties();
+        properties.setCloudIntentEnabled(true);
+        properties.setCloudIntentApiKey("test-key");
+        properties.setCloudIntentUrl("http://127.0.0.1:1/v1/chat/completions");
+        AtomicInteger requests = new AtomicInteger();
+        RestTemplate restTemplate = new RestTemplate();
+        restTemplate.getInterceptors().add((request, body, execution) -> {
+            requests.incrementAndGet();
+            return execution.execute(request, body);
+        });
+        CloudIntentProvider provider = new CloudIntentProvider(properties, restTemplate, new ObjectMapper(), new SimpleMeterRegistry());
+
+        for (int i = 0; i < 2 * properties.getIntentBreakerFailureThreshold(); i++) {
+            assertNull(provider.classify("otp rejected \uD83D"));
+        }
+
+        assertEquals(0, requests.get());
+        assertEquals("closed", provider.circuitState());
+    }
+}
@@ -0,0 +1,45 @@
+package com.aegis.agent.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CloudRequestTemplateTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final CloudRequestTemplate template = CloudRequestTemplate.of(objectMapper, "gpt-4o-mini", "Classify \"this\".");
+
+    @Test
+    void splicesEscapedQueryIntoSerializedBody() throws IOException {
+        String query = "OTP \"invalid\" \\ after\nupdate\t✓ ключ \u0001";
+
+        JsonNode body = objectMapper.readTree(render(query));
+
+        assertEquals("gpt-4o-mini", body.path("model").asText());
+        assertEquals(0.0, body.path("temperature").asDouble(), 0.0);
+        assertEquals("json_object", body.path("response_format").path("type").asText());
+        assertEquals("system", body.path("messages").path(0).path("role").asText());
+        assertEquals("Classify \"this\".", body.path("messages").path(0).path("content").asText());
+        assertEquals("user", body.path("messages").path(1).path("role").asText());
+        assertEquals(query, body.path("messages").path(1).path("content").asText());
+    }
+
+    @Test
+    void contentLengthMatchesWrittenBytes() throws IOException {
+        byte[] encoded = CloudRequestTemplate.encodeQuery("passkey fails — «error 0x80090016»");
+
+        assertEquals(template.contentLength(encoded), render("passkey fails — «error 0x80090016»").length);
+        assertEquals("", objectMapper.readTree(render(null)).path("messages").path(1).path("content").asText("missing"));
+    }
+
+    private byte[] render(String query) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        template.writeTo(body, CloudRequestTemplate.encodeQuery(query));
+        return body.toByteArray();
+    }
+}
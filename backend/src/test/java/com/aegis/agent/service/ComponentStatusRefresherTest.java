@@ -0,0 +1,151 @@
+package com.aegis.agent.service;
+
+import com.aegis.agent.api.dto.ComponentStatusItem;
+import com.aegis.agent.api.dto.ComponentStatusResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ComponentStatusRefresherTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private ComponentStatusRefresher refresher;
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        if (refresher != null) {
+            refresher.stop();
+        }
+    }
+
+    @Test
+    void probesRunInParallelAndSlowProbesAreReportedDownAtTheDeadline() {
+        refresher = refresher(300, List.of(
+                probe("deeppavlov", () -> sleep(150), () -> "closed"),
+                probe("opensearch", () -> sleep(150), null),
+                probe("jira", () -> false, null),
+                probe("email", () -> {
+                    throw new IllegalStateException("no route");
+                }, null),
+                probe("smtp-hang", () -> {
+                    release.await();
+                    return true;
+                }, null)
+        ));
+
+        long started = System.nanoTime();
+        refresher.refresh();
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+
+        ComponentStatusResponse snapshot = refresher.snapshot();
+        assertTrue(elapsedMs < 1_000, "refresh took " + elapsedMs + "ms");
+        assertEquals("UP", status(snapshot, "deeppavlov"));
+        assertEquals("closed", snapshot.getComponents().get("deeppavlov").getCircuit());
+        assertEquals("UP", status(snapshot, "opensearch"));
+        assertNull(snapshot.getComponents().get("opensearch").getCircuit());
+        assertEquals("DOWN", status(snapshot, "jira"));
+        assertEquals("DOWN", status(snapshot, "email"));
+        assertEquals("DOWN", status(snapshot, "smtp-hang"));
+        assertEquals(1, meterRegistry.get("aegis.component.probe").tags("component", "smtp-hang", "outcome", "timeout").timer().count());
+        assertEquals(1, meterRegistry.get("aegis.component.probe").tags("component", "deeppavlov", "outcome", "up").timer().count());
+    }
+
+    @Test
+    void readersSeeUnknownUntilTheFirstRefreshAndSnapshotsAreImmutable() {
+        refresher = refresher(1_000, List.of(probe("jira", () -> true, null)));
+
+        ComponentStatusResponse initial = refresher.snapshot();
+        assertEquals("UNKNOWN", status(initial, "jira"));
+        assertEquals("https://jira.invalid", initial.getComponents().get("jira").getUrl());
+
+        refresher.refresh();
+
+        ComponentStatusResponse refreshed = refresher.snapshot();
+        assertEquals("UNKNOWN", status(initial, "jira"));
+        assertEquals("UP", status(refreshed, "jira"));
+        assertSame(refreshed, refresher.snapshot());
+        assertThrows(UnsupportedOperationException.class,
+                () -> refreshed.getComponents().put("jira", new ComponentStatusItem("DOWN", null, null)));
+    }
+
+    @Test
+    void aCancelledProbeThatReturnsLateIsCountedOnlyAsATimeout() throws InterruptedException {
+        List<Thread> probeThreads = new CopyOnWriteArrayList<>();
+        ThreadFactory threads = runnable -> {
+            Thread thread = new Thread(runnable);
+            probeThreads.add(thread);
+            return thread;
+        };
+        refresher = new ComponentStatusRefresher(List.of(probe("jira", () -> {
+            // Ignores the cancellation interrupt and answers once released, after the deadline has passed.
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    release.await();
+                    break;
+                } catch (InterruptedException ex) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            return true;
+        }, null)), 0, 100, threads, meterRegistry);
+
+        refresher.refresh();
+        release.countDown();
+        refresher.stop();
+        for (Thread thread : probeThreads) {
+            thread.join(2_000);
+        }
+
+        assertEquals("DOWN", status(refresher.snapshot(), "jira"));
+        assertEquals(1, meterRegistry.get("aegis.component.probe").tags("component", "jira").timers().size());
+        assertEquals(1, meterRegistry.get("aegis.component.probe").tags("component", "jira", "outcome", "timeout").timer().count());
+    }
+
+    private ComponentStatusRefresher refresher(long probeTimeoutMs, List<ComponentStatusRefresher.Probe> probes) {
+        return new ComponentStatusRefresher(probes, 0, probeTimeoutMs, Executors.defaultThreadFactory(), meterRegistry);
+    }
+
+    private static ComponentStatusRefresher.Probe probe(String name, CheckedHealth healthy, Supplier<String> circuit) {
+        return new ComponentStatusRefresher.Probe(name, "https://" + name + ".invalid", name, () -> {
+            try {
+                return healthy.check();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }, circuit);
+    }
+
+    private static boolean sleep(long millis) throws InterruptedException {
+        Thread.sleep(millis);
+        return true;
+    }
+
+    private static String status(ComponentStatusResponse snapshot, String component) {
+        return snapshot.getComponents().get(component).getStatus();
+    }
+
+    private interface CheckedHealth {
+        boolean check() throws InterruptedException;
+    }
+}
@@ -0,0 +1,147 @@
+package com.aegis.agent.service;
+
+import com.aegis.agent.domain.IntentResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DeepPavlovBatcherTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final List<List<String>> requests = new CopyOnWriteArrayList<>();
+    private final CircuitBreaker breaker = new CircuitBreaker(2, 60_000, 1, 1_000, System::nanoTime);
+    private DeepPavlovBatcher batcher;
+
+    @AfterEach
+    void tearDown() {
+        batcher.stop();
+    }
+
+    @Test
+    void coalescesConcurrentQueriesAndReturnsEachCallerItsOwnPrediction() {
+        batcher = new DeepPavlovBatcher(8, 200, 2, texts -> {
+            requests.add(texts);
+            List<IntentResult> results = new ArrayList<>();
+            for (String text : texts) {
+                results.add(new IntentResult(text.toUpperCase(), 0.9));
+            }
+            return results;
+        }, breaker, registry);
+        batcher.start();
+
+        List<CompletableFuture<IntentResult>> futures = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            futures.add(batcher.submit("q" + i));
+        }
+
+        for (int i = 0; i < 5; i++) {
+            assertEquals("Q" + i, futures.get(i).join().intent());
+        }
+        assertEquals(List.of(List.of("q0", "q1", "q2", "q3", "q4")), requests);
+        assertEquals(5.0, registry.get("aegis.deeppavlov.batch.size").summary().totalAmount());
+        assertEquals(5, registry.get("aegis.deeppavlov.batch.queue.delay").timer().count());
+    }
+
+    @Test
+    void splitsBatchesAtTheMaximumSize() {
+        batcher = new DeepPavlovBatcher(2, 200, 1, texts -> {
+            requests.add(texts);
+            return texts.stream().map(text -> new IntentResult(text, 0.5)).toList();
+        }, breaker, registry);
+        batcher.start();
+
+        List<CompletableFuture<IntentResult>> futures = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            futures.add(batcher.submit("q" + i));
+        }
+        futures.forEach(CompletableFuture::join);
+
+        assertTrue(requests.stream().allMatch(batch -> batch.size() <= 2));
+        assertEquals(5, requests.stream().mapToInt(List::size).sum());
+    }
+
+    @Test
+    void failedRequestOrMismatchedPredictionsFailEveryCallerInTheBatch() {
+        batcher = new DeepPavlovBatcher(8, 50, 1, texts -> List.of(new IntentResult("GenerateOTP", 0.9)), breaker, registry);
+        batcher.start();
+
+        CompletableFuture<IntentResult> first = batcher.submit("a");
+        CompletableFuture<IntentResult> second = batcher.submit("b");
+
+        assertThrows(CompletionException.class, first::join);
+        assertThrows(CompletionException.class, second::join);
+    }
+
+    @Test
+    void recordsOneBreakerOutcomePerRequestRatherThanPerCaller() {
+        batcher = new DeepPavlovBatcher(3, 2_000, 1, texts -> {
+            requests.add(texts);
+            throw new IllegalStateException("inference server unavailable");
+        }, breaker, registry);
+        batcher.start();
+
+        List<CompletableFuture<IntentResult>> futures = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            futures.add(batcher.submit("q" + i));
+        }
+        futures.forEach(future -> assertThrows(CompletionException.class, future::join));
+
+        // Three callers, one request: a single failure against a threshold of two.
+        assertEquals(1, requests.size());
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+
+        assertThrows(CompletionException.class, batcher.submit("q3")::join);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+    }
+
+    @Test
+    void withdrawnQueriesAreLeftOutOfTheRequest() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        batcher = new DeepPavlovBatcher(8, 0, 1, texts -> {
+            requests.add(texts);
+            try {
+                release.await();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            return texts.stream().map(text -> new IntentResult(text, 0.9)).toList();
+        }, breaker, registry);
+        batcher.start();
+
+        CompletableFuture<IntentResult> first = batcher.submit("a");
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+        while (requests.isEmpty() && System.nanoTime() < deadline) {
+            Thread.onSpinWait();
+        }
+        CompletableFuture<IntentResult> withdrawn = batcher.submit("b");
+        CompletableFuture<IntentResult> kept = batcher.submit("c");
+        batcher.withdraw(withdrawn);
+        release.countDown();
+
+        assertEquals(new IntentResult("a", 0.9), first.join());
+        assertEquals(new IntentResult("c", 0.9), kept.join());
+        assertTrue(withdrawn.isCancelled());
+        assertEquals(List.of(List.of("a"), List.of("c")), requests);
+    }
+
+    @Test
+    void rejectsQueriesOnceStopped() {
+        batcher = new DeepPavlovBatcher(8, 5, 1, texts -> List.of(), breaker, registry);
+        batcher.start();
+        batcher.stop();
+
+        assertTrue(batcher.submit("a").isCompletedExceptionally());
+    }
+}
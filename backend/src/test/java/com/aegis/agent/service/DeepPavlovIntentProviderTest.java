@@ -0,0 +1,153 @@
+package com.aegis.agent.service;
+
+import com.aegis.agent.config.AegisProperties;
+import com.aegis.agent.domain.IntentResult;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DeepPavlovIntentProviderTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final List<Map<?, ?>> requests = new CopyOnWriteArrayList<>();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private HttpServer server;
+    private DeepPavlovIntentProvider provider;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        // An older inference server: answers every request with a single top-level intent and no predictions.
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/infer", exchange -> {
+            requests.add(objectMapper.readValue(exchange.getRequestBody(), Map.class));
+            byte[] response = "{\"intent\":\"GenerateOTP\",\"confidence\":0.9}".getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, response.length);
+            try (OutputStream output = exchange.getResponseBody()) {
+                output.write(response);
+            }
+        });
+        // An inference server that never answers until the test releases it.
+        server.createContext("/hang", exchange -> {
+            requests.add(objectMapper.readValue(exchange.getRequestBody(), Map.class));
+            try {
+                release.await();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.sendResponseHeaders(503, -1);
+            exchange.close();
+        });
+        server.start();
+
+        AegisProperties properties = new AegisProperties();
+        properties.setDeeppavlovEnabled(true);
+        properties.setDeeppavlovUrl("http://127.0.0.1:" + server.getAddress().getPort() + "/infer");
+        properties.setDeeppavlovBatchMaxSize(3);
+        properties.setDeeppavlovBatchLingerMs(2_000);
+        provider = new DeepPavlovIntentProvider(properties, new RestTemplate(), objectMapper, new SimpleMeterRegistry());
+        provider.startBatching();
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        provider.stopBatching();
+        server.stop(0);
+    }
+
+    @Test
+    void serverWithoutBatchPredictionsIsQueriedOneTextAtATime() {
+        List<CompletableFuture<IntentResult>> calls = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            String query = "otp invalid " + i;
+            calls.add(CompletableFuture.supplyAsync(() -> provider.classify(query)));
+        }
+        for (CompletableFuture<IntentResult> call : calls) {
+            assertEquals(new IntentResult("GenerateOTP", 0.9), call.join());
+        }
+
+        assertEquals(List.of("otp invalid 0", "otp invalid 1", "otp invalid 2"),
+                requests.get(0).get("texts") instanceof List<?> texts ? texts.stream().sorted().toList() : null);
+        assertEquals(4, requests.size());
+
+        // Later calls skip the batcher and go out as single queries straight away.
+        assertEquals(new IntentResult("GenerateOTP", 0.9), provider.classify("otp invalid again"));
+        assertEquals("closed", provider.circuitState());
+        assertTrue(requests.stream().skip(1).allMatch(request -> request.containsKey("query")));
+        assertEquals(requests.size() - 1, requests.stream().filter(request -> request.containsKey("query")).count());
+    }
+
+    @Test
+    void interruptedCallerStopsWaitingForABatchThatNeverAnswers() throws InterruptedException {
+        AegisProperties properties = new AegisProperties();
+        properties.setDeeppavlovEnabled(true);
+        properties.setDeeppavlovUrl("http://127.0.0.1:" + server.getAddress().getPort() + "/hang");
+        properties.setDeeppavlovBatchMaxSize(4);
+        properties.setDeeppavlovBatchLingerMs(0);
+        properties.setDeeppavlovMaxConnections(1);
+        DeepPavlovIntentProvider hanging = new DeepPavlovIntentProvider(properties, new RestTemplate(), objectMapper, new SimpleMeterRegistry());
+        hanging.startBatching();
+        try {
+            AtomicReference<IntentResult> sent = new AtomicReference<>(new IntentResult("unset", 0));
+            AtomicBoolean sentInterrupted = new AtomicBoolean();
+            Thread sentCaller = new Thread(() -> {
+                sent.set(hanging.classify("otp invalid"));
+                sentInterrupted.set(Thread.currentThread().isInterrupted());
+            });
+            sentCaller.start();
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+            while (requests.isEmpty() && System.nanoTime() < deadline) {
+                Thread.onSpinWait();
+            }
+            assertEquals(1, requests.size());
+
+            // The only sender is stuck on the first batch, so this query stays queued.
+            AtomicReference<IntentResult> queued = new AtomicReference<>(new IntentResult("unset", 0));
+            Thread queuedCaller = new Thread(() -> queued.set(hanging.classify("token expired")));
+            queuedCaller.start();
+
+            sentCaller.interrupt();
+            queuedCaller.interrupt();
+            sentCaller.join(1_000);
+            queuedCaller.join(1_000);
+
+            assertFalse(sentCaller.isAlive());
+            assertFalse(queuedCaller.isAlive());
+            assertNull(sent.get());
+            assertNull(queued.get());
+            assertTrue(sentInterrupted.get());
+
+            // Once the sender is free, the withdrawn query is skipped and the next caller's batch goes out alone.
+            release.countDown();
+            assertNull(hanging.classify("hsm timeout"));
+            assertEquals(List.of(List.of("otp invalid"), List.of("hsm timeout")),
+                    requests.stream().map(request -> request.get("texts")).toList());
+        } finally {
+            hanging.stopBatching();
+        }
+    }
+}
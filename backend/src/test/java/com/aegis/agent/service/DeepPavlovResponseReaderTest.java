@@ -0,0 +1,65 @@
+package com.aegis.agent.service;
+
+import com.aegis.agent.domain.IntentResult;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class DeepPavlovResponseReaderTest {
+
+    private final DeepPavlovResponseReader reader = new DeepPavlovResponseReader(new ObjectMapper());
+
+    @Test
+    void singleTextUsesTopLevelIntentAndStopsThere() throws IOException {
+        List<IntentResult> results = reader.read(body("{\"confidence\":0.82,\"intent\":\"GenerateOTP\",\"predictions\": not parsed"), 1);
+
+        assertEquals(List.of(new IntentResult("GenerateOTP", 0.82)), results);
+    }
+
+    @Test
+    void singleTextFallsBackToFirstPrediction() throws IOException {
+        List<IntentResult> results = reader.read(body("""
+                {"predictions":[{"label":"ConfigIssue","score":0.84},{"label":"GenerateOTP","score":0.1}]}
+                """), 1);
+
+        assertEquals(List.of(new IntentResult("ConfigIssue", 0.84)), results);
+        assertEquals(Collections.singletonList(null), reader.read(body("{\"status\":\"loading\"}"), 1));
+        assertEquals(Collections.singletonList(null), reader.read(body(""), 1));
+    }
+
+    @Test
+    void batchReturnsOnePredictionPerTextInOrder() throws IOException {
+        List<IntentResult> results = reader.read(body("""
+                {"confidence":0.9,"intent":"PushApprovalTimeout","predictions":[
+                  {"label":"PushApprovalTimeout","score":0.9,"extra":{"ignored":[1,2]}},
+                  {"label":"ConfigIssue"},
+                  {"score":0.5,"label":"GenerateOTP"}
+                ]}
+                """), 3);
+
+        assertEquals(Arrays.asList(
+                new IntentResult("PushApprovalTimeout", 0.9),
+                null,
+                new IntentResult("GenerateOTP", 0.5)
+        ), results);
+    }
+
+    @Test
+    void batchWithoutPredictionsFails() {
+        assertThrows(IllegalStateException.class, () -> reader.read(body("{\"intent\":\"GenerateOTP\",\"confidence\":0.9}"), 2));
+    }
+
+    private static InputStream body(String json) {
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,91 @@
+package com.aegis.agent.service;
+
+import com.aegis.agent.domain.IntentResult;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HashedNgramIntentModelTest {
+
+    private HashedNgramIntentModel model;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        try (InputStream input = getClass().getResourceAsStream("/intent-model-fixture.json")) {
+            model = HashedNgramIntentModel.load(input);
+        }
+    }
+
+    @Test
+    void murmurHashMatchesReferenceVectors() {
+        assertEquals(0, HashedNgramIntentModel.murmur3(new byte[0], 0));
+        assertEquals(0x248bfa47, HashedNgramIntentModel.murmur3(bytes("hello"), 0));
+        assertEquals(0x2e4ff723, HashedNgramIntentModel.murmur3(bytes("The quick brown fox jumps over the lazy dog"), 0));
+        // scikit-learn's own murmurhash3_32 test vectors.
+        assertEquals(-156908512, HashedNgramIntentModel.murmur3(bytes("foo"), 0));
+        assertEquals(-1322301282, HashedNgramIntentModel.murmur3(bytes("foo"), 42));
+    }
+
+    @Test
+    void reproducesTheExportedModelOnTheTrainingData() {
+        assertFalse(model.reference().isEmpty());
+        for (HashedNgramIntentModel.Reference expected : model.reference()) {
+            IntentResult actual = model.classify(expected.text());
+
+            assertEquals(expected.label(), actual.intent(), expected.text());
+            assertEquals(expected.confidence(), actual.confidence(), 1e-4, expected.text());
+        }
+    }
+
+    @Test
+    void classifiesTheTrainingExamplesAsLabelled() {
+        long correct = model.reference().stream()
+                .filter(example -> example.expected().equals(model.classify(example.text()).intent()))
+                .count();
+
+        assertEquals(model.reference().size(), correct);
+    }
+
+    @Test
+    void carriesTheExportedConfidenceThreshold() {
+        // Three examples per intent are too few for held-out predictions to reach the exporter's target precision.
+        assertEquals(1.0, model.confidenceThreshold().doubleValue());
+        assertTrue(model.reference().stream().allMatch(example -> example.confidence() < model.confidenceThreshold()));
+    }
+
+    @Test
+    void ignoresCasePunctuationAndSingleCharacterWords() {
+        IntentResult plain = model.classify("token sync failed");
+
+        IntentResult noisy = model.classify("  TOKEN sync -- failed!! a ");
+
+        assertEquals(plain.intent(), noisy.intent());
+        assertEquals(plain.confidence(), noisy.confidence(), 1e-9);
+    }
+
+    @Test
+    void returnsNullWithoutAnyWord() {
+        assertNull(model.classify("? ! a"));
+    }
+
+    @Test
+    void rejectsUnknownFormats() {
+        String document = "{\"format\":\"tfidf/1\",\"features\":4,\"ngramMax\":1,\"labels\":[\"A\"],\"intercepts\":[0.0],\"weights\":[]}";
+
+        assertThrows(IllegalArgumentException.class, () -> HashedNgramIntentModel.load(new ByteArrayInputStream(bytes(document))));
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
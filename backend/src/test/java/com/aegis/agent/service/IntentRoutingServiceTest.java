@@ -3,12 +3,20 @@ package com.aegis.agent.service;
 import com.aegis.agent.config.AegisProperties;
 import com.aegis.agent.domain.IntentResolution;
 import com.aegis.agent.domain.IntentResult;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -24,6 +32,9 @@ class IntentRoutingServiceTest {
     @Mock
     private DeepPavlovIntentProvider deepPavlovIntentProvider;
 
+    @Mock
+    private LocalIntentProvider localIntentProvider;
+
     @Mock
     private CloudIntentProvider cloudIntentProvider;
 
@@ -37,11 +48,16 @@ class IntentRoutingServiceTest {
 
     @BeforeEach
     void setUp() {
-        routingService = new IntentRoutingService(deepPavlovIntentProvider, cloudIntentProvider, fallbackIntentService, properties);
+        routingService = new IntentRoutingService(deepPavlovIntentProvider, localIntentProvider, cloudIntentProvider, fallbackIntentService, properties);
         lenient().when(properties.getConfidenceThreshold()).thenReturn(0.8);
         lenient().when(properties.isCloudOnlyRetryAllowFallback()).thenReturn(false);
     }
 
+    @AfterEach
+    void tearDown() {
+        routingService.shutdown();
+    }
+
     @Test
     void classifyResolutionUsesConsensusWhenBothAgree() {
         given(deepPavlovIntentProvider.classify(anyString())).willReturn(new IntentResult("GenerateOTP", 0.82));
@@ -79,6 +95,75 @@ class IntentRoutingServiceTest {
         assertEquals("DeepPavlov fallback", resolution.getSourceSummary());
     }
 
+    @Test
+    void localModelAnswerBelowItsThresholdGivesWayToTheRules() {
+        given(localIntentProvider.isAvailable()).willReturn(true);
+        given(localIntentProvider.confidenceThreshold()).willReturn(1.0);
+        given(localIntentProvider.classify(anyString())).willReturn(new IntentResult("ConfigIssue", 0.31));
+        given(cloudIntentProvider.classify(anyString())).willReturn(null);
+        given(fallbackIntentService.classify(anyString())).willReturn(new IntentResult("TimeDriftFailure", 0.76));
+
+        IntentResolution resolution = routingService.classifyResolution("time drift after travel");
+
+        assertEquals("TimeDriftFailure", resolution.getPrimaryIntent().intent());
+        assertEquals("rule-based fallback", resolution.getSourceSummary());
+    }
+
+    @Test
+    void answerWithoutAConfiguredProvidersResultIsPartial() {
+        given(cloudIntentProvider.isConfigured()).willReturn(true);
+        given(deepPavlovIntentProvider.isConfigured()).willReturn(true);
+        given(deepPavlovIntentProvider.classify(anyString())).willReturn(new IntentResult("ConfigIssue", 0.84));
+        given(cloudIntentProvider.classify(anyString())).willReturn(null, new IntentResult("ConfigIssue", 0.9));
+
+        IntentResolution degraded = routingService.classifyResolution("config mismatch in app profile");
+        IntentResolution complete = routingService.classifyResolution("config mismatch in app profile");
+
+        assertEquals("DeepPavlov fallback", degraded.getSourceSummary());
+        assertTrue(degraded.isPartial());
+        assertFalse(complete.isPartial());
+    }
+
+    @Test
+    void classifyResolutionUsesLocalModelInsteadOfDeepPavlovWhenLoaded() {
+        given(localIntentProvider.isAvailable()).willReturn(true);
+        given(localIntentProvider.confidenceThreshold()).willReturn(0.25);
+        given(localIntentProvider.classify(anyString())).willReturn(new IntentResult("ConfigIssue", 0.31));
+        given(cloudIntentProvider.classify(anyString())).willReturn(null);
+
+        IntentResolution resolution = routingService.classifyResolution("config mismatch in app profile");
+
+        assertEquals("ConfigIssue", resolution.getPrimaryIntent().intent());
+        assertEquals("local model fallback", resolution.getSourceSummary());
+        verify(deepPavlovIntentProvider, never()).classify(anyString());
+    }
+
+    @Test
+    void classifyResolutionJudgesLocalModelAgainstItsOwnThreshold() {
+        CountDownLatch cloudRelease = new CountDownLatch(1);
+        given(localIntentProvider.isAvailable()).willReturn(true);
+        given(localIntentProvider.confidenceThreshold()).willReturn(0.25);
+        given(localIntentProvider.classify(anyString())).willReturn(new IntentResult("TimeDriftFailure", 0.31));
+        given(fallbackIntentService.classify(anyString())).willReturn(new IntentResult("GenerateOTP", 0.76));
+        given(cloudIntentProvider.classify(anyString())).willAnswer(invocation -> {
+            cloudRelease.await(5, TimeUnit.SECONDS);
+            return new IntentResult("TimeDriftFailure", 0.93);
+        });
+        List<IntentResolution> interim = new ArrayList<>();
+
+        IntentResolution resolution = routingService.classifyResolution("otp rejected after travel", false, update -> {
+            interim.add(update);
+            if (interim.size() == 2) {
+                cloudRelease.countDown();
+            }
+        });
+
+        assertEquals(List.of("rule-based preview", "local model preview, cloud pending"),
+                interim.stream().map(IntentResolution::getSourceSummary).toList());
+        assertEquals("cloud-primary with local model confirmation", resolution.getSourceSummary());
+        assertEquals(0.93, resolution.getPrimaryIntent().confidence());
+    }
+
     @Test
     void classifyResolutionRetryUsesCloudOnly() {
         given(cloudIntentProvider.classify(anyString())).willReturn(new IntentResult("ServerUnreachable", 0.88));
@@ -124,4 +209,229 @@ class IntentRoutingServiceTest {
         assertEquals("Unknown", resolution.getPrimaryIntent().intent());
         assertEquals("rule-based fallback", resolution.getSourceSummary());
     }
+
+    @Test
+    void classifyResolutionCallsProvidersConcurrently() {
+        // Each provider only answers once the other one is running too.
+        CountDownLatch bothInFlight = new CountDownLatch(2);
+        given(deepPavlovIntentProvider.classify(anyString())).willAnswer(invocation -> {
+            bothInFlight.countDown();
+            return bothInFlight.await(5, TimeUnit.SECONDS) ? new IntentResult("GenerateOTP", 0.82) : null;
+        });
+        given(cloudIntentProvider.classify(anyString())).willAnswer(invocation -> {
+            bothInFlight.countDown();
+            return bothInFlight.await(5, TimeUnit.SECONDS) ? new IntentResult("GenerateOTP", 0.91) : null;
+        });
+
+        IntentResolution resolution = routingService.classifyResolution("otp not generating");
+
+        assertEquals("cloud-primary with DeepPavlov confirmation", resolution.getSourceSummary());
+    }
+
+    @Test
+    void classifyResolutionReportsRuleAndDeepPavlovResultsWhileCloudIsPending() {
+        CountDownLatch cloudRelease = new CountDownLatch(1);
+        given(fallbackIntentService.classify(anyString())).willReturn(new IntentResult("GenerateOTP", 0.76));
+        given(deepPavlovIntentProvider.classify(anyString())).willReturn(new IntentResult("TimeDriftFailure", 0.84));
+        given(cloudIntentProvider.classify(anyString())).willAnswer(invocation -> {
+            cloudRelease.await(5, TimeUnit.SECONDS);
+            return new IntentResult("TimeDriftFailure", 0.93);
+        });
+        List<IntentResolution> interim = new ArrayList<>();
+
+        IntentResolution resolution = routingService.classifyResolution("otp rejected after travel", false, update -> {
+            interim.add(update);
+            if (interim.size() == 2) {
+                cloudRelease.countDown();
+            }
+        });
+
+        assertEquals(List.of("rule-based preview", "DeepPavlov preview, cloud pending"),
+                interim.stream().map(IntentResolution::getSourceSummary).toList());
+        assertEquals("GenerateOTP", interim.get(0).getPrimaryIntent().intent());
+        assertEquals("TimeDriftFailure", resolution.getPrimaryIntent().intent());
+        assertEquals("cloud-primary with DeepPavlov confirmation", resolution.getSourceSummary());
+    }
+
+    @Test
+    void classifyResolutionRetryReportsNoInterimWhenFallbackDisabled() {
+        given(cloudIntentProvider.classify(anyString())).willReturn(new IntentResult("ServerUnreachable", 0.88));
+        List<IntentResolution> interim = new ArrayList<>();
+
+        IntentResolution resolution = routingService.classifyResolution("retry with prior context", true, interim::add);
+
+        assertTrue(interim.isEmpty());
+        assertEquals("cloud-only retry", resolution.getSourceSummary());
+        verify(fallbackIntentService, never()).classify(anyString());
+    }
+
+    @Test
+    void classifyResolutionUsesResultsThatArriveBeforeDeadline() throws Exception {
+        given(properties.getIntentDeadlineMs()).willReturn(200L);
+        CountDownLatch deepInterrupted = new CountDownLatch(1);
+        given(cloudIntentProvider.classify(anyString())).willReturn(new IntentResult("PushApprovalTimeout", 0.9));
+        given(deepPavlovIntentProvider.classify(anyString())).willAnswer(invocation -> blockUntilInterrupted(deepInterrupted));
+
+        IntentResolution resolution = routingService.classifyResolution("push challenge timed out");
+
+        assertEquals("PushApprovalTimeout", resolution.getPrimaryIntent().intent());
+        assertEquals("cloud-primary", resolution.getSourceSummary());
+        assertTrue(deepInterrupted.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void classifyResolutionFallsBackAndCancelsCallsWhenDeadlineExpires() throws Exception {
+        given(properties.getIntentDeadlineMs()).willReturn(200L);
+        CountDownLatch interrupted = new CountDownLatch(2);
+        given(cloudIntentProvider.classify(anyString())).willAnswer(invocation -> blockUntilInterrupted(interrupted));
+        given(deepPavlovIntentProvider.classify(anyString())).willAnswer(invocation -> blockUntilInterrupted(interrupted));
+        given(fallbackIntentService.classify(anyString())).willReturn(new IntentResult("GenerateOTP", 0.6));
+
+        IntentResolution resolution = routingService.classifyResolution("otp not generating");
+
+        assertEquals("rule-based fallback", resolution.getSourceSummary());
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void classifyResolutionAnswersFromRulesWhenFanOutQueueIsFull() throws Exception {
+        given(properties.getIntentFanOutThreads()).willReturn(1);
+        given(properties.getIntentFanOutQueueCapacity()).willReturn(1);
+        IntentRoutingService saturatedRouting = new IntentRoutingService(deepPavlovIntentProvider, localIntentProvider, cloudIntentProvider, fallbackIntentService, properties);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch submitted = new CountDownLatch(1);
+        given(cloudIntentProvider.classify(anyString())).willAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            return new IntentResult("GenerateOTP", 0.91);
+        });
+        given(deepPavlovIntentProvider.classify(anyString())).willReturn(new IntentResult("GenerateOTP", 0.84));
+        given(fallbackIntentService.classify(anyString())).willReturn(new IntentResult("GenerateOTP", 0.6));
+
+        // The first chat's cloud call occupies the only worker and its DeepPavlov call the only queue slot.
+        Thread first = new Thread(() -> saturatedRouting.classifyResolution("otp not generating", false, update -> submitted.countDown()));
+        try {
+            first.start();
+            assertTrue(submitted.await(5, TimeUnit.SECONDS));
+
+            IntentResolution resolution = saturatedRouting.classifyResolution("otp still not generating");
+
+            assertEquals("rule-based fallback, providers saturated", resolution.getSourceSummary());
+            assertEquals("GenerateOTP", resolution.getPrimaryIntent().intent());
+        } finally {
+            release.countDown();
+            first.join(5_000);
+            saturatedRouting.shutdown();
+        }
+        verify(cloudIntentProvider).classify("otp not generating");
+        verify(cloudIntentProvider, never()).classify("otp still not generating");
+    }
+
+    @Test
+    void classifyBatchReachesProvidersWhileChatFanOutIsFull() throws Exception {
+        given(properties.getIntentFanOutThreads()).willReturn(1);
+        given(properties.getIntentFanOutQueueCapacity()).willReturn(1);
+        IntentRoutingService saturatedRouting = new IntentRoutingService(deepPavlovIntentProvider, localIntentProvider, cloudIntentProvider, fallbackIntentService, properties);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch submitted = new CountDownLatch(1);
+        given(cloudIntentProvider.classify(anyString())).willAnswer(invocation -> {
+            String query = invocation.getArgument(0);
+            if (query.equals("otp not generating")) {
+                release.await(5, TimeUnit.SECONDS);
+            }
+            return new IntentResult("GenerateOTP", 0.91);
+        });
+        given(deepPavlovIntentProvider.classify(anyString())).willReturn(new IntentResult("GenerateOTP", 0.84));
+        lenient().when(fallbackIntentService.classify(anyString())).thenReturn(new IntentResult("GenerateOTP", 0.6));
+
+        Thread chat = new Thread(() -> saturatedRouting.classifyResolution("otp not generating", false, update -> submitted.countDown()));
+        try {
+            chat.start();
+            assertTrue(submitted.await(5, TimeUnit.SECONDS));
+
+            List<IntentResolution> delivered = new ArrayList<>();
+            saturatedRouting.classifyBatch(List.of("otp invalid"), (resolution, index) -> delivered.add(resolution));
+
+            assertEquals("cloud-primary with DeepPavlov confirmation", delivered.get(0).getSourceSummary());
+        } finally {
+            release.countDown();
+            chat.join(5_000);
+            saturatedRouting.shutdown();
+        }
+    }
+
+    @Test
+    void defaultFanOutQueueHoldsBothCallsOfEveryServletRequest() {
+        AegisProperties defaults = new AegisProperties();
+        assertEquals(400, IntentRoutingService.defaultFanOutQueueCapacity(defaults, 32));
+
+        defaults.setServletMaxThreads(8);
+        assertEquals(64, IntentRoutingService.defaultFanOutQueueCapacity(defaults, 32));
+    }
+
+    @Test
+    void classifyResolutionTreatsFailingProviderAsUnavailable() {
+        given(cloudIntentProvider.classify(anyString())).willThrow(new IllegalStateException("boom"));
+        given(deepPavlovIntentProvider.classify(anyString())).willReturn(new IntentResult("ConfigIssue", 0.84));
+
+        IntentResolution resolution = routingService.classifyResolution("config mismatch in app profile");
+
+        assertEquals("ConfigIssue", resolution.getPrimaryIntent().intent());
+        assertEquals("DeepPavlov fallback", resolution.getSourceSummary());
+    }
+
+    @Test
+    void classifyBatchDeliversEveryQueryWithItsSource() {
+        given(cloudIntentProvider.classify(anyString())).willAnswer(invocation -> {
+            String query = invocation.getArgument(0);
+            return query.contains("push") ? new IntentResult("PushApprovalTimeout", 0.9) : null;
+        });
+        given(deepPavlovIntentProvider.classify(anyString())).willAnswer(invocation -> {
+            String query = invocation.getArgument(0);
+            return query.contains("config") ? new IntentResult("ConfigIssue", 0.84) : null;
+        });
+        given(fallbackIntentService.classify(anyString())).willReturn(new IntentResult("Unknown", 0.2));
+
+        Map<Integer, IntentResolution> delivered = new ConcurrentHashMap<>();
+        routingService.classifyBatch(List.of("push challenge timed out", "config mismatch", "hello there"),
+                (resolution, index) -> delivered.put(index, resolution));
+
+        assertEquals(3, delivered.size());
+        assertEquals("cloud-primary", delivered.get(0).getSourceSummary());
+        assertEquals("DeepPavlov fallback", delivered.get(1).getSourceSummary());
+        assertEquals("rule-based fallback", delivered.get(2).getSourceSummary());
+    }
+
+    @Test
+    void classifyBatchRunsQueriesInParallel() {
+        given(properties.getIntentBatchParallelism()).willReturn(4);
+        IntentRoutingService batchRouting = new IntentRoutingService(deepPavlovIntentProvider, localIntentProvider, cloudIntentProvider, fallbackIntentService, properties);
+        CountDownLatch allInFlight = new CountDownLatch(4);
+        given(cloudIntentProvider.classify(anyString())).willReturn(null);
+        given(deepPavlovIntentProvider.classify(anyString())).willAnswer(invocation -> {
+            allInFlight.countDown();
+            return allInFlight.await(2, TimeUnit.SECONDS) ? new IntentResult("GenerateOTP", 0.86) : null;
+        });
+
+        Map<Integer, IntentResolution> delivered = new ConcurrentHashMap<>();
+        try {
+            batchRouting.classifyBatch(List.of("otp 1", "otp 2", "otp 3", "otp 4"), (resolution, index) -> delivered.put(index, resolution));
+        } finally {
+            batchRouting.shutdown();
+        }
+
+        assertEquals(4, delivered.size());
+        delivered.values().forEach(resolution -> assertEquals("DeepPavlov fallback", resolution.getSourceSummary()));
+    }
+
+    /**
+     * Stands in for a provider call that never answers; returns once the routing layer cancels it.
+     */
+    private static IntentResult blockUntilInterrupted(CountDownLatch interrupted) {
+        try {
+            new CountDownLatch(1).await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            interrupted.countDown();
+        }
+        return null;
+    }
 }
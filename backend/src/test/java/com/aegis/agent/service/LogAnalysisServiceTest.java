@@ -1,13 +1,29 @@
 package com.aegis.agent.service;
 
+import com.aegis.agent.config.AegisProperties;
 import com.aegis.agent.domain.AnalysisResult;
+import com.aegis.agent.domain.SignalOccurrence;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.DefaultResourceLoader;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class LogAnalysisServiceTest {
 
-    private final LogAnalysisService service = new LogAnalysisService();
+    private final LogSignatureCatalog catalog =
+            new LogSignatureCatalog(new AegisProperties(), new DefaultResourceLoader(), new SimpleMeterRegistry());
+    private final LogAnalysisService service = new LogAnalysisService(catalog, new AegisProperties());
 
     @Test
     void analyzes503Error() {
@@ -19,5 +35,193 @@ class LogAnalysisServiceTest {
     void analyzesTimeSkew() {
         AnalysisResult result = service.analyze("clock drift detected in otp generation");
         assertEquals("Device time out of sync", result.rootCause());
+        assertEquals("TimeDriftFailure", result.intent());
+    }
+
+    @Test
+    void reportsEverySignalAndRanksPrimaryRootCause() {
+        AnalysisResult result = service.analyze("""
+                10:00:01 WebAuthn assertion rejected
+                10:00:02 push challenge sent
+                10:00:32 Push TIMEOUT waiting for approval
+                10:00:40 gateway returned HTTP 503
+                """);
+
+        assertEquals("Service unavailable or upstream outage", result.rootCause());
+        assertEquals(List.of("Error503", "FIDO2_WebAuthn_Failure", "PushApprovalTimeout"), result.matchedSignals());
+    }
+
+    @Test
+    void unknownWhenNoSignatureMatches() {
+        AnalysisResult result = service.analyze("2026-02-14 INFO login succeeded");
+
+        assertEquals("Unknown root cause", result.rootCause());
+        assertEquals(List.of(), result.matchedSignals());
+        assertEquals(List.of(), result.signalOccurrences());
+    }
+
+    @Test
+    void recordsWhereEachSignalOccurs() {
+        String log = """
+                2026-02-14 10:00:00,120 INFO [auth-service] login started
+                2026-02-14 10:00:01,480 ERROR [api-gateway] upstream returned HTTP 503
+                2026-02-14 10:00:02,002 WARN [api-gateway] retry got HTTP 503 again, http 503
+                2026-02-14 10:00:03,950 INFO [auth-service] heartbeat ok
+                2026-02-14 10:00:04,100 ERROR [api-gateway] proxy answered Error 503
+                """;
+
+        AnalysisResult result = service.analyze(log);
+
+        SignalOccurrence occurrence = result.signalOccurrences().get(0);
+        assertEquals("Error503", occurrence.signal());
+        assertEquals(3, occurrence.count());
+        assertEquals(2, occurrence.firstLine());
+        assertEquals(5, occurrence.lastLine());
+        assertEquals(log.indexOf("HTTP 503"), occurrence.firstOffset());
+        assertEquals("2026-02-14 10:00:01,480", occurrence.firstTimestamp());
+        assertEquals("2026-02-14 10:00:04,100", occurrence.lastTimestamp());
+        assertEquals("ERROR", occurrence.firstLevel());
+        assertEquals("api-gateway", occurrence.firstComponent());
+    }
+
+    @Test
+    void tokenizesLogcatLines() {
+        AnalysisResult result = service.analyze("""
+                02-14 10:00:00.120  1234  1250 I PushService: challenge received
+                02-14 10:00:30.480  1234  1250 E PushService: approval timeout
+                """);
+
+        SignalOccurrence occurrence = result.signalOccurrences().get(0);
+        assertEquals("PushApprovalTimeout", occurrence.signal());
+        assertEquals(1, occurrence.count());
+        assertEquals(2, occurrence.firstLine());
+        assertEquals(2, occurrence.lastLine());
+        assertEquals("02-14 10:00:30.480", occurrence.firstTimestamp());
+        assertEquals("02-14 10:00:30.480", occurrence.lastTimestamp());
+        assertEquals("E", occurrence.firstLevel());
+        assertEquals("PushService", occurrence.firstComponent());
+    }
+
+    @Test
+    void signatureMatchedOnlyAcrossLinesHasNoOccurrence() {
+        AnalysisResult result = service.analyze("push challenge sent\nrequest timeout after 30s\n");
+
+        assertEquals(List.of("PushApprovalTimeout"), result.matchedSignals());
+        assertTrue(result.signalOccurrences().isEmpty());
+    }
+
+    @Test
+    void streamingMatchesSignatureSplitAcrossChunkBoundary() throws Exception {
+        String padding = "x".repeat(LogAnalysisService.CHUNK_SIZE - 4);
+        String log = padding + "CERTIFICATE VERIFY FAILED for device\n";
+
+        AnalysisResult result = service.analyze(new ByteArrayInputStream(log.getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals("Device certificate invalid or expired", result.rootCause());
+        assertEquals(List.of("Cert_Invalid"), result.matchedSignals());
+    }
+
+    @Test
+    void streamingReturnsSameResultAsStringAnalysis() throws Exception {
+        String log = "2026-02-14 push challenge sent\n2026-02-14 WARN request timeout after 30s\n";
+
+        AnalysisResult fromString = service.analyze(log);
+        AnalysisResult fromStream = service.analyze(new ByteArrayInputStream(log.getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals(fromString, fromStream);
+        assertEquals("Push approval timed out", fromStream.rootCause());
+    }
+
+    @Test
+    void streamingAnalyzesLogLargerThanHeapBudget() throws Exception {
+        // Surefire runs with a 256MB heap, so materializing this log as bytes or a String would fail.
+        long size = 320L * 1024 * 1024;
+        String tail = "2026-02-14T10:15:31Z ERROR gateway HTTP 503 from upstream\n";
+
+        AnalysisResult result = service.analyze(new SyntheticLogStream(size, tail));
+
+        assertEquals("Service unavailable or upstream outage", result.rootCause());
+        assertEquals(List.of("Error503"), result.matchedSignals());
+    }
+
+    @Test
+    void singleWorkerPoolStaysSequential() {
+        AegisProperties properties = new AegisProperties();
+        properties.setLogAnalysisParallelThresholdBytes(1);
+        properties.setLogAnalysisParallelism(1);
+        LogAnalysisService singleWorker = new LogAnalysisService(catalog, properties);
+        try {
+            assertFalse(singleWorker.isParallelCandidate(64L * 1024 * 1024));
+        } finally {
+            singleWorker.shutdown();
+        }
+    }
+
+    @Test
+    void parallelAnalysisMatchesSequentialPath(@TempDir Path tempDir) throws Exception {
+        AegisProperties parallelProperties = new AegisProperties();
+        parallelProperties.setLogAnalysisParallelThresholdBytes(1);
+        parallelProperties.setLogAnalysisParallelism(4);
+        LogAnalysisService parallel = new LogAnalysisService(catalog, parallelProperties);
+
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 120_000; i++) {
+            builder.append(i % 5000 == 4999 ? "2026-02-14 WARN push challenge timeout\n" : "2026-02-14 INFO heartbeat ok\n");
+        }
+        builder.append("2026-02-14 ERROR WebAuthn assertion failed");
+        byte[] log = builder.toString().getBytes(StandardCharsets.UTF_8);
+        Path file = Files.write(tempDir.resolve("device.log"), log);
+
+        AnalysisResult expected = service.analyze(builder.toString());
+        try {
+            assertTrue(parallel.isParallelCandidate(log.length));
+            assertTrue(log.length > 2 * LogAnalysisService.SEGMENT_BYTES);
+            assertEquals(expected, parallel.analyze(log));
+            assertEquals(expected, parallel.analyze(file));
+            assertEquals(List.of("FIDO2_WebAuthn_Failure", "PushApprovalTimeout"), expected.matchedSignals());
+            assertEquals(120_001, expected.signalOccurrences().get(0).firstLine());
+            assertEquals(24, expected.signalOccurrences().get(1).count());
+            assertEquals(5000, expected.signalOccurrences().get(1).firstLine());
+            assertEquals(120_000, expected.signalOccurrences().get(1).lastLine());
+        } finally {
+            parallel.shutdown();
+        }
+    }
+
+    private static final class SyntheticLogStream extends InputStream {
+
+        private static final byte[] LINE = "2026-02-14T10:15:30Z INFO auth-service heartbeat ok for device pixel-7\n"
+                .getBytes(StandardCharsets.UTF_8);
+
+        private final long bodySize;
+        private final byte[] tail;
+        private long position;
+
+        SyntheticLogStream(long bodySize, String tail) {
+            this.bodySize = bodySize;
+            this.tail = tail.getBytes(StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public int read() {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) == -1 ? -1 : single[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) {
+            long total = bodySize + tail.length;
+            if (position >= total) {
+                return -1;
+            }
+            int count = 0;
+            while (count < length && position < total) {
+                buffer[offset + count++] = position < bodySize
+                        ? LINE[(int) (position % LINE.length)]
+                        : tail[(int) (position - bodySize)];
+                position++;
+            }
+            return count;
+        }
     }
 }
@@ -0,0 +1,109 @@
+package com.aegis.agent.service;
+
+import com.aegis.agent.config.AegisProperties;
+import com.aegis.agent.domain.AnalysisResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.DefaultResourceLoader;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LogSignatureCatalogTest {
+
+    private static final String CATALOG_V1 = """
+            {
+              "version": "v1",
+              "unknown": {"rootCause": "Unknown root cause", "fixAction": "Escalate.", "severity": "MEDIUM", "confidence": 0.4},
+              "signatures": [
+                {"signal": "Error503", "intent": "ServerUnreachable", "rootCause": "Upstream outage",
+                 "fixAction": "Retry later.", "severity": "HIGH", "confidence": 0.93, "keywords": [["http 503"]]}
+              ]
+            }
+            """;
+
+    private static final String CATALOG_V2 = """
+            {
+              "version": "v2",
+              "unknown": {"rootCause": "Unknown root cause", "fixAction": "Escalate.", "severity": "MEDIUM", "confidence": 0.4},
+              "signatures": [
+                {"signal": "Error503", "intent": "ServerUnreachable", "rootCause": "Upstream outage",
+                 "fixAction": "Retry later.", "severity": "HIGH", "confidence": 0.93, "keywords": [["http 503"]]},
+                {"signal": "OtpRejected", "intent": "GenerateOTP", "rootCause": "OTP rejected by server",
+                 "fixAction": "Sync time and retry.", "severity": "MEDIUM", "confidence": 0.8,
+                 "regexes": ["otp \\\\w+ rejected \\\\(code=4\\\\d\\\\d\\\\)"]}
+              ]
+            }
+            """;
+
+    @TempDir
+    Path tempDir;
+
+    private Path catalogFile;
+    private SimpleMeterRegistry meterRegistry;
+    private LogSignatureCatalog catalog;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        catalogFile = tempDir.resolve("log-signatures.json");
+        Files.writeString(catalogFile, CATALOG_V1);
+        AegisProperties properties = new AegisProperties();
+        properties.setLogSignatureCatalog(catalogFile.toUri().toString());
+        meterRegistry = new SimpleMeterRegistry();
+        catalog = new LogSignatureCatalog(properties, new DefaultResourceLoader(), meterRegistry);
+    }
+
+    @Test
+    void reloadsChangedCatalogFileWithRegexSignatures() throws Exception {
+        LogAnalysisService service = new LogAnalysisService(catalog, new AegisProperties());
+        assertEquals(List.of(), service.analyze("otp 123456 rejected (code=401)").matchedSignals());
+
+        rewrite(CATALOG_V2);
+
+        assertTrue(catalog.reloadIfChanged());
+        assertEquals("v2", catalog.current().version());
+        AnalysisResult result = service.analyze("10:00:01 otp 123456 rejected (code=401)\n10:00:02 retrying");
+        assertEquals("OTP rejected by server", result.rootCause());
+        assertEquals("GenerateOTP", result.intent());
+    }
+
+    @Test
+    void keepsPreviousIndexWhenChangedCatalogIsInvalid() throws Exception {
+        LogSignatureIndex before = catalog.current();
+
+        rewrite("{\"version\": \"broken\", \"signatures\": []}");
+
+        assertFalse(catalog.reloadIfChanged());
+        assertSame(before, catalog.current());
+        assertEquals(1.0, meterRegistry.get("aegis.log.signatures.reloads").tag("result", "failure").counter().count());
+    }
+
+    @Test
+    void skipsReloadWhenFileIsUnchanged() {
+        assertFalse(catalog.reloadIfChanged());
+    }
+
+    @Test
+    void publishesCompileTimeAndIndexSize() {
+        assertEquals(1, meterRegistry.get("aegis.log.signatures.compile").timer().count());
+        assertEquals(1.0, meterRegistry.get("aegis.log.signatures.count").gauge().value());
+        assertTrue(meterRegistry.get("aegis.log.signatures.index.states").gauge().value() > 1);
+        assertTrue(meterRegistry.get("aegis.log.signatures.index.size").gauge().value() > 0);
+    }
+
+    private void rewrite(String content) throws Exception {
+        Instant previous = Files.getLastModifiedTime(catalogFile).toInstant();
+        Files.writeString(catalogFile, content);
+        Files.setLastModifiedTime(catalogFile, FileTime.from(previous.plusSeconds(5)));
+    }
+}
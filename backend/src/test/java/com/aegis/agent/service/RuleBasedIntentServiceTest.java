@@ -0,0 +1,73 @@
+package com.aegis.agent.service;
+
+import com.aegis.agent.domain.IntentResult;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class RuleBasedIntentServiceTest {
+
+    private final RuleBasedIntentService service = new RuleBasedIntentService();
+
+    @Test
+    void singleKeywordKeepsFixedConfidence() {
+        IntentResult result = service.classify("User cannot ENROLL the new token");
+
+        assertEquals("EnrollmentFailure", result.intent());
+        assertEquals(0.76, result.confidence(), 1e-9);
+    }
+
+    @Test
+    void boundedKeywordsOnlyMatchAtWordBoundaries() {
+        assertEquals("Unknown", service.classify("hotpot recipe request").intent());
+        assertEquals("Unknown", service.classify("carbon footprint report").intent());
+        assertEquals("Unknown", service.classify("error 5031 on login").intent());
+        assertEquals("ServerUnreachable", service.classify("gateway returned 503.").intent());
+    }
+
+    @Test
+    void otpFactorsAndUnboundedKeywordsMatchInsideWords() {
+        assertEquals(new IntentResult("GenerateOTP", 0.76), service.classify("TOTP code rejected"));
+        assertEquals(new IntentResult("GenerateOTP", 0.76), service.classify("HOTP counter out of step"));
+        assertEquals("GenerateOTP", service.classify("authenticator totp-based login fails").intent());
+        assertEquals("ConfigIssue", service.classify("bad configuration pushed").intent());
+        assertEquals("ConfigIssue", service.classify("tenant is misconfigured").intent());
+        assertEquals("EnrollmentFailure", service.classify("cannot re-enroll or unenroll").intent());
+    }
+
+    @Test
+    void ranksIntentsByWeightedEvidence() {
+        List<IntentResult> ranked = service.classifyTopK("passkey registration failed after config change", 3);
+
+        assertEquals(List.of("PasskeyRegistrationFailure", "EnrollmentFailure", "ConfigIssue"),
+                ranked.stream().map(IntentResult::intent).toList());
+        assertEquals(0.76 * 1.5 / 3.5, ranked.get(0).confidence(), 1e-9);
+        assertEquals(0.76 / 3.5, ranked.get(2).confidence(), 1e-9);
+    }
+
+    @Test
+    void repeatedKeywordCountsOnce() {
+        List<IntentResult> ranked = service.classifyTopK("otp otp otp, device binding broken", 2);
+
+        assertEquals("DeviceBindingFailure", ranked.get(0).intent());
+        assertEquals("GenerateOTP", ranked.get(1).intent());
+    }
+
+    @Test
+    void tiesGoToIntentDeclaredFirst() {
+        List<IntentResult> ranked = service.classifyTopK("server unreachable, otp missing", 2);
+
+        assertEquals(List.of("GenerateOTP", "ServerUnreachable"), ranked.stream().map(IntentResult::intent).toList());
+    }
+
+    @Test
+    void unknownConfidenceSeparatesEmptyFromUnmatched() {
+        assertEquals(0.0, service.classify("   ").confidence(), 1e-9);
+        assertEquals(0.05, service.classify(" ?!? ").confidence(), 1e-9);
+        assertEquals(0.05, service.classify(" ab ").confidence(), 1e-9);
+        assertEquals(0.2, service.classify("something else entirely").confidence(), 1e-9);
+        assertEquals(1, service.classifyTopK("something else entirely", 5).size());
+    }
+}
@@ -0,0 +1,103 @@
+package com.aegis.agent.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SingleFlightTest {
+
+    private final List<String> shared = new CopyOnWriteArrayList<>();
+    private final SingleFlight<String, String> singleFlight = new SingleFlight<>(shared::add);
+
+    @Test
+    void concurrentCallersWithTheSameKeyShareOneCall() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch leaderStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        CompletableFuture<String> leader = CompletableFuture.supplyAsync(() -> singleFlight.execute("otp", () -> {
+            calls.incrementAndGet();
+            leaderStarted.countDown();
+            await(release);
+            return "GenerateOTP";
+        }));
+        assertTrue(leaderStarted.await(2, TimeUnit.SECONDS));
+
+        List<CompletableFuture<String>> followers = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            followers.add(CompletableFuture.supplyAsync(() -> singleFlight.execute("otp", () -> {
+                calls.incrementAndGet();
+                return "own call";
+            })));
+        }
+        waitForFollowers("otp", 3);
+        release.countDown();
+
+        assertEquals("GenerateOTP", leader.get(2, TimeUnit.SECONDS));
+        for (CompletableFuture<String> follower : followers) {
+            assertEquals("GenerateOTP", follower.get(2, TimeUnit.SECONDS));
+        }
+        assertEquals(1, calls.get());
+        assertEquals(List.of("GenerateOTP", "GenerateOTP", "GenerateOTP"), shared);
+        assertEquals(0, singleFlight.inFlight());
+    }
+
+    @Test
+    void differentKeysAndSequentialCallsAreNotShared() {
+        assertEquals("a1", singleFlight.execute("a", () -> "a1"));
+        assertEquals("a2", singleFlight.execute("a", () -> "a2"));
+        assertEquals("b1", singleFlight.execute("b", () -> "b1"));
+        assertTrue(shared.isEmpty());
+    }
+
+    @Test
+    void failureReachesEveryWaitingCallerAndIsNotRemembered() throws Exception {
+        CountDownLatch leaderStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        CompletableFuture<String> leader = CompletableFuture.supplyAsync(() -> singleFlight.execute("otp", () -> {
+            leaderStarted.countDown();
+            await(release);
+            throw new IllegalStateException("endpoint down");
+        }));
+        assertTrue(leaderStarted.await(2, TimeUnit.SECONDS));
+        CompletableFuture<String> follower = CompletableFuture.supplyAsync(() -> singleFlight.execute("otp", () -> "own call"));
+        waitForFollowers("otp", 1);
+        release.countDown();
+
+        CompletionException leaderFailure = assertThrows(CompletionException.class, leader::join);
+        CompletionException followerFailure = assertThrows(CompletionException.class, follower::join);
+        assertInstanceOf(IllegalStateException.class, leaderFailure.getCause());
+        assertInstanceOf(IllegalStateException.class, followerFailure.getCause());
+        assertTrue(shared.isEmpty());
+        assertEquals("retried", singleFlight.execute("otp", () -> "retried"));
+    }
+
+    private void waitForFollowers(String key, int expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+        while (singleFlight.waiting(key) < expected) {
+            assertTrue(System.nanoTime() < deadline, "followers did not join the flight");
+            Thread.sleep(1);
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(2, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
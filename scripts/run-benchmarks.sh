@@ -0,0 +1,15 @@
+#!/usr/bin/env bash
+
+set -euo pipefail
+
+ROOT_DIR="$(cd "$(dirname "$0")/.." && pwd)"
+MVN_ARGS="${MVN_ARGS:--o}"
+
+# Installs the backend jar the benchmarks link against, builds the shaded JMH jar and runs it with the GC
+# profiler so every result carries its allocation rate. Extra arguments go to JMH, e.g. a benchmark regex
+# or "-p logBytes=1048576". Set MVN_ARGS= for the first run so Maven can fetch JMH into the local repository.
+mvn -B -q $MVN_ARGS -f "$ROOT_DIR/backend/pom.xml" install -DskipTests
+mvn -B -q $MVN_ARGS -f "$ROOT_DIR/backend/benchmarks/pom.xml" package
+
+java -jar "$ROOT_DIR/backend/benchmarks/target/benchmarks.jar" -prof gc \
+  -rf json -rff "$ROOT_DIR/backend/benchmarks/target/jmh-result.json" "$@"